@@ -0,0 +1,93 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Random;
+
+/**
+ * <p>Samples indexes with probabilities proportional to given weights,
+ * in constant time and without allocation, using Vose's alias method.</p>
+ * <p>Each index owns a column of probability {@code 1/n}; the column is
+ * split between the index itself, with probability {@code probabilities[i]},
+ * and its alias, that takes the rest of the column.</p>
+ */
+class AliasSampler {
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    /**
+     * @param weights the positive weights of the indexes
+     */
+    AliasSampler(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("no weights");
+        }
+        double total = 0;
+        for (double weight : weights) {
+            if (!(weight > 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("invalid weight " + weight);
+            }
+            total += weight;
+        }
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+        // Scale the weights so that their average is 1.
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smalls = 0;
+        int larges = 0;
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smalls++] = i;
+            } else {
+                large[larges++] = i;
+            }
+        }
+        while (smalls > 0 && larges > 0) {
+            int s = small[--smalls];
+            int l = large[--larges];
+            probabilities[s] = scaled[s];
+            aliases[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1;
+            if (scaled[l] < 1) {
+                small[smalls++] = l;
+            } else {
+                large[larges++] = l;
+            }
+        }
+        // The remaining columns are full, modulo rounding errors.
+        while (larges > 0) {
+            int l = large[--larges];
+            probabilities[l] = 1;
+            aliases[l] = l;
+        }
+        while (smalls > 0) {
+            int s = small[--smalls];
+            probabilities[s] = 1;
+            aliases[s] = s;
+        }
+    }
+
+    /**
+     * @param random the source of randomness
+     * @return an index between {@code 0} and {@code weights.length - 1}
+     */
+    int next(Random random) {
+        int column = random.nextInt(probabilities.length);
+        return random.nextDouble() < probabilities[column] ? column : aliases[column];
+    }
+}
@@ -0,0 +1,72 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>The arrival process that determines the spacing between
+ * the resource trees sent by a sender thread.</p>
+ * <p>The nominal spacing between sends is determined by the
+ * {@link LoadGenerator.Builder#resourceRate(int) resource rate};
+ * an ArrivalProcess produces a sequence of inter-arrival times,
+ * normalized so that their mean is {@code 1}, that are multiplied
+ * by the nominal spacing to obtain the actual spacing.</p>
+ * <p>For example, {@link ConstantArrivalProcess} always produces {@code 1},
+ * so that sends are evenly spaced, while {@link PoissonArrivalProcess}
+ * produces exponentially distributed values, so that sends are bursty
+ * like in real traffic, while the average rate is the same.</p>
+ */
+public abstract class ArrivalProcess implements JSON.Convertible {
+    /**
+     * @return the arrival process type, such as "constant" or "poisson"
+     */
+    public abstract String getType();
+
+    /**
+     * <p>Creates a new sequence of inter-arrival times for the given sender thread.</p>
+     * <p>The returned sequence is only used by the given sender thread,
+     * so that it does not need to be thread-safe.</p>
+     *
+     * @param sender the sender thread index
+     * @return a new sequence of inter-arrival times
+     */
+    public abstract Arrivals newArrivals(int sender);
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("type", getType());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+    }
+
+    @Override
+    public String toString() {
+        return getType();
+    }
+
+    /**
+     * <p>A sequence of inter-arrival times.</p>
+     */
+    public interface Arrivals {
+        /**
+         * @return the next inter-arrival time, normalized so that the mean is {@code 1}
+         */
+        public double next();
+    }
+}
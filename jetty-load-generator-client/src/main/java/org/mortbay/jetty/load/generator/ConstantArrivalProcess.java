@@ -0,0 +1,31 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+/**
+ * <p>An {@link ArrivalProcess} where sends are evenly spaced.</p>
+ */
+public class ConstantArrivalProcess extends ArrivalProcess {
+    public static final String TYPE = "constant";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public Arrivals newArrivals(int sender) {
+        return () -> 1D;
+    }
+}
@@ -0,0 +1,80 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A {@link Feeder} whose variable takes sequential values,
+ * starting from the {@link #start(long) start value}.</p>
+ */
+public class CounterFeeder extends VariableFeeder {
+    public static final String TYPE = "counter";
+
+    private final AtomicLong counter = new AtomicLong();
+    private long start;
+
+    @Override
+    public CounterFeeder variable(String variable) {
+        super.variable(variable);
+        return this;
+    }
+
+    /**
+     * @param start the first value of the variable
+     * @return this CounterFeeder
+     */
+    public CounterFeeder start(long start) {
+        this.start = start;
+        return this;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        counter.set(getStart());
+        super.doStart();
+    }
+
+    @Override
+    protected String next() {
+        return Long.toString(counter.getAndIncrement());
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("start", getStart());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        Object start = map.get("start");
+        if (start instanceof Number) {
+            start(((Number)start).longValue());
+        }
+    }
+}
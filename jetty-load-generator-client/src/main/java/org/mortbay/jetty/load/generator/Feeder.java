@@ -0,0 +1,68 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+/**
+ * <p>A source of values for the variables of resource templates.</p>
+ * <p>Resource paths, request header values and request contents may
+ * contain variables such as {@code /item/${id}}; for every resource tree,
+ * the feeders provide the values of the variables, that are used to
+ * render the templates of all the resources of the tree.</p>
+ * <p>Feeders are started and stopped with the load generator,
+ * so that they can acquire and release resources such as files.</p>
+ *
+ * @see LoadGenerator.Builder#feeder(Feeder)
+ */
+public abstract class Feeder extends AbstractLifeCycle implements JSON.Convertible {
+    /**
+     * @return the feeder type, such as "counter" or "file"
+     */
+    public abstract String getType();
+
+    /**
+     * @return the names of the variables provided by this feeder
+     */
+    public abstract List<String> getVariables();
+
+    /**
+     * <p>Stores the next values of the variables into the given array,
+     * in the same order as {@link #getVariables()}.</p>
+     * <p>This method is called concurrently by the sender threads,
+     * once per resource tree, so it must be thread-safe.</p>
+     *
+     * @param values the array to store the values into
+     * @param offset the index of the array where to store the first value
+     */
+    public abstract void feed(String[] values, int offset);
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("type", getType());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s", getType(), getVariables());
+    }
+}
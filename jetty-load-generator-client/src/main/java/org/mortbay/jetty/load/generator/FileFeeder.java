@@ -0,0 +1,284 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A {@link Feeder} whose values are read from the lines of a file.</p>
+ * <p>Each line of the file is split into fields at the {@link #separator(char) separator},
+ * one field per variable, the last variable taking the rest of the line.
+ * A file with a single variable is therefore a plain list of values, one per line,
+ * while a file with many variables is a CSV file; CSV quoting is not supported.</p>
+ * <p>The variable names are either {@link #variables(String...) configured explicitly},
+ * or read from the first line of the file, when it is a {@link #header(boolean) header}.</p>
+ * <p>The file is memory-mapped when the feeder starts, rather than read into the heap,
+ * and its lines are fed in order, wrapping around at the end of the file; only the
+ * values of the line being fed are decoded, so that files of any size can be used.
+ * The file must be encoded in UTF-8.</p>
+ */
+public class FileFeeder extends Feeder {
+    public static final String TYPE = "file";
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final AtomicLong cursor = new AtomicLong();
+    private Path path;
+    private List<String> variables = List.of();
+    private boolean header;
+    private char separator = ',';
+    private ByteBuffer[] segments;
+    private long size;
+    private long dataStart;
+
+    /**
+     * @param path the path of the file to read the values from
+     * @return this FileFeeder
+     */
+    public FileFeeder path(Path path) {
+        this.path = Objects.requireNonNull(path);
+        return this;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @param variables the variable names, in the order of the fields of the lines
+     * @return this FileFeeder
+     */
+    public FileFeeder variables(String... variables) {
+        this.variables = List.of(variables);
+        return this;
+    }
+
+    /**
+     * @param header whether the first line of the file is a header with the variable names
+     * @return this FileFeeder
+     */
+    public FileFeeder header(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * @param separator the ASCII character that separates the fields of the lines
+     * @return this FileFeeder
+     */
+    public FileFeeder separator(char separator) {
+        if (separator == '\n' || separator == '\r' || separator > 0x7F) {
+            throw new IllegalArgumentException("invalid separator " + (int)separator);
+        }
+        this.separator = separator;
+        return this;
+    }
+
+    public char getSeparator() {
+        return separator;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public List<String> getVariables() {
+        if (variables.isEmpty() && isHeader()) {
+            variables = readHeader();
+        }
+        return variables;
+    }
+
+    private List<String> readHeader() {
+        Path path = Objects.requireNonNull(getPath(), "missing path");
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || line.isBlank()) {
+                throw new IllegalArgumentException("missing header in " + path);
+            }
+            List<String> result = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                int end = line.indexOf(getSeparator(), start);
+                if (end < 0) {
+                    result.add(line.substring(start).trim());
+                    break;
+                }
+                result.add(line.substring(start, end).trim());
+                start = end + 1;
+            }
+            return List.copyOf(result);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        Path path = Objects.requireNonNull(getPath(), "missing path");
+        if (getVariables().isEmpty()) {
+            throw new IllegalArgumentException("missing variables for " + path);
+        }
+        try (FileChannel channel = FileChannel.open(path)) {
+            size = channel.size();
+            int count = (int)((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+            segments = new ByteBuffer[count];
+            for (int i = 0; i < count; ++i) {
+                long position = (long)i << SEGMENT_BITS;
+                // The mappings remain valid after the channel is closed.
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, SEGMENT_MASK + 1));
+            }
+        }
+        dataStart = isHeader() ? lineEnd(0) + 1 : 0;
+        long data = dataStart;
+        while (data < size && isLineBreak(byteAt(data))) {
+            ++data;
+        }
+        if (data >= size) {
+            throw new IllegalArgumentException("no values in " + path);
+        }
+        cursor.set(dataStart);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        // The mappings are released when the buffers are garbage collected.
+        segments = null;
+    }
+
+    @Override
+    public void feed(String[] values, int offset) {
+        while (true) {
+            long start = cursor.get();
+            long end = lineEnd(start);
+            long next = end + 1 >= size ? dataStart : end + 1;
+            if (cursor.compareAndSet(start, next)) {
+                if (end > start && byteAt(end - 1) == '\r') {
+                    --end;
+                }
+                // Skip empty lines, as dataStart guarantees at least one non-empty line.
+                if (end > start) {
+                    split(start, end, values, offset);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void split(long start, long end, String[] values, int offset) {
+        int fields = variables.size();
+        for (int i = 0; i < fields; ++i) {
+            long fieldEnd = end;
+            if (i < fields - 1) {
+                fieldEnd = start;
+                while (fieldEnd < end && byteAt(fieldEnd) != separator) {
+                    ++fieldEnd;
+                }
+            }
+            values[offset + i] = decode(start, fieldEnd);
+            start = Math.min(fieldEnd + 1, end);
+        }
+    }
+
+    private String decode(long start, long end) {
+        int length = Math.toIntExact(end - start);
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer segment = segments[(int)(start >>> SEGMENT_BITS)];
+        int index = (int)(start & SEGMENT_MASK);
+        if (index + length <= segment.limit()) {
+            for (int i = 0; i < length; ++i) {
+                bytes[i] = segment.get(index + i);
+            }
+        } else {
+            // The value spans two segments.
+            for (int i = 0; i < length; ++i) {
+                bytes[i] = byteAt(start + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long lineEnd(long start) {
+        long end = start;
+        while (end < size && byteAt(end) != '\n') {
+            ++end;
+        }
+        return end;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int)(position >>> SEGMENT_BITS)].get((int)(position & SEGMENT_MASK));
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("path", Objects.toString(getPath(), null));
+        if (!isHeader()) {
+            out.add("variables", variables.toArray());
+        }
+        out.add("header", isHeader());
+        out.add("separator", String.valueOf(getSeparator()));
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        String path = (String)map.get("path");
+        if (path != null) {
+            path(Path.of(path));
+        }
+        Object variables = map.get("variables");
+        if (variables instanceof Object[]) {
+            variables(Arrays.stream((Object[])variables).map(String::valueOf).toArray(String[]::new));
+        } else if (variables instanceof List) {
+            variables(((List<?>)variables).stream().map(String::valueOf).toArray(String[]::new));
+        }
+        header(map.get("header") == Boolean.TRUE);
+        String separator = (String)map.get("separator");
+        if (separator != null && separator.length() == 1) {
+            separator(separator.charAt(0));
+        }
+    }
+}
@@ -0,0 +1,298 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Dispatches resource events to listeners from dedicated threads,
+ * so that slow listeners do not delay the threads that complete
+ * responses, and therefore do not inflate the measured response times.</p>
+ * <p>Events are published into a bounded, preallocated ring buffer, a
+ * multi-producer multi-consumer queue where each slot has a sequence
+ * number that tells whether the slot is free or holds an event; the
+ * listener threads take the events from the ring buffer, and release
+ * the slot after the listeners have been notified.</p>
+ * <p>When {@link Resource.Info} objects are recycled, the events are copied
+ * into Info objects preallocated for each slot, as the original Info
+ * objects may be reused before the listeners are notified.</p>
+ */
+class ListenerDispatcher extends AbstractLifeCycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ListenerDispatcher.class);
+    private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int SPINS = 64;
+    private static final int NODE = 0;
+    private static final int TREE = 1;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final String name;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] types;
+    private final Resource.Info[] infos;
+    private final Resource.Info[] copies;
+    private final ListenerOverflow overflow;
+    private final int threads;
+    private final Resource.NodeListener nodeListener;
+    private final Resource.TreeListener treeListener;
+    private Thread[] consumers;
+    private volatile boolean running;
+
+    /**
+     * @param name the prefix of the names of the listener threads
+     * @param capacity the capacity of the ring buffer, rounded up to a power of 2
+     * @param threads the number of listener threads
+     * @param overflow what to do with events when the ring buffer is full
+     * @param copy whether to copy the events, rather than retaining them
+     * @param nodeListener the listener that dispatches node events to the resource listeners
+     * @param treeListener the listener that dispatches tree events to the resource listeners
+     */
+    ListenerDispatcher(String name, int capacity, int threads, ListenerOverflow overflow, boolean copy, Resource.NodeListener nodeListener, Resource.TreeListener treeListener) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid threads " + threads);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.types = new int[size];
+        this.infos = new Resource.Info[size];
+        this.copies = copy ? new Resource.Info[size] : null;
+        if (copy) {
+            Resource resource = new Resource();
+            for (int i = 0; i < size; ++i) {
+                copies[i] = resource.newInfo(null);
+            }
+        }
+        this.overflow = overflow;
+        this.threads = threads;
+        this.nodeListener = nodeListener;
+        this.treeListener = treeListener;
+    }
+
+    /**
+     * @return the capacity of the ring buffer
+     */
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of events dropped because the ring buffer was full
+     */
+    long getDropped() {
+        return dropped.longValue();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        // Events not notified by a previous run are discarded.
+        for (int i = 0; i < sequences.length(); ++i) {
+            infos[i] = null;
+            sequences.set(i, i);
+        }
+        enqueued.set(0);
+        dequeued.set(0);
+        completed.set(0);
+        samples.set(0);
+        dropped.reset();
+        running = true;
+        consumers = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            Thread consumer = new Thread(this::consume, name + i);
+            consumer.setDaemon(true);
+            consumers[i] = consumer;
+            consumer.start();
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        running = false;
+        for (Thread consumer : consumers) {
+            LockSupport.unpark(consumer);
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        super.doStop();
+    }
+
+    /**
+     * @param info the node event to publish
+     */
+    void publishNode(Resource.Info info) {
+        publish(NODE, info);
+    }
+
+    /**
+     * @param info the tree event to publish
+     */
+    void publishTree(Resource.Info info) {
+        publish(TREE, info);
+    }
+
+    private void publish(int type, Resource.Info info) {
+        switch (overflow) {
+            case BLOCK: {
+                int attempts = 0;
+                while (!offer(type, info)) {
+                    // Do not block forever if there are no listener threads.
+                    if (!running) {
+                        dropped.increment();
+                        return;
+                    }
+                    backOff(++attempts);
+                }
+                break;
+            }
+            case DROP: {
+                if (!offer(type, info)) {
+                    dropped.increment();
+                }
+                break;
+            }
+            case SAMPLE: {
+                long size = enqueued.get() - dequeued.get();
+                if (size > (mask + 1) / 2 && samples.getAndIncrement() % ListenerOverflow.SAMPLE_RATE != 0) {
+                    dropped.increment();
+                } else if (!offer(type, info)) {
+                    dropped.increment();
+                }
+                break;
+            }
+            default: {
+                throw new IllegalStateException("unknown overflow policy " + overflow);
+            }
+        }
+    }
+
+    private boolean offer(int type, Resource.Info info) {
+        long position = enqueued.get();
+        while (true) {
+            int index = (int)(position & mask);
+            long sequence = sequences.get(index);
+            long difference = sequence - position;
+            if (difference == 0) {
+                if (enqueued.compareAndSet(position, position + 1)) {
+                    types[index] = type;
+                    if (copies == null) {
+                        infos[index] = info;
+                    } else {
+                        Resource.Info copy = copies[index];
+                        copy.copy(info);
+                        infos[index] = copy;
+                    }
+                    // Publishes the slot to the listener threads.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = enqueued.get();
+            } else if (difference < 0) {
+                // The slot still holds the event of the previous lap.
+                return false;
+            } else {
+                position = enqueued.get();
+            }
+        }
+    }
+
+    private boolean poll() {
+        long position = dequeued.get();
+        while (true) {
+            int index = (int)(position & mask);
+            long sequence = sequences.get(index);
+            long difference = sequence - (position + 1);
+            if (difference == 0) {
+                if (dequeued.compareAndSet(position, position + 1)) {
+                    Resource.Info info = infos[index];
+                    try {
+                        if (types[index] == NODE) {
+                            nodeListener.onResourceNode(info);
+                        } else {
+                            treeListener.onResourceTree(info);
+                        }
+                    } catch (Throwable x) {
+                        LOGGER.info("ignored failure while dispatching {}", info, x);
+                    }
+                    infos[index] = null;
+                    // Releases the slot to producers, only after the
+                    // listeners are notified, so that copies are not
+                    // overwritten while the listeners read them.
+                    sequences.set(index, position + mask + 1);
+                    completed.incrementAndGet();
+                    return true;
+                }
+                position = dequeued.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = dequeued.get();
+            }
+        }
+    }
+
+    private void consume() {
+        int idle = 0;
+        while (running) {
+            if (poll()) {
+                idle = 0;
+            } else if (++idle < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * <p>Waits until the listeners have been notified of all the published events.</p>
+     */
+    void flush() {
+        int attempts = 0;
+        while (running && completed.get() < enqueued.get()) {
+            backOff(++attempts);
+        }
+    }
+
+    private static void backOff(int attempts) {
+        if (attempts < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[capacity=%d,threads=%d,overflow=%s,dropped=%d]", getClass().getSimpleName(), hashCode(), getCapacity(), threads, overflow, getDropped());
+    }
+}
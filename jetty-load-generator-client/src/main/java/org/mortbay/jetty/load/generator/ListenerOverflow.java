@@ -0,0 +1,50 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+/**
+ * <p>What to do with resource events when the ring buffer of the
+ * asynchronous listener dispatch is full, because the listeners
+ * are slower than the rate of events.</p>
+ *
+ * @see LoadGenerator.Builder#listenerQueueSize(int)
+ */
+public enum ListenerOverflow {
+    /**
+     * <p>Waits until the listener threads make room for the event.</p>
+     * <p>No event is lost, but the threads that complete responses are
+     * stalled, which throttles the load generation.</p>
+     */
+    BLOCK,
+    /**
+     * <p>Drops the event.</p>
+     * <p>The load generation is not affected, but listeners miss the
+     * events of entire periods of time when they fall behind.</p>
+     */
+    DROP,
+    /**
+     * <p>When the ring buffer is more than half full, publishes only one event
+     * out of {@link #SAMPLE_RATE}, and drops the others; when the ring buffer
+     * is full, drops the event.</p>
+     * <p>The load generation is not affected, and listeners see a sample of
+     * the events evenly spread over time, rather than missing entire periods
+     * of time.</p>
+     */
+    SAMPLE;
+
+    /**
+     * <p>The sample rate of {@link #SAMPLE}.</p>
+     */
+    public static final int SAMPLE_RATE = 8;
+}
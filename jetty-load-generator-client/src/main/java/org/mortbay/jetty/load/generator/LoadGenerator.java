@@ -13,47 +13,77 @@
 
 package org.mortbay.jetty.load.generator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.EventListener;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpRequest;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Result;
-import org.eclipse.jetty.client.util.BytesRequestContent;
+import org.eclipse.jetty.client.util.StringRequestContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.io.ClientConnector;
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.SelectorManager;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CountingCallback;
+import org.eclipse.jetty.util.HttpCookieStore;
 import org.eclipse.jetty.util.SocketAddressResolver;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
@@ -107,10 +137,15 @@ import org.slf4j.LoggerFactory;
  *
  * <p>Rather than counting iterations, the load generator can run for a specified time using
  * {@link Builder#runFor(long, TimeUnit)} instead of {@link Builder#iterationsPerThread(int)}.</p>
+ * <p>Similarly, the warmup can last for a specified time using {@link Builder#warmupFor(long, TimeUnit)},
+ * or until the response times of the warmup resource trees stabilize using
+ * {@link Builder#adaptiveWarmup(boolean)}.</p>
  */
 @ManagedObject("LoadGenerator")
 public class LoadGenerator extends ContainerLifeCycle {
     private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final int MAX_USER_SELECTIONS = 16;
+    private static final int MAX_POOLED_SENDERS = 1024;
 
     /**
      * @return a new Builder
@@ -121,17 +156,49 @@ public class LoadGenerator extends ContainerLifeCycle {
 
     private final AtomicInteger threadIds = new AtomicInteger();
     private final Config config;
+    private final int senderLoops;
     private final CyclicBarrier barrier;
+    private final LongAdder missedSlots = new LongAdder();
+    private final LongAdder thinkTime = new LongAdder();
+    private final AutoLock lock = new AutoLock();
+    private final List<SingleWriterRecorder> sendLagRecorders = new CopyOnWriteArrayList<>();
+    private Histogram sendLag;
     private ExecutorService executorService;
+    private Pacer pacer;
+    private Pacer profilePacer;
+    private WarmupStability warmupStability;
+    private SharedClientConnector sharedConnector;
+    private Map<Resource, RequestTemplate> requestTemplates = Map.of();
+    private ResourcePlan[] resourcePlans;
+    private AliasSampler scenarioSampler;
+    private Feeder[] feeders = new Feeder[0];
+    private Resource.NodeListener[] nodeListeners = new Resource.NodeListener[0];
+    private Resource.TreeListener[] treeListeners = new Resource.TreeListener[0];
+    private Request.Listener requestListener;
+    private ListenerDispatcher listenerDispatcher;
+    private int[] feederOffsets = new int[0];
+    private int variables;
     private volatile boolean interrupted;
+    private volatile int resourceRate;
+    private volatile int usersPerThread;
+    private volatile long rateRampUpPeriod;
 
     LoadGenerator(Config config) {
         this.config = config;
-        this.barrier = new CyclicBarrier(config.threads);
+        // With virtual threads, each user has its own sender loop.
+        this.senderLoops = config.isVirtualThreads() ? config.getThreads() * config.getUsersPerThread() : config.getThreads();
+        this.barrier = new CyclicBarrier(senderLoops);
         addBean(config);
         addBean(config.getExecutor());
         addBean(config.getScheduler());
         addBean(config.getSslContextFactory());
+        config.getFeeders().forEach(this::addBean);
+        if (config.getListenerQueueSize() > 0) {
+            String name = String.format("%s@%x-listener-", getClass().getSimpleName(), hashCode());
+            listenerDispatcher = new ListenerDispatcher(name, config.getListenerQueueSize(), config.getListenerThreads(),
+                    config.getListenerOverflow(), config.isRecycleInfos(), this::dispatchResourceNodeEvent, this::dispatchResourceTreeEvent);
+            addBean(listenerDispatcher);
+        }
     }
 
     private CompletableFuture<Void> spawn() {
@@ -147,11 +214,99 @@ public class LoadGenerator extends ContainerLifeCycle {
 
     @Override
     protected void doStart() throws Exception {
-        executorService = Executors.newCachedThreadPool(this::newThread);
+        if (config.isVirtualThreads()) {
+            executorService = VirtualThreads.newExecutor(String.format("%s@%x-sender-", getClass().getSimpleName(), hashCode()));
+        } else {
+            executorService = Executors.newCachedThreadPool(this::newThread);
+        }
         interrupted = false;
+        resourceRate = config.getResourceRate();
+        usersPerThread = config.getUsersPerThread();
+        rateRampUpPeriod = config.getRateRampUpPeriod();
+        missedSlots.reset();
+        thinkTime.reset();
+        sendLagRecorders.clear();
+        try (AutoLock ignored = lock.lock()) {
+            sendLag = new Histogram(3);
+        }
+        if (config.isSharedPacing()) {
+            pacer = new Pacer();
+            profilePacer = new Pacer();
+        }
+        warmupStability = config.isAdaptiveWarmup() ? new WarmupStability() : null;
+        requestTemplates = compile(config, newVariables());
+        // Dispatch tables, so that events are not dispatched by type for every request.
+        List<Resource.Listener> resourceListeners = config.getResourceListeners();
+        nodeListeners = resourceListeners.stream()
+                .filter(l -> l instanceof Resource.NodeListener)
+                .map(l -> (Resource.NodeListener)l)
+                .toArray(Resource.NodeListener[]::new);
+        treeListeners = resourceListeners.stream()
+                .filter(l -> l instanceof Resource.TreeListener)
+                .map(l -> (Resource.TreeListener)l)
+                .toArray(Resource.TreeListener[]::new);
+        requestListener = RequestListeners.combine(config.getRequestListeners());
+        List<Scenario> scenarios = config.getScenarios();
+        if (scenarios.isEmpty()) {
+            resourcePlans = new ResourcePlan[]{new ResourcePlan(config.getResource())};
+            scenarioSampler = null;
+        } else {
+            resourcePlans = IntStream.range(0, scenarios.size())
+                    .mapToObj(i -> new ResourcePlan(scenarios.get(i).getResource(), i))
+                    .toArray(ResourcePlan[]::new);
+            scenarioSampler = new AliasSampler(scenarios.stream().mapToDouble(Scenario::getWeight).toArray());
+        }
+        if (config.isSharedConnector() && sharedConnector == null) {
+            sharedConnector = new SharedClientConnector();
+            configure(sharedConnector, config);
+            int selectors = config.getHttpClientTransportBuilder().getSelectors();
+            if (selectors > 0) {
+                sharedConnector.setSelectors(selectors);
+            }
+            addBean(sharedConnector);
+        }
         super.doStart();
     }
 
+    /**
+     * <p>Assigns a slot to each variable of the feeders, so that the
+     * values of the variables can be stored in an array.</p>
+     *
+     * @return the slots of the variables, indexed by variable name
+     */
+    private Map<String, Integer> newVariables() {
+        List<Feeder> feeders = config.getFeeders();
+        Map<String, Integer> result = new HashMap<>();
+        int[] offsets = new int[feeders.size()];
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = result.size();
+            for (String variable : feeders.get(i).getVariables()) {
+                if (result.putIfAbsent(variable, result.size()) != null) {
+                    throw new IllegalArgumentException("duplicate variable " + variable);
+                }
+            }
+        }
+        this.feeders = feeders.toArray(Feeder[]::new);
+        this.feederOffsets = offsets;
+        this.variables = result.size();
+        return result;
+    }
+
+    /**
+     * @return the values of the variables for a resource tree, or null if there are no feeders
+     */
+    private String[] feed() {
+        Feeder[] feeders = this.feeders;
+        if (feeders.length == 0) {
+            return null;
+        }
+        String[] values = new String[variables];
+        for (int i = 0; i < feeders.length; ++i) {
+            feeders[i].feed(values, feederOffsets[i]);
+        }
+        return values;
+    }
+
     private Thread newThread(Runnable job) {
         return new Thread(job, String.format("%s@%x-sender-%d", getClass().getSimpleName(), hashCode(), threadIds.getAndIncrement()));
     }
@@ -189,13 +344,13 @@ public class LoadGenerator extends ContainerLifeCycle {
                 .thenCompose(x -> {
                     // These CompletableFutures will be completed when process()
                     // returns, i.e. when requests have been scheduled for send.
-                    CompletableFuture<?>[] requests = new CompletableFuture<?>[config.getThreads()];
+                    CompletableFuture<?>[] requests = new CompletableFuture<?>[senderLoops];
                     // These CompletableFutures will be completed when responses are completed.
-                    CompletableFuture<?>[] responses = new CompletableFuture<?>[config.getThreads()];
+                    CompletableFuture<?>[] responses = new CompletableFuture<?>[senderLoops];
                     for (int i = 0; i < requests.length; ++i) {
                         int index = i;
                         Supplier<CompletableFuture<Void>> sender = () -> {
-                            CompletableFuture<Void> complete = process();
+                            CompletableFuture<Void> complete = process(index);
                             responses[index] = complete;
                             return complete;
                         };
@@ -205,6 +360,7 @@ public class LoadGenerator extends ContainerLifeCycle {
                             .thenRun(this::fireEndEvent)
                             .thenCompose(v -> CompletableFuture.allOf(responses));
                 })
+                .thenRun(this::flushResourceEvents)
                 .thenRun(this::fireCompleteEvent)
                 // HttpClient cannot be stopped from one of its own threads.
                 .whenCompleteAsync((r, x) -> {
@@ -235,7 +391,171 @@ public class LoadGenerator extends ContainerLifeCycle {
         return interrupted;
     }
 
-    private CompletableFuture<Void> process() {
+    /**
+     * <p>Returns the number of resource events that have been dropped, because the
+     * ring buffer of the asynchronous dispatch of resource events was full.</p>
+     *
+     * @return the number of resource events dropped
+     * @see Builder#listenerQueueSize(int)
+     */
+    @ManagedAttribute("Number of resource events dropped")
+    public long getDroppedListenerEvents() {
+        ListenerDispatcher dispatcher = listenerDispatcher;
+        return dispatcher == null ? 0 : dispatcher.getDropped();
+    }
+
+    /**
+     * <p>Returns the number of non-warmup send slots that have been missed.</p>
+     * <p>A send slot is missed when the resource tree is sent later than its
+     * scheduled send time by more than the nominal period between sends,
+     * for example because the sender thread was stalled by a blocking connect
+     * or by a GC pause.</p>
+     *
+     * @return the number of send slots missed
+     * @see Builder#sharedPacing(boolean)
+     */
+    @ManagedAttribute("Number of send slots missed")
+    public long getMissedSlots() {
+        return missedSlots.longValue();
+    }
+
+    /**
+     * <p>Returns the total time, in ns, that users spent between the completion
+     * of a non-warmup resource tree and the send of their next resource tree
+     * in the {@link Builder#closedModel(boolean) closed model}.</p>
+     * <p>This is the configured think time, plus the time users were ready to
+     * send but waited for the sender.</p>
+     *
+     * @return the total think time, in ns, or zero in the open model
+     */
+    @ManagedAttribute("Total think time of users in the closed model, in ns")
+    public long getTotalThinkTime() {
+        return thinkTime.longValue();
+    }
+
+    /**
+     * @return the current resource rate, initially the {@link Config#getResourceRate() configured one}
+     * @see #setResourceRate(int)
+     */
+    @ManagedAttribute("Current send rate in resource trees per second")
+    public int getResourceRate() {
+        return resourceRate;
+    }
+
+    /**
+     * <p>Changes the resource rate while the load generation is running,
+     * keeping the connections already opened by the users.</p>
+     * <p>The rate changes linearly from the current rate to the new rate
+     * over the {@link #getRateRampUpPeriod() rate ramp-up period}, or
+     * immediately if the rate ramp-up period is zero.
+     * The rate change has no effect in the {@link Builder#closedModel(boolean)
+     * closed model}, or when a {@link Builder#loadProfile(LoadProfile) load profile}
+     * drives the rate.</p>
+     *
+     * @param resourceRate the new resource rate, in resource trees per second
+     */
+    @ManagedOperation(value = "Changes the send rate in resource trees per second", impact = "ACTION")
+    public void setResourceRate(@Name("resourceRate") int resourceRate) {
+        if (resourceRate <= 0) {
+            throw new IllegalArgumentException("invalid resource rate " + resourceRate);
+        }
+        try (AutoLock ignored = lock.lock()) {
+            int rate = this.resourceRate;
+            if (rate == resourceRate) {
+                return;
+            }
+            // Sender threads change their own pacing when they notice
+            // the new rate, but a shared pacer must change only once.
+            Pacer pacer = this.pacer;
+            if (pacer != null) {
+                long fromPeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+                long toPeriod = TimeUnit.SECONDS.toNanos(1) / resourceRate;
+                pacer.change(fromPeriod, toPeriod, TimeUnit.SECONDS.toNanos(rateRampUpPeriod));
+            }
+            this.resourceRate = resourceRate;
+        }
+    }
+
+    /**
+     * @return the current number of users per sender thread, initially the {@link Config#getUsersPerThread() configured one}
+     * @see #setUsersPerThread(int)
+     */
+    @ManagedAttribute("Current number of users per sender thread")
+    public int getUsersPerThread() {
+        return usersPerThread;
+    }
+
+    /**
+     * <p>Changes the number of users per sender thread while the load generation is running.</p>
+     * <p>Sender threads create and start new users when the number of users grows,
+     * and leave idle the extra users when the number of users shrinks, so that
+     * they can be reused if the number of users grows again.</p>
+     *
+     * @param usersPerThread the new number of users per sender thread
+     * @throws IllegalStateException if each user has its own {@link Builder#virtualThreads(boolean) virtual thread}
+     */
+    @ManagedOperation(value = "Changes the number of users per sender thread", impact = "ACTION")
+    public void setUsersPerThread(@Name("usersPerThread") int usersPerThread) {
+        if (usersPerThread <= 0) {
+            throw new IllegalArgumentException("invalid users per thread " + usersPerThread);
+        }
+        if (config.isVirtualThreads()) {
+            throw new IllegalStateException("cannot change the users per thread with virtual threads");
+        }
+        this.usersPerThread = usersPerThread;
+    }
+
+    /**
+     * @return the current rate ramp-up period, in seconds, initially the {@link Config#getRateRampUpPeriod() configured one}
+     * @see #setRateRampUpPeriod(long)
+     */
+    @ManagedAttribute("Current rate ramp up period in seconds")
+    public long getRateRampUpPeriod() {
+        return rateRampUpPeriod;
+    }
+
+    /**
+     * <p>Changes the period over which subsequent {@link #setResourceRate(int)
+     * resource rate changes} ramp from the current rate to the new rate.</p>
+     *
+     * @param rateRampUpPeriod the rate ramp-up period, in seconds, or zero for immediate rate changes
+     */
+    @ManagedOperation(value = "Changes the rate ramp up period in seconds", impact = "ACTION")
+    public void setRateRampUpPeriod(@Name("rateRampUpPeriod") long rateRampUpPeriod) {
+        if (rateRampUpPeriod < 0) {
+            throw new IllegalArgumentException("invalid rate ramp up period " + rateRampUpPeriod);
+        }
+        try (AutoLock ignored = lock.lock()) {
+            this.rateRampUpPeriod = rateRampUpPeriod;
+        }
+    }
+
+    /**
+     * <p>Returns the histogram of the non-warmup send lags, in ns.</p>
+     * <p>The send lag is the time between the intended send time of a
+     * resource tree and the time the sender thread actually sends it.
+     * Large send lags indicate that the load generator itself is the
+     * bottleneck, for example because the sender threads are starved of
+     * CPU, or because the {@link Builder#sleepStrategy(SleepStrategy)
+     * sleep strategy} is not precise enough for the resource rate.</p>
+     * <p>Each sender thread records its send lags without contention;
+     * this method aggregates the send lags recorded so far.</p>
+     *
+     * @return the histogram of send lags
+     */
+    public Histogram getSendLagHistogram() {
+        try (AutoLock ignored = lock.lock()) {
+            sendLagRecorders.forEach(recorder -> sendLag.add(recorder.getIntervalHistogram()));
+            return sendLag.copy();
+        }
+    }
+
+    @ManagedAttribute("Send lag 99th percentile in ns")
+    public long getSendLagP99() {
+        return getSendLagHistogram().getValueAtPercentile(99);
+    }
+
+    private CompletableFuture<Void> process(int index) {
         // The implementation of this method may look unnecessary complicated.
         // The reason is that Callbacks propagate completion inwards,
         // while CompletableFutures propagate completion outwards.
@@ -245,8 +565,13 @@ public class LoadGenerator extends ContainerLifeCycle {
         Callback.Completable anyFailure = new Callback.Completable();
 
         // This is the callback to use for warmup iterations.
-        int warmupIterations = config.getWarmupIterationsPerThread();
-        WarmupCallback warmupCallback = new WarmupCallback(anyFailure, warmupIterations);
+        WarmupCallback warmupCallback = new WarmupCallback(anyFailure);
+        // Resource tree senders are recycled per sender loop
+        // and per resource plan, if configured.
+        SenderPool[] senderPools = null;
+        if (config.isRecycleInfos()) {
+            senderPools = Arrays.stream(resourcePlans).map(SenderPool::new).toArray(SenderPool[]::new);
+        }
 
         // This is the callback to use for run iterations.
         RunCallback runCallback = new RunCallback();
@@ -264,109 +589,17 @@ public class LoadGenerator extends ContainerLifeCycle {
         String threadName = Thread.currentThread().getName();
 
         try {
-            // Wait for all the sender threads to arrive here.
+            // Wait for all the sender loops to arrive here.
             awaitBarrier();
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("sender thread running: {}", threadName);
             }
 
-            Collection<Connection.Listener> connectionListeners = getBeans(Connection.Listener.class);
-            HttpClient[] clients = new HttpClient[config.getUsersPerThread()];
-            for (int i = 0; i < clients.length; ++i) {
-                HttpClient client = clients[i] = newHttpClient(getConfig());
-                connectionListeners.forEach(client::addBean);
-                addManaged(client);
-            }
-
-            int rate = config.getResourceRate();
-            long ratePeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(config.getThreads()) / rate : 0;
-            long rateRampUpPeriod = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
-
-            long runFor = config.getRunFor();
-            int iterations = runFor > 0 ? 0 : config.getIterationsPerThread();
-
-            int clientIndex = 0;
-            boolean warmup = true;
-            long begin = System.nanoTime();
-            long warmupWait = 0;
-            long loops = 0;
-            long rampUpLoops = 0;
-
-            while (true) {
-                ++loops;
-                if (ratePeriod > 0) {
-                    // If there is a ramp-up, calculate how
-                    // long to sleep before sending a request.
-                    long expectedSendTime;
-                    long elapsedNanos = System.nanoTime() - begin - warmupWait;
-                    if (rateRampUpPeriod > 0) {
-                        if (elapsedNanos < rateRampUpPeriod) {
-                            ++rampUpLoops;
-                            // The curve of the rate over time during the ramp-up is a straight line: y = k * x.
-                            // The area (i.e. the integral) below the curve is the number of requests sent.
-                            // We want to calculate the x coordinate (i.e. the send time) when the area is 1, 2, etc.
-                            // The area (i.e. the number of ramp-up loops) is: a = 1/2 * k * x^2 and we want to find x.
-                            expectedSendTime = begin + Math.round(Math.sqrt(2.0D * rampUpLoops * ratePeriod * rateRampUpPeriod));
-                        } else {
-                            // Correct by 1 to take into account that the last ramp-up
-                            // expected send time is likely to be past the rampUpPeriod.
-                            expectedSendTime = begin + rateRampUpPeriod + (loops - rampUpLoops + 1) * ratePeriod;
-                        }
-                    } else {
-                        expectedSendTime = begin + loops * ratePeriod;
-                    }
-                    long sleep = Math.max(0, expectedSendTime - System.nanoTime());
-                    // Note that the sleep below may over-sleep or under-sleep.
-                    // Either case, the next loop will adjust the next sleep time.
-                    // Even in case of long pauses (e.g. GC) during one loop, the
-                    // next loops will catch up by sleeping very little or zero.
-                    sleep(sleep);
-                }
-
-                Callback callback;
-                boolean lastIteration = false;
-                if (warmup) {
-                    if (warmupIterations == 0) {
-                        warmup = false;
-                        long start = System.nanoTime();
-                        warmupCallback.join();
-                        warmupWait = System.nanoTime() - start;
-                        continue;
-                    } else {
-                        --warmupIterations;
-                        callback = warmupCallback;
-                    }
-                } else {
-                    if (iterations > 0) {
-                        lastIteration = --iterations == 0;
-                    } else {
-                        lastIteration = runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) >= runFor;
-                    }
-                    runCallback.increment(lastIteration);
-                    callback = runCallback;
-                }
-
-                if (lastIteration) {
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("sending last resource tree");
-                    }
-                }
-
-                HttpClient client = clients[clientIndex];
-                sendResourceTree(client, config.getResource(), warmup, callback);
-
-                if (lastIteration || anyFailure.isCompletedExceptionally()) {
-                    break;
-                }
-
-                if (isInterrupted()) {
-                    throw new InterruptedException("sender thread interrupted");
-                }
-
-                if (++clientIndex == clients.length) {
-                    clientIndex = 0;
-                }
+            if (config.isVirtualThreads()) {
+                runUser(index, warmupCallback, runCallback, anyFailure, senderPools);
+            } else {
+                runSenderThread(index, warmupCallback, runCallback, anyFailure, senderPools);
             }
         } catch (Throwable x) {
             if (LOGGER.isDebugEnabled()) {
@@ -395,19 +628,499 @@ public class LoadGenerator extends ContainerLifeCycle {
                 });
     }
 
+    /**
+     * <p>The loop of a platform sender thread, that sends resource
+     * trees on behalf of its users in a round-robin fashion.</p>
+     *
+     * @param index the index of the sender thread
+     * @param warmupCallback the callback for warmup iterations
+     * @param runCallback the callback for run iterations
+     * @param anyFailure the callback completed by the first failure
+     * @param senderPools the resource tree senders to recycle per resource plan, or null
+     * @throws InterruptedException if the load generation is interrupted
+     */
+    private void runSenderThread(int index, WarmupCallback warmupCallback, RunCallback runCallback, Callback.Completable anyFailure, SenderPool[] senderPools) throws InterruptedException {
+        long warmupFor = TimeUnit.MILLISECONDS.toNanos(config.getWarmupFor());
+        int warmupIterations = warmupFor > 0 ? 0 : config.getWarmupIterationsPerThread();
+        ResourcePlan[] resourcePlans = this.resourcePlans;
+        int threads = config.getThreads();
+
+        Collection<Connection.Listener> connectionListeners = getBeans(Connection.Listener.class);
+        int users = usersPerThread;
+        HttpClient[] clients = new HttpClient[users];
+        for (int i = 0; i < clients.length; ++i) {
+            clients[i] = newUser(connectionListeners);
+        }
+        // Virtual users are multiplexed over the users' HttpClients.
+        VirtualUser[] virtualUsers = newVirtualUsers(index);
+        IntSupplier userSelector = virtualUsers == null ? null : config.getUserSelection().newSelector(virtualUsers.length);
+
+        // The resource rate and the users may be changed while running.
+        int rate = resourceRate;
+        long ratePeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(threads) / rate : 0;
+        long rateRampUpPeriod = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
+        ArrivalProcess.Arrivals arrivals = config.getArrivalProcess().newArrivals(index);
+        LoadProfile loadProfile = config.getLoadProfile();
+        SingleWriterRecorder sendLagRecorder = new SingleWriterRecorder(3);
+        sendLagRecorders.add(sendLagRecorder);
+        // With shared pacing, sender threads claim send
+        // slots from a pacer at the total resource rate.
+        Pacer pacer = this.pacer;
+        long pacerRatePeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long sharedRatePeriod = pacerRatePeriod;
+
+        // In the closed model, users become ready to send
+        // after their previous resource tree completed and
+        // they have thought for a while; the rate ramp-up,
+        // if any, spreads the first sends of all the users.
+        boolean closedModel = config.isClosedModel();
+        long thinkNanos = TimeUnit.MILLISECONDS.toNanos(config.getThinkTime());
+        // Think times are independent of the spacing of sends.
+        ArrivalProcess.Arrivals thinkTimes = config.getThinkTimeProcess().newArrivals(index);
+        DelayQueue<ThinkingUser> readyUsers = new DelayQueue<>();
+        // The users that are either ready, thinking or waiting for their resource tree.
+        BitSet activeUsers = new BitSet();
+        if (closedModel) {
+            long now = System.nanoTime();
+            int allUsers = users * threads;
+            for (int i = 0; i < users; ++i) {
+                long readyTime = now + rateRampUpPeriod * (i * threads + index) / allUsers;
+                readyUsers.offer(new ThinkingUser(i, readyTime, readyTime));
+                activeUsers.set(i);
+            }
+        }
+
+        long runFor = config.getRunFor();
+        int iterations = runFor > 0 ? 0 : config.getIterationsPerThread();
+
+        int clientIndex = 0;
+        boolean warmup = true;
+        long begin = System.nanoTime();
+        // The run time is measured from the end of the warmup.
+        long runBegin = begin;
+        long warmupWait = 0;
+        Schedule schedule = new Schedule(begin, ratePeriod, rateRampUpPeriod);
+        long profileBegin = 0;
+        double profileSends = 0;
+        long pacerBegin = pacer == null ? 0 : pacer.start();
+
+        while (true) {
+            int liveUsers = usersPerThread;
+            if (liveUsers != users) {
+                if (liveUsers > clients.length) {
+                    int length = clients.length;
+                    clients = Arrays.copyOf(clients, liveUsers);
+                    for (int i = length; i < clients.length; ++i) {
+                        clients[i] = newUser(connectionListeners);
+                    }
+                }
+                if (closedModel) {
+                    // Users beyond the new number of users are
+                    // discarded when they become ready to send.
+                    long now = System.nanoTime();
+                    for (int i = 0; i < liveUsers; ++i) {
+                        if (!activeUsers.get(i)) {
+                            activeUsers.set(i);
+                            readyUsers.offer(new ThinkingUser(i, now, now));
+                        }
+                    }
+                }
+                users = liveUsers;
+                if (clientIndex >= users) {
+                    clientIndex = 0;
+                }
+            }
+
+            int liveRate = resourceRate;
+            if (liveRate != rate) {
+                long liveRatePeriod = TimeUnit.SECONDS.toNanos(threads) / liveRate;
+                if (pacer == null) {
+                    // Continue the schedule from now at the new
+                    // rate, rather than catching up or waiting.
+                    schedule.change(liveRatePeriod, TimeUnit.SECONDS.toNanos(this.rateRampUpPeriod));
+                } else {
+                    sharedRatePeriod = TimeUnit.SECONDS.toNanos(1) / liveRate;
+                }
+                rate = liveRate;
+                ratePeriod = liveRatePeriod;
+            }
+
+            // The time the resource tree is intended to be sent,
+            // used to correct response times for coordinated omission.
+            long expectedSendTime;
+            // After warmup, the load profile, if any, paces the sends.
+            boolean profiled = loadProfile != null && !warmup;
+            ThinkingUser user = null;
+            if (closedModel) {
+                user = takeReadyUser(readyUsers);
+                if (user.index >= users) {
+                    activeUsers.clear(user.index);
+                    continue;
+                }
+                clientIndex = user.index;
+                expectedSendTime = user.readyTime;
+                if (!warmup) {
+                    thinkTime.add(System.nanoTime() - user.completeTime);
+                }
+            } else if (ratePeriod > 0 && !profiled && pacer != null) {
+                double slot = pacer.claim(arrivals.next());
+                expectedSendTime = pacerBegin + pacer.timeAt(slot, pacerRatePeriod, rateRampUpPeriod);
+                pace(expectedSendTime, sharedRatePeriod, warmup);
+            } else if (ratePeriod > 0 && !profiled) {
+                // The ramp-up does not account for the wait for the warmup
+                // responses, but the schedule catches up with it.
+                expectedSendTime = schedule.next(arrivals.next(), System.nanoTime() - begin - warmupWait);
+                // Note that the sleep below may over-sleep or under-sleep.
+                // Either case, the next loop will adjust the next sleep time.
+                // Even in case of long pauses (e.g. GC) during one loop, the
+                // next loops will catch up by sleeping very little or zero.
+                pace(expectedSendTime, ratePeriod, warmup);
+            } else {
+                expectedSendTime = System.nanoTime();
+            }
+
+            Callback callback;
+            boolean lastIteration = false;
+            if (warmup) {
+                if (isWarmupComplete(warmupIterations, warmupFor, System.nanoTime() - begin)) {
+                    warmup = false;
+                    long start = System.nanoTime();
+                    warmupCallback.join();
+                    warmupWait = System.nanoTime() - start;
+                    // Without warmup, the run began with the first send slot.
+                    if (warmupFor > 0 || config.getWarmupIterationsPerThread() > 0) {
+                        runBegin = System.nanoTime();
+                    }
+                    profileBegin = profilePacer == null ? System.nanoTime() : profilePacer.start();
+                    if (user != null) {
+                        long now = System.nanoTime();
+                        readyUsers.offer(new ThinkingUser(user.index, now, now));
+                    }
+                    continue;
+                } else {
+                    --warmupIterations;
+                    warmupCallback.increment();
+                    callback = warmupCallback;
+                }
+            } else {
+                if (loadProfile != null) {
+                    // The load profile rates are total rates across sender threads.
+                    double slot;
+                    if (profilePacer == null) {
+                        profileSends += arrivals.next();
+                        slot = profileSends * threads;
+                    } else {
+                        slot = profilePacer.claim(arrivals.next());
+                    }
+                    long profileTime = loadProfile.timeAt(slot);
+                    expectedSendTime = profileBegin + profileTime;
+                    double profileRate = loadProfile.rateAt(profileTime);
+                    long profileRatePeriod = profileRate > 0 ? Math.round(TimeUnit.SECONDS.toNanos(1) * (double)threads / profileRate) : Long.MAX_VALUE;
+                    pace(expectedSendTime, profilePacer == null ? profileRatePeriod : profileRatePeriod / threads, false);
+                    lastIteration = profileTime >= loadProfile.getDuration();
+                } else if (iterations > 0) {
+                    lastIteration = --iterations == 0;
+                } else {
+                    lastIteration = runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - runBegin) >= runFor;
+                }
+                runCallback.increment(lastIteration);
+                callback = runCallback;
+            }
+
+            if (lastIteration) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("sending last resource tree");
+                }
+            }
+
+            if (closedModel) {
+                callback = new ThinkCallback(callback, readyUsers, clientIndex, Math.round(thinkNanos * thinkTimes.next()));
+            }
+
+            if (!warmup) {
+                sendLagRecorder.recordValue(Math.max(0, System.nanoTime() - expectedSendTime));
+            }
+
+            HttpClient client = clients[clientIndex];
+            VirtualUser virtualUser = null;
+            if (virtualUsers != null) {
+                virtualUser = selectVirtualUser(virtualUsers, userSelector, Math.round(thinkNanos * thinkTimes.next()));
+                if (config.isStickyUsers()) {
+                    client = clients[virtualUser.getId() % users];
+                }
+            }
+            int scenario = nextScenario();
+            SenderPool senderPool = senderPools == null ? null : senderPools[scenario];
+            sendResourceTree(client, resourcePlans[scenario], warmup, expectedSendTime, virtualUser, senderPool, callback);
+
+            if (lastIteration || anyFailure.isCompletedExceptionally()) {
+                break;
+            }
+
+            if (isInterrupted()) {
+                throw new InterruptedException("sender thread interrupted");
+            }
+
+            if (++clientIndex >= users) {
+                clientIndex = 0;
+            }
+        }
+    }
+
+    /**
+     * <p>The loop of a single user, running in its own virtual thread.</p>
+     * <p>The resource rate is split among all users, and the sends of
+     * different users are spread within the per-user rate period.
+     * After warmup, the schedule resumes after the wait for the warmup
+     * responses, rather than catching up with a burst of sends.</p>
+     *
+     * @param user the index of the user, among all users
+     * @param warmupCallback the callback for warmup iterations
+     * @param runCallback the callback for run iterations
+     * @param anyFailure the callback completed by the first failure
+     * @param senderPools the resource tree senders to recycle per resource plan, or null
+     * @throws InterruptedException if the load generation is interrupted
+     */
+    private void runUser(int user, WarmupCallback warmupCallback, RunCallback runCallback, Callback.Completable anyFailure, SenderPool[] senderPools) throws InterruptedException {
+        long warmupFor = TimeUnit.MILLISECONDS.toNanos(config.getWarmupFor());
+        int warmupIterations = warmupFor > 0 ? 0 : config.getWarmupIterationsPerThread();
+        ResourcePlan[] resourcePlans = this.resourcePlans;
+        int users = config.getThreads() * config.getUsersPerThread();
+
+        HttpClient client = newUser(getBeans(Connection.Listener.class));
+
+        // The resource rate may be changed while running.
+        int rate = resourceRate;
+        long userRatePeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(users) / rate : 0;
+        long rateRampUpPeriod = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
+        ArrivalProcess.Arrivals arrivals = config.getArrivalProcess().newArrivals(user);
+        LoadProfile loadProfile = config.getLoadProfile();
+        SingleWriterRecorder sendLagRecorder = new SingleWriterRecorder(3);
+        sendLagRecorders.add(sendLagRecorder);
+        // With shared pacing, users claim send slots
+        // from a pacer at the total resource rate.
+        Pacer pacer = this.pacer;
+        long pacerRatePeriod = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long sharedRatePeriod = pacerRatePeriod;
+
+        // In the closed model, the user becomes ready to send
+        // after its previous resource tree completed and it
+        // has thought for a while; the rate ramp-up, if any,
+        // spreads the first sends of all the users.
+        boolean closedModel = config.isClosedModel();
+        long thinkNanos = TimeUnit.MILLISECONDS.toNanos(config.getThinkTime());
+        ArrivalProcess.Arrivals thinkTimes = config.getThinkTimeProcess().newArrivals(user);
+        DelayQueue<ThinkingUser> ready = new DelayQueue<>();
+        if (closedModel) {
+            long readyTime = System.nanoTime() + rateRampUpPeriod * user / users;
+            ready.offer(new ThinkingUser(0, readyTime, readyTime));
+        }
+
+        long runFor = config.getRunFor();
+        int iterations = runFor > 0 ? 0 : config.getIterationsPerThread();
+
+        boolean warmup = true;
+        long begin = System.nanoTime();
+        // The run time is measured from the end of the warmup.
+        long runBegin = begin;
+        // The sends of different users are spread within the rate period.
+        Schedule schedule = new Schedule(begin + userRatePeriod * user / users, userRatePeriod, rateRampUpPeriod);
+        long profileBegin = 0;
+        double profileSends = 0;
+        long pacerBegin = pacer == null ? 0 : pacer.start();
+
+        while (true) {
+            int liveRate = resourceRate;
+            if (liveRate != rate) {
+                long liveUserRatePeriod = TimeUnit.SECONDS.toNanos(users) / liveRate;
+                if (pacer == null) {
+                    // Continue the schedule from now at the new
+                    // rate, rather than catching up or waiting.
+                    schedule.change(liveUserRatePeriod, TimeUnit.SECONDS.toNanos(this.rateRampUpPeriod));
+                } else {
+                    sharedRatePeriod = TimeUnit.SECONDS.toNanos(1) / liveRate;
+                }
+                rate = liveRate;
+                userRatePeriod = liveUserRatePeriod;
+            }
+
+            // The time the resource tree is intended to be sent,
+            // used to correct response times for coordinated omission.
+            long expectedSendTime;
+            // After warmup, the load profile, if any, paces the sends.
+            boolean profiled = loadProfile != null && !warmup;
+            ThinkingUser thinkingUser = null;
+            if (closedModel) {
+                thinkingUser = takeReadyUser(ready);
+                expectedSendTime = thinkingUser.readyTime;
+                if (!warmup) {
+                    thinkTime.add(System.nanoTime() - thinkingUser.completeTime);
+                }
+            } else if (userRatePeriod > 0 && !profiled && pacer != null) {
+                double slot = pacer.claim(arrivals.next());
+                expectedSendTime = pacerBegin + pacer.timeAt(slot, pacerRatePeriod, rateRampUpPeriod);
+                pace(expectedSendTime, sharedRatePeriod, warmup);
+            } else if (userRatePeriod > 0 && !profiled) {
+                expectedSendTime = schedule.next(arrivals.next(), System.nanoTime() - schedule.begin);
+                pace(expectedSendTime, userRatePeriod, warmup);
+            } else {
+                expectedSendTime = System.nanoTime();
+            }
+
+            Callback callback;
+            boolean lastIteration = false;
+            if (warmup) {
+                if (isWarmupComplete(warmupIterations, warmupFor, System.nanoTime() - begin)) {
+                    warmup = false;
+                    long start = System.nanoTime();
+                    warmupCallback.join();
+                    long warmupWait = System.nanoTime() - start;
+                    // Without warmup, the run began with the first send slot.
+                    if (warmupFor > 0 || config.getWarmupIterationsPerThread() > 0) {
+                        runBegin = System.nanoTime();
+                    }
+                    // Resume pacing after the wait for the warmup
+                    // responses, rather than sending in a burst.
+                    schedule.shift(warmupWait);
+                    if (pacer != null) {
+                        pacerBegin = pacer.resume(warmupWait);
+                    }
+                    profileBegin = profilePacer == null ? System.nanoTime() : profilePacer.start();
+                    if (thinkingUser != null) {
+                        long now = System.nanoTime();
+                        ready.offer(new ThinkingUser(0, now, now));
+                    }
+                    continue;
+                } else {
+                    --warmupIterations;
+                    warmupCallback.increment();
+                    callback = warmupCallback;
+                }
+            } else {
+                if (loadProfile != null) {
+                    // The load profile rates are total rates across users.
+                    double slot;
+                    if (profilePacer == null) {
+                        profileSends += arrivals.next();
+                        slot = profileSends * users;
+                    } else {
+                        slot = profilePacer.claim(arrivals.next());
+                    }
+                    long profileTime = loadProfile.timeAt(slot);
+                    expectedSendTime = profileBegin + profileTime;
+                    double profileRate = loadProfile.rateAt(profileTime);
+                    long profileRatePeriod = profileRate > 0 ? Math.round(TimeUnit.SECONDS.toNanos(1) * (double)users / profileRate) : Long.MAX_VALUE;
+                    pace(expectedSendTime, profilePacer == null ? profileRatePeriod : profileRatePeriod / users, false);
+                    lastIteration = profileTime >= loadProfile.getDuration();
+                } else if (iterations > 0) {
+                    lastIteration = --iterations == 0;
+                } else {
+                    lastIteration = runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - runBegin) >= runFor;
+                }
+                runCallback.increment(lastIteration);
+                callback = runCallback;
+            }
+
+            if (lastIteration) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("sending last resource tree");
+                }
+            }
+
+            if (closedModel) {
+                callback = new ThinkCallback(callback, ready, 0, Math.round(thinkNanos * thinkTimes.next()));
+            }
+
+            if (!warmup) {
+                sendLagRecorder.recordValue(Math.max(0, System.nanoTime() - expectedSendTime));
+            }
+
+            int scenario = nextScenario();
+            SenderPool senderPool = senderPools == null ? null : senderPools[scenario];
+            sendResourceTree(client, resourcePlans[scenario], warmup, expectedSendTime, null, senderPool, callback);
+
+            if (lastIteration || anyFailure.isCompletedExceptionally()) {
+                break;
+            }
+
+            if (isInterrupted()) {
+                throw new InterruptedException("sender thread interrupted");
+            }
+        }
+    }
+
+    private HttpClient newUser(Collection<Connection.Listener> connectionListeners) {
+        HttpClient client = newHttpClient(getConfig());
+        if (config.getVirtualUsersPerThread() > 0) {
+            // Virtual users keep their own cookies.
+            client.setCookieStore(new HttpCookieStore.Empty());
+        }
+        connectionListeners.forEach(client::addBean);
+        addManaged(client);
+        return client;
+    }
+
+    private VirtualUser[] newVirtualUsers(int index) {
+        int count = config.getVirtualUsersPerThread();
+        if (count == 0) {
+            return null;
+        }
+        IntFunction<HttpFields> headers = config.getVirtualUserHeaders();
+        VirtualUser[] result = new VirtualUser[count];
+        for (int i = 0; i < count; ++i) {
+            int id = index * count + i;
+            result[i] = new VirtualUser(id, headers == null ? null : headers.apply(id));
+        }
+        return result;
+    }
+
+    private VirtualUser selectVirtualUser(VirtualUser[] virtualUsers, IntSupplier selector, long thinkTime) {
+        long now = System.nanoTime();
+        VirtualUser result = null;
+        // Select another virtual user if the selected one is busy or thinking,
+        // but not indefinitely, in case all the virtual users are.
+        for (int i = 0; i < MAX_USER_SELECTIONS; ++i) {
+            result = virtualUsers[selector.getAsInt()];
+            if (result.isReady(now)) {
+                break;
+            }
+        }
+        result.send(thinkTime);
+        return result;
+    }
+
     protected HttpClient newHttpClient(Config config) {
-        ClientConnector connector = new ClientConnector();
+        ClientConnector connector = newClientConnector(config);
+        HttpClient httpClient = new HttpClient(config.getHttpClientTransportBuilder().connector(connector).build());
+        httpClient.setMaxConnectionsPerDestination(config.getChannelsPerUser());
+        httpClient.setMaxRequestsQueuedPerDestination(config.getMaxRequestsQueued());
+        httpClient.setSocketAddressResolver(config.getSocketAddressResolver());
+        return httpClient;
+    }
+
+    protected ClientConnector newClientConnector(Config config) {
+        SharedClientConnector shared = sharedConnector;
+        if (shared == null) {
+            ClientConnector connector = new ClientConnector();
+            configure(connector, config);
+            return connector;
+        }
+        // Users share the selectors, the ByteBufferPool and the scheduler,
+        // but have their own connection pools in their own HttpClient.
+        UserClientConnector connector = new UserClientConnector(shared);
+        connector.setConnectBlocking(config.isConnectBlocking());
+        connector.setConnectTimeout(Duration.ofMillis(config.getConnectTimeout()));
+        connector.setIdleTimeout(Duration.ofMillis(config.getIdleTimeout()));
+        return connector;
+    }
+
+    private void configure(ClientConnector connector, Config config) {
         connector.setSslContextFactory(config.getSslContextFactory());
         connector.setExecutor(config.getExecutor());
         connector.setScheduler(config.getScheduler());
         connector.setConnectBlocking(config.isConnectBlocking());
         connector.setConnectTimeout(Duration.ofMillis(config.getConnectTimeout()));
         connector.setIdleTimeout(Duration.ofMillis(config.getIdleTimeout()));
-        HttpClient httpClient = new HttpClient(config.getHttpClientTransportBuilder().connector(connector).build());
-        httpClient.setMaxConnectionsPerDestination(config.getChannelsPerUser());
-        httpClient.setMaxRequestsQueuedPerDestination(config.getMaxRequestsQueued());
-        httpClient.setSocketAddressResolver(config.getSocketAddressResolver());
-        return httpClient;
     }
 
     private void stopHttpClient(HttpClient client) {
@@ -416,299 +1129,1064 @@ public class LoadGenerator extends ContainerLifeCycle {
                 client.stop();
                 removeBean(client);
             }
-        } catch (Throwable x) {
-            LOGGER.trace("ignored", x);
+        } catch (Throwable x) {
+            LOGGER.trace("ignored", x);
+        }
+    }
+
+    protected Request newRequest(HttpClient client, Config config, Resource resource) {
+        RequestTemplate template = requestTemplates.get(resource);
+        if (template == null) {
+            template = new RequestTemplate(config, resource, Map.of());
+        }
+        Request request;
+        if (template.uri == null) {
+            request = client.newRequest(config.getHost(), config.getPort())
+                    .scheme(config.getScheme());
+            // Templated paths are rendered later, with the values of the variables.
+            if (template.path == null) {
+                request.path(resource.getPath());
+            }
+        } else {
+            request = client.newRequest(template.uri);
+        }
+        request.attribute(Resource.class.getName(), resource)
+                .method(template.method)
+                .headers(template.headers);
+        Request.Content content = template.nextContent();
+        if (content != null) {
+            request.body(content);
+        }
+        return request;
+    }
+
+    /**
+     * <p>Compiles the resources into request templates, so that the parts
+     * of requests that never change are not computed for every request.</p>
+     *
+     * @param config the configuration with the resources to compile
+     * @param variables the slots of the variables, indexed by variable name
+     * @return the request templates, indexed by resource identity
+     */
+    private static Map<Resource, RequestTemplate> compile(Config config, Map<String, Integer> variables) {
+        Map<Resource, RequestTemplate> result = new IdentityHashMap<>();
+        Queue<Resource> resources = new ArrayDeque<>();
+        List<Scenario> scenarios = config.getScenarios();
+        if (scenarios.isEmpty()) {
+            resources.offer(config.getResource());
+        } else {
+            scenarios.forEach(scenario -> resources.offer(scenario.getResource()));
+        }
+        while (!resources.isEmpty()) {
+            Resource resource = resources.poll();
+            if (resource.getPath() != null) {
+                result.put(resource, new RequestTemplate(config, resource, variables));
+            }
+            resources.addAll(resource.getResources());
+        }
+        return result;
+    }
+
+    private void sendResourceTree(HttpClient client, ResourcePlan plan, boolean warmup, long intendedSendTime, VirtualUser user, SenderPool senderPool, Callback callback) {
+        Sender sender = senderPool == null ? new Sender(plan, null) : senderPool.acquire();
+        Resource resource = plan.getResource(0);
+        Resource.Info info = sender.newInfo(0);
+        info.setIntendedRequestTime(intendedSendTime);
+        String[] values = feed();
+        CountingCallback treeCallback = new CountingCallback(new Callback() {
+            @Override
+            public void succeeded() {
+                info.setTreeTime(System.nanoTime());
+                complete(user);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("completed {}tree for {}", warmup ? "warmup " : "", resource);
+                }
+                if (warmup) {
+                    WarmupStability stability = warmupStability;
+                    if (stability != null) {
+                        stability.record(info.getTreeTime() - info.getRequestTime());
+                    }
+                } else {
+                    fireResourceTreeEvent(info);
+                }
+                sender.complete();
+                callback.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("failed tree for {}", resource);
+                }
+                complete(user);
+                callback.failed(x);
+            }
+        }, plan.size());
+        // Failed senders are not recycled, as their
+        // requests may still be in progress.
+        sender.begin(client, warmup, user, values, treeCallback);
+        sender.offer(0, info);
+    }
+
+    /**
+     * @return the index of the scenario of the next resource tree
+     */
+    private int nextScenario() {
+        AliasSampler sampler = scenarioSampler;
+        return sampler == null ? 0 : sampler.next(ThreadLocalRandom.current());
+    }
+
+    private boolean isWarmupComplete(int warmupIterations, long warmupFor, long elapsed) {
+        if (warmupFor == 0) {
+            return warmupIterations == 0;
+        }
+        // With adaptive warmup, the warmup time is the max warmup time.
+        if (elapsed >= warmupFor) {
+            return true;
+        }
+        WarmupStability stability = warmupStability;
+        return stability != null && stability.isStable();
+    }
+
+    private void complete(VirtualUser user) {
+        if (user != null) {
+            user.complete(System.nanoTime());
+        }
+    }
+
+    private int awaitBarrier() {
+        try {
+            return barrier.await();
+        } catch (Throwable x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    private void fireBeginEvent() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("emitting begin event");
+        }
+        config.getListeners().stream()
+                .filter(l -> l instanceof BeginListener)
+                .map(l -> (BeginListener)l)
+                .forEach(this::invokeBeginListener);
+    }
+
+    private void invokeBeginListener(BeginListener listener) {
+        try {
+            listener.onBegin(this);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    private void fireReadyEvent() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("emitting ready event");
+        }
+        config.getListeners().stream()
+                .filter(l -> l instanceof ReadyListener)
+                .map(l -> (ReadyListener)l)
+                .forEach(this::invokeReadyListener);
+    }
+
+    private void invokeReadyListener(ReadyListener listener) {
+        try {
+            listener.onReady(this);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    private void fireEndEvent() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("emitting end event");
+        }
+        config.getListeners().stream()
+                .filter(l -> l instanceof EndListener)
+                .map(l -> (EndListener)l)
+                .forEach(this::invokeEndListener);
+    }
+
+    private void invokeEndListener(EndListener listener) {
+        try {
+            listener.onEnd(this);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    /**
+     * <p>Waits until the resource events dispatched asynchronously
+     * have been notified, so that they are all notified before
+     * the complete event.</p>
+     */
+    private void flushResourceEvents() {
+        ListenerDispatcher dispatcher = listenerDispatcher;
+        if (dispatcher != null) {
+            dispatcher.flush();
+        }
+    }
+
+    private void fireCompleteEvent() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("emitting complete event");
+        }
+        config.getListeners().stream()
+                .filter(l -> l instanceof CompleteListener)
+                .map(l -> (CompleteListener)l)
+                .forEach(this::invokeCompleteListener);
+    }
+
+    private void invokeCompleteListener(CompleteListener listener) {
+        try {
+            listener.onComplete(this);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    private void fireResourceNodeEvent(Resource.Info info) {
+        if (nodeListeners.length > 0) {
+            ListenerDispatcher dispatcher = listenerDispatcher;
+            if (dispatcher == null) {
+                dispatchResourceNodeEvent(info);
+            } else {
+                dispatcher.publishNode(info);
+            }
+        }
+    }
+
+    private void dispatchResourceNodeEvent(Resource.Info info) {
+        // Java streams and iterators are too expensive allocation-wise
+        // to be used for events generated in large numbers.
+        Resource.NodeListener[] listeners = nodeListeners;
+        for (int i = 0; i < listeners.length; ++i) {
+            invokeResourceNodeListener(listeners[i], info);
+        }
+    }
+
+    private void invokeResourceNodeListener(Resource.NodeListener listener, Resource.Info info) {
+        try {
+            listener.onResourceNode(info);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    private void fireResourceTreeEvent(Resource.Info info) {
+        if (treeListeners.length > 0) {
+            ListenerDispatcher dispatcher = listenerDispatcher;
+            if (dispatcher == null) {
+                dispatchResourceTreeEvent(info);
+            } else {
+                dispatcher.publishTree(info);
+            }
+        }
+    }
+
+    private void dispatchResourceTreeEvent(Resource.Info info) {
+        // Java streams and iterators are too expensive allocation-wise
+        // to be used for events generated in large numbers.
+        Resource.TreeListener[] listeners = treeListeners;
+        for (int i = 0; i < listeners.length; ++i) {
+            invokeResourceTreeListener(listeners[i], info);
+        }
+    }
+
+    private void invokeResourceTreeListener(Resource.TreeListener listener, Resource.Info info) {
+        try {
+            listener.onResourceTree(info);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    private ThinkingUser takeReadyUser(DelayQueue<ThinkingUser> readyUsers) throws InterruptedException {
+        while (true) {
+            // Wake up periodically to check for interruption,
+            // as all users may be waiting for their responses.
+            ThinkingUser user = readyUsers.poll(1, TimeUnit.SECONDS);
+            if (user != null) {
+                return user;
+            }
+            if (isInterrupted()) {
+                throw new InterruptedException("sender thread interrupted");
+            }
+        }
+    }
+
+    private void pace(long sendTime, long slotPeriod, boolean warmup) {
+        long sleep = sendTime - System.nanoTime();
+        if (sleep > 0) {
+            config.getSleepStrategy().sleepUntil(sendTime);
+        } else if (!warmup && -sleep > slotPeriod) {
+            missedSlots.increment();
+        }
+    }
+
+    /**
+     * <p>Paces sends across sender threads, that claim send slots
+     * from a shared counter of sends.</p>
+     * <p>The counter counts sends in units of the nominal period
+     * between sends, to support random {@link ArrivalProcess arrival
+     * processes}, and is incremented atomically without locking.</p>
+     * <p>When a sender thread is stalled, the other sender threads
+     * claim the following send slots, so that the total rate is kept.</p>
+     */
+    private static class Pacer {
+        private static final long UNSTARTED = Long.MIN_VALUE;
+
+        private final AtomicLong begin = new AtomicLong(UNSTARTED);
+        private final AtomicLong resumeBegin = new AtomicLong(UNSTARTED);
+        // The bits of a double, the number of sends claimed so far.
+        private final AtomicLong sends = new AtomicLong();
+        private volatile RateChange change;
+
+        /**
+         * @return the time, in ns, the pacer began, possibly started by another sender thread
+         */
+        private long start() {
+            long now = System.nanoTime();
+            if (begin.compareAndSet(UNSTARTED, now)) {
+                return now;
+            }
+            return begin.get();
+        }
+
+        /**
+         * @param wait the time, in ns, pacing has been suspended to wait for warmup responses
+         * @return the time, in ns, the pacer began, shifted by the wait of the first sender thread that resumed
+         */
+        private long resume(long wait) {
+            long resumed = begin.get() + wait;
+            if (resumeBegin.compareAndSet(UNSTARTED, resumed)) {
+                return resumed;
+            }
+            return resumeBegin.get();
+        }
+
+        /**
+         * @param interArrival the normalized time to the next send
+         * @return the send slot claimed, in units of the nominal period between sends
+         */
+        private double claim(double interArrival) {
+            while (true) {
+                long current = sends.get();
+                double slot = Double.longBitsToDouble(current) + interArrival;
+                if (sends.compareAndSet(current, Double.doubleToRawLongBits(slot))) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * <p>Changes the rate from the next send slot on.</p>
+         * <p>Must be called with the generator lock held.</p>
+         *
+         * @param fromPeriod the current nominal period between sends, in ns
+         * @param toPeriod the new nominal period between sends, in ns
+         * @param rampPeriod the period to ramp from the current to the new rate, in ns
+         */
+        private void change(long fromPeriod, long toPeriod, long rampPeriod) {
+            long base = resumeBegin.get();
+            if (base == UNSTARTED) {
+                base = begin.get();
+            }
+            if (base == UNSTARTED) {
+                // Not started yet, sender threads will use the new rate.
+                return;
+            }
+            double slot = Double.longBitsToDouble(sends.get());
+            change = new RateChange(slot, System.nanoTime() - base, fromPeriod, toPeriod, rampPeriod);
+        }
+
+        /**
+         * @param slot the send slot
+         * @param ratePeriod the initial nominal period between sends, in ns
+         * @param rateRampUpPeriod the rate ramp-up period, in ns
+         * @return the time, in ns since the pacer began, the send slot is scheduled
+         */
+        private long timeAt(double slot, long ratePeriod, long rateRampUpPeriod) {
+            RateChange change = this.change;
+            if (change != null && slot > change.sends) {
+                return change.timeAt(slot);
+            }
+            if (rateRampUpPeriod > 0) {
+                // The area below the ramp-up line y = k * x is the number
+                // of ramp-up sends: a = 1/2 * k * x^2, with k = 1 / (T * P).
+                double rampUpSends = rateRampUpPeriod / (2.0D * ratePeriod);
+                if (slot <= rampUpSends) {
+                    return Math.round(Math.sqrt(2.0D * slot * ratePeriod * rateRampUpPeriod));
+                }
+                return rateRampUpPeriod + Math.round((slot - rampUpSends) * ratePeriod);
+            }
+            return Math.round(slot * ratePeriod);
+        }
+    }
+
+    /**
+     * <p>The open model schedule of the sends of a single sender loop,
+     * at the nominal rate, with the rate ramp-up and the rate changes.</p>
+     */
+    private static class Schedule {
+        private final long rateRampUpPeriod;
+        private long begin;
+        private long ratePeriod;
+        private RateChange change;
+        // The number of sends, in units of the nominal rate period.
+        // With a constant arrival process, it is the number of loops.
+        private double sends;
+        private double rampUpSends;
+
+        /**
+         * @param begin the time, in ns, the schedule begins
+         * @param ratePeriod the nominal period between sends, in ns
+         * @param rateRampUpPeriod the rate ramp-up period, in ns
+         */
+        private Schedule(long begin, long ratePeriod, long rateRampUpPeriod) {
+            this.begin = begin;
+            this.ratePeriod = ratePeriod;
+            this.rateRampUpPeriod = rateRampUpPeriod;
+        }
+
+        /**
+         * @param interArrival the normalized time to the next send
+         * @param elapsed the time, in ns, elapsed in the rate ramp-up
+         * @return the time, in ns, the next send is scheduled
+         */
+        private long next(double interArrival, long elapsed) {
+            sends += interArrival;
+            if (change != null) {
+                return begin + change.timeAt(sends);
+            }
+            if (rateRampUpPeriod > 0) {
+                if (elapsed < rateRampUpPeriod) {
+                    rampUpSends += interArrival;
+                    // The curve of the rate over time during the ramp-up is a straight line: y = k * x.
+                    // The area (i.e. the integral) below the curve is the number of requests sent.
+                    // We want to calculate the x coordinate (i.e. the send time) when the area is 1, 2, etc.
+                    // The area (i.e. the number of ramp-up sends) is: a = 1/2 * k * x^2 and we want to find x.
+                    return begin + Math.round(Math.sqrt(2.0D * rampUpSends * ratePeriod * rateRampUpPeriod));
+                }
+                // Correct by 1 to take into account that the last ramp-up
+                // expected send time is likely to be past the rampUpPeriod.
+                return begin + rateRampUpPeriod + Math.round((sends - rampUpSends + 1) * ratePeriod);
+            }
+            return begin + Math.round(sends * ratePeriod);
+        }
+
+        /**
+         * <p>Changes the rate from now on.</p>
+         *
+         * @param toPeriod the new nominal period between sends, in ns
+         * @param rampPeriod the period to ramp from the current to the new rate, in ns
+         */
+        private void change(long toPeriod, long rampPeriod) {
+            change = new RateChange(sends, System.nanoTime() - begin, ratePeriod, toPeriod, rampPeriod);
+            ratePeriod = toPeriod;
+        }
+
+        /**
+         * @param wait the time, in ns, to postpone the following sends
+         */
+        private void shift(long wait) {
+            begin += wait;
+        }
+    }
+
+    /**
+     * <p>A change of the resource rate while the load generation is running.</p>
+     * <p>After the change, the rate changes linearly from the previous rate
+     * to the new rate over the ramp period, and then stays at the new rate.</p>
+     */
+    private static class RateChange {
+        private final double sends;
+        private final long time;
+        private final double fromRate;
+        private final double toRate;
+        private final long rampPeriod;
+
+        /**
+         * @param sends the number of sends at the change
+         * @param time the time, in ns, of the change
+         * @param fromPeriod the previous nominal period between sends, in ns, or zero if the sends were not paced
+         * @param toPeriod the new nominal period between sends, in ns
+         * @param rampPeriod the period to ramp from the previous to the new rate, in ns
+         */
+        private RateChange(double sends, long time, long fromPeriod, long toPeriod, long rampPeriod) {
+            this.sends = sends;
+            this.time = time;
+            // Rates in sends per ns.
+            this.toRate = 1.0D / toPeriod;
+            this.fromRate = fromPeriod > 0 ? 1.0D / fromPeriod : toRate;
+            this.rampPeriod = rampPeriod;
+        }
+
+        /**
+         * @param sends the number of sends
+         * @return the time, in ns, the given number of sends is scheduled
+         */
+        private long timeAt(double sends) {
+            double slot = sends - this.sends;
+            if (slot <= 0) {
+                return time;
+            }
+            if (rampPeriod > 0) {
+                double rampSends = (fromRate + toRate) * rampPeriod / 2;
+                if (slot <= rampSends) {
+                    // The number of sends during the ramp is the area below the
+                    // rate line: n = r0 * t + (r1 - r0) * t^2 / (2 * T), solved
+                    // for t in the form that is stable also when r1 == r0.
+                    double a = (toRate - fromRate) / (2.0D * rampPeriod);
+                    double delta = Math.max(0, fromRate * fromRate + 4 * a * slot);
+                    return time + Math.round(2 * slot / (fromRate + Math.sqrt(delta)));
+                }
+                return time + rampPeriod + Math.round((slot - rampSends) / toRate);
+            }
+            return time + Math.round(slot / toRate);
+        }
+    }
+
+    /**
+     * <p>The immutable parts of the requests for a resource: the URI,
+     * the method, and the headers, with the preformatted response length.</p>
+     * <p>The parts with variables are compiled into {@link Template}s,
+     * that are rendered for every request.</p>
+     */
+    private static class RequestTemplate {
+        private final URI uri;
+        private final Template path;
+        private final String method;
+        private final HttpFields fields;
+        private final Consumer<HttpFields.Mutable> headers;
+        private final String[] headerNames;
+        private final Template[] headerValues;
+        private final Request.Content[] contents;
+        private final Template content;
+        private final AtomicInteger nextContent = new AtomicInteger();
+
+        private RequestTemplate(Config config, Resource resource, Map<String, Integer> variables) {
+            String path = resource.getPath();
+            this.path = Template.isTemplate(path) ? new Template(path, variables) : null;
+            this.uri = this.path == null ? newURI(config, path) : null;
+            this.method = resource.getMethod();
+            HttpFields.Mutable fields = HttpFields.build();
+            List<String> headerNames = new ArrayList<>();
+            List<Template> headerValues = new ArrayList<>();
+            for (HttpField field : resource.getRequestHeaders()) {
+                if (Template.isTemplate(field.getValue())) {
+                    headerNames.add(field.getName());
+                    headerValues.add(new Template(field.getValue(), variables));
+                } else {
+                    fields.add(field);
+                }
+            }
+            this.fields = fields.put(Resource.RESPONSE_LENGTH, Long.toString(resource.getResponseLength()))
+                    .asImmutable();
+            this.headers = f -> f.add(this.fields);
+            this.headerNames = headerNames.toArray(String[]::new);
+            this.headerValues = headerValues.toArray(Template[]::new);
+            String content = resource.getRequestContent();
+            if (Template.isTemplate(content)) {
+                this.content = new Template(content, variables);
+                this.contents = new Request.Content[0];
+            } else {
+                this.content = null;
+                this.contents = newContents(resource);
+            }
+        }
+
+        /**
+         * <p>Renders the templated parts of the given request.</p>
+         *
+         * @param request the request to render
+         * @param values the values of the variables
+         */
+        private void render(Request request, String[] values) {
+            if (path != null) {
+                request.path(path.render(values));
+            }
+            if (headerValues.length > 0) {
+                request.headers(fields -> {
+                    for (int i = 0; i < headerValues.length; ++i) {
+                        fields.put(headerNames[i], headerValues[i].render(values));
+                    }
+                });
+            }
+            if (content != null) {
+                request.body(new StringRequestContent(content.render(values)));
+            }
         }
-    }
 
-    protected Request newRequest(HttpClient client, Config config, Resource resource) {
-        Request request = client.newRequest(config.getHost(), config.getPort())
-                .scheme(config.getScheme())
-                .attribute(Resource.class.getName(), resource)
-                .method(resource.getMethod())
-                .path(resource.getPath());
-        request.headers(fields -> fields.add(resource.getRequestHeaders()));
-        request.headers(fields -> fields.put(Resource.RESPONSE_LENGTH, Long.toString(resource.getResponseLength())));
-        long requestLength = resource.getRequestLength();
-        if (requestLength > 0) {
-            request.body(new BytesRequestContent(new byte[Math.toIntExact(requestLength)]));
+        private Request.Content nextContent() {
+            int length = contents.length;
+            if (length == 0) {
+                return null;
+            }
+            if (length == 1) {
+                return contents[0];
+            }
+            return contents[Math.floorMod(nextContent.getAndIncrement(), length)];
         }
-        return request;
-    }
 
-    private void sendResourceTree(HttpClient client, Resource resource, boolean warmup, Callback callback) {
-        int nodes = resource.descendantCount();
-        Resource.Info info = resource.newInfo(this);
-        CountingCallback treeCallback = new CountingCallback(new Callback() {
-            @Override
-            public void succeeded() {
-                info.setTreeTime(System.nanoTime());
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("completed {}tree for {}", warmup ? "warmup " : "", resource);
+        private static Request.Content[] newContents(Resource resource) {
+            String requestContent = resource.getRequestContent();
+            if (requestContent != null) {
+                // The content is reproducible, so it can be sent by many requests.
+                return new Request.Content[]{new StringRequestContent(requestContent)};
+            }
+            Path requestBody = resource.getRequestBody();
+            if (requestBody == null) {
+                long requestLength = resource.getRequestLength();
+                if (requestLength > 0) {
+                    return new Request.Content[]{new SharedBufferRequestContent(requestLength)};
                 }
-                if (!warmup) {
-                    fireResourceTreeEvent(info);
+                return new Request.Content[0];
+            }
+            try {
+                if (Files.isDirectory(requestBody)) {
+                    List<Path> files;
+                    try (Stream<Path> paths = Files.list(requestBody)) {
+                        files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                    }
+                    if (files.isEmpty()) {
+                        throw new IllegalArgumentException("no request body files in " + requestBody);
+                    }
+                    Request.Content[] result = new Request.Content[files.size()];
+                    for (int i = 0; i < result.length; ++i) {
+                        result[i] = map(files.get(i));
+                    }
+                    return result;
                 }
-                callback.succeeded();
+                return new Request.Content[]{map(requestBody)};
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
             }
+        }
 
-            @Override
-            public void failed(Throwable x) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("failed tree for {}", resource);
+        private static Request.Content map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("request body file too large to map: " + file);
                 }
-                callback.failed(x);
+                // The mapping remains valid after the channel is closed.
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                String contentType = Files.probeContentType(file);
+                if (contentType == null) {
+                    contentType = "application/octet-stream";
+                }
+                return new SharedBufferRequestContent(contentType, buffer, size);
             }
-        }, nodes);
-        Sender sender = new Sender(client, warmup, treeCallback);
-        sender.offer(List.of(info));
-        sender.send();
-    }
-
-    private int awaitBarrier() {
-        try {
-            return barrier.await();
-        } catch (Throwable x) {
-            throw new RuntimeException(x);
         }
-    }
 
-    private void fireBeginEvent() {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("emitting begin event");
+        private static URI newURI(Config config, String path) {
+            // Let HttpClient deal with unusual paths.
+            if (path == null || !path.startsWith("/")) {
+                return null;
+            }
+            try {
+                URI base = new URI(config.getScheme(), null, config.getHost(), config.getPort(), null, null, null);
+                return new URI(base + path);
+            } catch (URISyntaxException x) {
+                return null;
+            }
         }
-        config.getListeners().stream()
-                .filter(l -> l instanceof BeginListener)
-                .map(l -> (BeginListener)l)
-                .forEach(this::invokeBeginListener);
     }
 
-    private void invokeBeginListener(BeginListener listener) {
-        try {
-            listener.onBegin(this);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
-        }
-    }
+    /**
+     * <p>The ClientConnector shared by all users, which owns the selectors,
+     * the ByteBufferPool and the scheduler.</p>
+     */
+    private static class SharedClientConnector extends ClientConnector {
+        private SelectorManager selectorManager;
 
-    private void fireReadyEvent() {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("emitting ready event");
+        @Override
+        protected SelectorManager newSelectorManager() {
+            selectorManager = super.newSelectorManager();
+            return selectorManager;
         }
-        config.getListeners().stream()
-                .filter(l -> l instanceof ReadyListener)
-                .map(l -> (ReadyListener)l)
-                .forEach(this::invokeReadyListener);
     }
 
-    private void invokeReadyListener(ReadyListener listener) {
-        try {
-            listener.onReady(this);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+    /**
+     * <p>The ClientConnector of a user, that uses the components of the
+     * shared connector rather than creating its own.</p>
+     * <p>The shared components are already started when the user connector
+     * starts, so they are not managed, and not stopped, by the user connector.</p>
+     */
+    private static class UserClientConnector extends ClientConnector {
+        private final SharedClientConnector shared;
+
+        private UserClientConnector(SharedClientConnector shared) {
+            this.shared = shared;
+            setExecutor(shared.getExecutor());
+            setScheduler(shared.getScheduler());
+            setByteBufferPool(shared.getByteBufferPool());
+            setSslContextFactory(shared.getSslContextFactory());
         }
-    }
 
-    private void fireEndEvent() {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("emitting end event");
+        @Override
+        protected SelectorManager newSelectorManager() {
+            return shared.selectorManager;
         }
-        config.getListeners().stream()
-                .filter(l -> l instanceof EndListener)
-                .map(l -> (EndListener)l)
-                .forEach(this::invokeEndListener);
     }
 
-    private void invokeEndListener(EndListener listener) {
-        try {
-            listener.onEnd(this);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+    /**
+     * <p>Detects when the warmup is complete because the response times of the
+     * warmup resource trees have stabilized and the JIT compiler is mostly idle.</p>
+     * <p>The response times are sampled in intervals; the response times are stable
+     * when the median and the 99th percentile of each interval are within a tolerance
+     * of those of the previous interval for a few consecutive intervals.</p>
+     */
+    private static class WarmupStability {
+        private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+        private static final int STABLE_INTERVALS = 3;
+        private static final int MIN_SAMPLES = 20;
+        private static final double TOLERANCE = 0.2D;
+        // Changes below this are noise, even if they exceed the tolerance.
+        private static final long MIN_CHANGE = TimeUnit.MICROSECONDS.toNanos(100);
+        private static final double MAX_COMPILATION_PERCENT = 5;
+
+        private final Recorder recorder = new Recorder(3);
+        private final AtomicLong lastSample = new AtomicLong(System.nanoTime());
+        private final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        private Histogram interval;
+        private long compilationTime = compilationTime();
+        private long p50 = -1;
+        private long p99 = -1;
+        private int stableIntervals;
+        private volatile boolean stable;
+
+        private void record(long responseTime) {
+            recorder.recordValue(Math.max(0, responseTime));
+        }
+
+        private boolean isStable() {
+            if (stable) {
+                return true;
+            }
+            long now = System.nanoTime();
+            long last = lastSample.get();
+            // Only one sender thread samples each interval.
+            if (now - last >= INTERVAL && lastSample.compareAndSet(last, now)) {
+                sample(now - last);
+            }
+            return stable;
         }
-    }
 
-    private void fireCompleteEvent() {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("emitting complete event");
+        private void sample(long elapsed) {
+            interval = recorder.getIntervalHistogram(interval);
+            long compilationTime = compilationTime();
+            double compilationPercent = compilationTime < 0 ? 0 : 100.0D * TimeUnit.MILLISECONDS.toNanos(compilationTime - this.compilationTime) / elapsed;
+            this.compilationTime = compilationTime;
+            if (interval.getTotalCount() < MIN_SAMPLES) {
+                stableIntervals = 0;
+                return;
+            }
+            long p50 = interval.getValueAtPercentile(50);
+            long p99 = interval.getValueAtPercentile(99);
+            boolean stableInterval = isClose(this.p50, p50) && isClose(this.p99, p99) && compilationPercent <= MAX_COMPILATION_PERCENT;
+            this.p50 = p50;
+            this.p99 = p99;
+            stableIntervals = stableInterval ? stableIntervals + 1 : 0;
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("warmup interval p50={}us p99={}us compilation={}% stable={}",
+                        TimeUnit.NANOSECONDS.toMicros(p50), TimeUnit.NANOSECONDS.toMicros(p99), String.format("%.1f", compilationPercent), stableIntervals);
+            }
+            if (stableIntervals >= STABLE_INTERVALS) {
+                stable = true;
+            }
         }
-        config.getListeners().stream()
-                .filter(l -> l instanceof CompleteListener)
-                .map(l -> (CompleteListener)l)
-                .forEach(this::invokeCompleteListener);
-    }
 
-    private void invokeCompleteListener(CompleteListener listener) {
-        try {
-            listener.onComplete(this);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        private long compilationTime() {
+            if (compilation == null || !compilation.isCompilationTimeMonitoringSupported()) {
+                return -1;
+            }
+            return compilation.getTotalCompilationTime();
         }
-    }
 
-    private void fireResourceNodeEvent(Resource.Info info) {
-        // Java streams are too expensive allocation-wise
-        // to be used for events generated in large numbers.
-        for (Resource.Listener l : config.getResourceListeners()) {
-            if (l instanceof Resource.NodeListener) {
-                invokeResourceNodeListener((Resource.NodeListener)l, info);
+        private static boolean isClose(long previous, long current) {
+            if (previous < 0) {
+                return false;
             }
+            long change = Math.abs(current - previous);
+            return change <= MIN_CHANGE || change <= TOLERANCE * previous;
         }
     }
 
-    private void invokeResourceNodeListener(Resource.NodeListener listener, Resource.Info info) {
-        try {
-            listener.onResourceNode(info);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+    /**
+     * <p>Sends the nodes of a resource tree, walking its {@link ResourcePlan}.</p>
+     * <p>The nodes to send are queued in a lock-free {@link SenderQueue},
+     * by the sender thread for the root node, and by the threads that
+     * complete responses for children nodes; only one thread at a time
+     * drains the queue and sends the requests.</p>
+     * <p>When recycled, a Sender retains one {@link Resource.Info} and one
+     * {@link ResponseHandler} per node, that are reused by the next resource
+     * trees; it is released to its pool only after the resource tree is
+     * complete, and after it stopped sending.</p>
+     */
+    private class Sender {
+        private final ResourcePlan plan;
+        private final SenderPool pool;
+        private final SenderQueue queue;
+        private final SenderQueue.Consumer consumer = this::send;
+        private final Resource.Info[] nodeInfos;
+        private final ResponseHandler[] handlers;
+        // Nodes are claimed by storing the generation of the resource tree,
+        // so that claims need not be cleared when the Sender is recycled.
+        private final AtomicIntegerArray claims;
+        private final RequestWindow window;
+        private int generation;
+        private HttpClient client;
+        private boolean warmup;
+        private VirtualUser user;
+        private String[] values;
+        private CountingCallback callback;
+
+        private Sender(ResourcePlan plan, SenderPool pool) {
+            this.plan = plan;
+            this.pool = pool;
+            int size = plan.size();
+            int treeConcurrency = config.getTreeConcurrency();
+            this.window = treeConcurrency > 0 ? new RequestWindow(treeConcurrency, size) : null;
+            // Each node is queued at most once (either sent or pushed),
+            // plus once more when it is resumed by the request window.
+            this.queue = new SenderQueue(window == null ? size : 2 * size);
+            this.nodeInfos = pool == null ? null : new Resource.Info[size];
+            this.handlers = pool == null ? null : new ResponseHandler[size];
+            this.claims = new AtomicIntegerArray(size);
+        }
+
+        private void begin(HttpClient client, boolean warmup, VirtualUser user, String[] values, CountingCallback callback) {
+            // The fields are published to other threads by the queue.
+            this.client = client;
+            this.warmup = warmup;
+            this.user = user;
+            this.values = values;
+            this.callback = callback;
+            // Skip zero, the initial value of claims.
+            if (++generation == 0) {
+                ++generation;
+            }
+            queue.clear();
+            if (window != null) {
+                window.clear();
+            }
         }
-    }
 
-    private void fireResourceTreeEvent(Resource.Info info) {
-        // Java streams are too expensive allocation-wise
-        // to be used for events generated in large numbers.
-        for (Resource.Listener l : config.getResourceListeners()) {
-            if (l instanceof Resource.TreeListener) {
-                invokeResourceTreeListener((Resource.TreeListener)l, info);
+        private Resource.Info newInfo(int node) {
+            if (nodeInfos == null) {
+                return createInfo(node);
             }
+            Resource.Info info = nodeInfos[node];
+            if (info == null) {
+                info = createInfo(node);
+                nodeInfos[node] = info;
+            } else {
+                info.reset();
+            }
+            return info;
         }
-    }
 
-    private void invokeResourceTreeListener(Resource.TreeListener listener, Resource.Info info) {
-        try {
-            listener.onResourceTree(info);
-        } catch (Throwable x) {
-            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        private Resource.Info createInfo(int node) {
+            Resource.Info info = plan.getResource(node).newInfo(LoadGenerator.this);
+            info.setScenario(plan.getScenario());
+            return info;
         }
-    }
 
-    private void sleep(long nanos) {
-        long start = System.nanoTime();
-        while (nanos > 0) {
-            LockSupport.parkNanos(nanos);
-            nanos = start + nanos - System.nanoTime();
+        private ResponseHandler newResponseHandler(int node, Resource.Info info) {
+            if (handlers == null) {
+                return new ResponseHandler(node, info);
+            }
+            // Handlers are immutable, so they can be
+            // reused as long as their Info is reused.
+            ResponseHandler handler = handlers[node];
+            if (handler == null) {
+                handler = new ResponseHandler(node, info);
+                handlers[node] = handler;
+            }
+            return handler;
         }
-    }
 
-    private class Sender {
-        private final AutoLock lock = new AutoLock();
-        private final Queue<Resource.Info> queue = new ArrayDeque<>();
-        private final Set<URI> pushCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        private final HttpClient client;
-        private final boolean warmup;
-        private final CountingCallback callback;
-        private boolean active;
-
-        private Sender(HttpClient client, boolean warmup, CountingCallback callback) {
-            this.client = client;
-            this.warmup = warmup;
-            this.callback = callback;
+        /**
+         * <p>Called when the resource tree is complete, to release this
+         * Sender to its pool, unless it is still sending.</p>
+         */
+        private void complete() {
+            if (pool != null && queue.complete()) {
+                pool.release(this);
+            }
         }
 
-        private void offer(List<Resource.Info> resources) {
-            try (AutoLock ignored = lock.lock()) {
-                queue.addAll(resources);
+        private void offer(int node, Resource.Info info) {
+            if (queue.offer(node, info)) {
+                drain();
             }
         }
 
-        private void send() {
-            try (AutoLock ignored = lock.lock()) {
-                if (active) {
-                    return;
-                }
-                active = true;
+        private void drain() {
+            if (queue.drain(consumer)) {
+                // The resource tree completed while draining.
+                pool.release(this);
             }
+        }
 
-            List<Resource.Info> resources = new ArrayList<>();
+        /**
+         * <p>Claims the given node to be either sent or pushed, so
+         * that each node is completed exactly once.</p>
+         *
+         * @param node the node to claim
+         * @return whether the node has been claimed
+         */
+        private boolean claim(int node) {
+            int generation = this.generation;
             while (true) {
-                try (AutoLock ignored = lock.lock()) {
-                    if (queue.isEmpty()) {
-                        active = false;
-                        return;
-                    }
-                    resources.addAll(queue);
-                    queue.clear();
+                int claim = claims.get(node);
+                if (claim == generation) {
+                    return false;
+                }
+                if (claims.compareAndSet(node, claim, generation)) {
+                    return true;
                 }
-
-                send(resources);
-                resources.clear();
             }
         }
 
-        private void send(List<Resource.Info> resources) {
+        private void send(int node, Resource.Info info) {
             try {
-                for (Resource.Info info : resources) {
-                    Resource resource = info.getResource();
-                    if (resource.getPath() != null) {
-                        HttpRequest httpRequest = (HttpRequest)newRequest(client, config, resource);
-
-                        if (pushCache.contains(httpRequest.getURI())) {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("skip sending pushed {}", info);
-                            }
-                        } else {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("sending {}{}", warmup ? "warmup " : "", info);
-                            }
-
-                            httpRequest.pushListener((request, pushed) -> {
-                                URI pushedURI = pushed.getURI();
-                                Resource child = resource.findDescendant(pushedURI);
-                                if (child != null && pushCache.add(pushedURI)) {
-                                    Resource.Info pushedInfo = child.newInfo(LoadGenerator.this);
-                                    if (LOGGER.isDebugEnabled()) {
-                                        LOGGER.debug("pushed {}", pushedInfo);
-                                    }
-                                    pushedInfo.setRequestTime(System.nanoTime());
-                                    pushedInfo.setPushed(true);
-                                    return new ResponseHandler(pushedInfo);
-                                } else {
-                                    return null;
-                                }
-                            });
-
-                            Request request = config.getRequestListeners().stream()
-                                    .reduce(httpRequest, Request::listener, (r1, r2) -> r1);
-                            info.setRequestTime(System.nanoTime());
-                            request.send(new ResponseHandler(info));
+                if (node < 0) {
+                    // A node resumed by the request window, already claimed.
+                    node = ~node;
+                    info.setQueueDelay(System.nanoTime() - info.getRequestTime());
+                    sendRequest(node, info);
+                    return;
+                }
+                Resource resource = plan.getResource(node);
+                if (resource.getPath() != null) {
+                    if (!claim(node)) {
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("skip sending pushed {}", info);
+                        }
+                    } else if (window != null && !window.acquire(node, info)) {
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("queued {}", info);
                         }
+                        // Record when the node started to wait.
+                        info.setRequestTime(System.nanoTime());
                     } else {
-                        // Don't fire the resource event for "group" resources.
-                        callback.succeeded();
-                        sendChildren(resource);
+                        sendRequest(node, info);
                     }
+                } else {
+                    // Don't fire the resource event for "group" resources.
+                    info.setRequestTime(System.nanoTime());
+                    // Send the children before succeeding the callback, so that
+                    // the resource tree (and this Sender, if recycled) cannot
+                    // complete while the children are queued.
+                    sendChildren(node, info, true);
+                    callback.succeeded();
                 }
             } catch (Throwable x) {
                 callback.failed(x);
             }
         }
 
-        private void sendChildren(Resource resource) {
-            List<Resource> children = resource.getResources();
-            if (!children.isEmpty()) {
-                List<Resource.Info> infos = new ArrayList<>(children.size());
-                for (Resource child : children) {
-                    Resource.Info info = child.newInfo(LoadGenerator.this);
-                    info.setRequestTime(System.nanoTime());
-                    infos.add(info);
+        private void sendRequest(int node, Resource.Info info) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("sending {}{}", warmup ? "warmup " : "", info);
+            }
+
+            Resource resource = plan.getResource(node);
+            HttpRequest httpRequest = (HttpRequest)newRequest(client, config, resource);
+            if (values != null) {
+                RequestTemplate template = requestTemplates.get(resource);
+                if (template != null) {
+                    template.render(httpRequest, values);
+                }
+            }
+            if (user != null) {
+                user.apply(httpRequest);
+            }
+
+            // The handler is also the push listener, to avoid
+            // allocating a capturing lambda for every request.
+            ResponseHandler handler = newResponseHandler(node, info);
+            httpRequest.pushListener(handler);
+
+            Request.Listener requestListener = LoadGenerator.this.requestListener;
+            if (requestListener != null) {
+                httpRequest.listener(requestListener);
+            }
+            info.setRequestTime(System.nanoTime());
+            httpRequest.send(handler);
+        }
+
+        private void sendChildren(int node, Resource.Info parent, boolean group) {
+            int start = plan.getChildStart(node);
+            int end = plan.getChildEnd(node);
+            if (start < end) {
+                int slot = queue.reserve(end - start);
+                for (int child = start; child < end; ++child) {
+                    Resource.Info info = newInfo(child);
+                    long requestTime = System.nanoTime();
+                    // Children of group resources are sent as part of the
+                    // parent, so they inherit the parent's intended time.
+                    info.setIntendedRequestTime(group ? parent.getIntendedRequestTime() : requestTime);
+                    info.setRequestTime(requestTime);
+                    queue.set(slot++, child, info);
+                }
+                if (queue.publish(end - start)) {
+                    drain();
                 }
-                offer(infos);
-                send();
             }
         }
 
-        private class ResponseHandler extends Response.Listener.Adapter {
+        private class ResponseHandler extends Response.Listener.Adapter implements BiFunction<Request, Request, Response.CompleteListener> {
+            private final int node;
             private final Resource.Info info;
 
-            private ResponseHandler(Resource.Info info) {
+            private ResponseHandler(int node, Resource.Info info) {
+                this.node = node;
                 this.info = info;
             }
 
+            /**
+             * <p>Handles the resources pushed by the server for this node.</p>
+             *
+             * @param request the request of this node
+             * @param pushedRequest the pushed request
+             * @return the handler of the pushed response, or null to reject the pushed resource
+             */
+            @Override
+            public Response.CompleteListener apply(Request request, Request pushedRequest) {
+                int child = plan.findDescendant(node, pushedRequest.getURI());
+                if (child >= 0 && claim(child)) {
+                    Resource.Info pushedInfo = createInfo(child);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("pushed {}", pushedInfo);
+                    }
+                    long pushTime = System.nanoTime();
+                    pushedInfo.setIntendedRequestTime(pushTime);
+                    pushedInfo.setRequestTime(pushTime);
+                    pushedInfo.setPushed(true);
+                    return new ResponseHandler(child, pushedInfo);
+                } else {
+                    return null;
+                }
+            }
+
             @Override
             public void onBegin(Response response) {
                 // Record time to first byte.
                 info.setLatencyTime(System.nanoTime());
             }
 
+            @Override
+            public void onHeaders(Response response) {
+                if (user != null) {
+                    user.receive(response.getHeaders());
+                }
+            }
+
             @Override
             public void onContent(Response response, ByteBuffer buffer) {
                 // Record content length.
@@ -730,10 +2208,55 @@ public class LoadGenerator extends ContainerLifeCycle {
                 if (!warmup) {
                     fireResourceNodeEvent(info);
                 }
+                if (window != null && !info.isPushed()) {
+                    // Transfer the permit before succeeding the callback,
+                    // so that the resource tree cannot complete meanwhile.
+                    int next = window.release();
+                    if (next >= 0) {
+                        offer(~next, window.take(next));
+                    }
+                }
+                // Send the children before succeeding the callback, as
+                // pushed children may have completed already, and this
+                // may be the last node of the resource tree.
+                sendChildren(node, info, false);
                 // Succeed the callback even in case of
                 // failures to continue the load generation.
                 callback.succeeded();
-                sendChildren(info.getResource());
+            }
+        }
+    }
+
+    /**
+     * <p>A pool of {@link Sender}s, for a sender thread.</p>
+     * <p>Senders are acquired by the sender thread, but they are released
+     * by the thread that completes the resource tree, so the pool is locked.</p>
+     */
+    private class SenderPool {
+        private final AutoLock lock = new AutoLock();
+        private final ArrayDeque<Sender> senders = new ArrayDeque<>();
+        private final ResourcePlan plan;
+
+        private SenderPool(ResourcePlan plan) {
+            this.plan = plan;
+        }
+
+        private Sender acquire() {
+            Sender sender;
+            try (AutoLock ignored = lock.lock()) {
+                sender = senders.pollFirst();
+            }
+            if (sender == null) {
+                sender = new Sender(plan, this);
+            }
+            return sender;
+        }
+
+        private void release(Sender sender) {
+            try (AutoLock ignored = lock.lock()) {
+                if (senders.size() < MAX_POOLED_SENDERS) {
+                    senders.offerFirst(sender);
+                }
             }
         }
     }
@@ -747,12 +2270,26 @@ public class LoadGenerator extends ContainerLifeCycle {
     public static class Config implements JSON.Convertible {
         protected int threads = 1;
         protected int warmupIterationsPerThread = 0;
+        protected long warmupFor = 0;
+        protected boolean adaptiveWarmup;
         protected int iterationsPerThread = 1;
         protected long runFor = 0;
         protected int usersPerThread = 1;
         protected int channelsPerUser = 1024;
         protected int resourceRate = 1;
         protected long rateRampUpPeriod = 0;
+        protected ArrivalProcess arrivalProcess = new ConstantArrivalProcess();
+        protected ArrivalProcess thinkTimeProcess = new ConstantArrivalProcess();
+        protected LoadProfile loadProfile;
+        protected boolean sharedPacing;
+        protected boolean virtualThreads;
+        protected boolean closedModel;
+        protected long thinkTime;
+        protected int virtualUsersPerThread;
+        protected UserSelection userSelection = UserSelection.ROUND_ROBIN;
+        protected boolean stickyUsers;
+        protected IntFunction<HttpFields> virtualUserHeaders;
+        protected SleepStrategy sleepStrategy = SleepStrategy.PARK;
         protected String scheme = "http";
         protected String host = "localhost";
         protected int port = 8080;
@@ -760,11 +2297,19 @@ public class LoadGenerator extends ContainerLifeCycle {
         protected SslContextFactory.Client sslContextFactory;
         protected Scheduler scheduler;
         protected Executor executor;
+        protected boolean sharedConnector;
         protected SocketAddressResolver socketAddressResolver = new SocketAddressResolver.Sync();
         protected Resource resource = new Resource("/");
+        protected final List<Scenario> scenarios = new ArrayList<>();
+        protected final List<Feeder> feeders = new ArrayList<>();
         protected final List<Listener> listeners = new ArrayList<>();
         protected final List<Request.Listener> requestListeners = new ArrayList<>();
         protected final List<Resource.Listener> resourceListeners = new ArrayList<>();
+        protected boolean recycleInfos;
+        protected int listenerQueueSize;
+        protected int listenerThreads = 1;
+        protected ListenerOverflow listenerOverflow = ListenerOverflow.BLOCK;
+        protected int treeConcurrency;
         protected int maxRequestsQueued = 128 * 1024;
         protected boolean connectBlocking = true;
         protected long connectTimeout = 5000;
@@ -780,6 +2325,16 @@ public class LoadGenerator extends ContainerLifeCycle {
             return warmupIterationsPerThread;
         }
 
+        @ManagedAttribute("Time in milliseconds for how long to warm up")
+        public long getWarmupFor() {
+            return warmupFor;
+        }
+
+        @ManagedAttribute("Whether the warmup ends when response times stabilize")
+        public boolean isAdaptiveWarmup() {
+            return adaptiveWarmup;
+        }
+
         @ManagedAttribute("Number of iterations per sender thread")
         public int getIterationsPerThread() {
             return iterationsPerThread;
@@ -810,6 +2365,62 @@ public class LoadGenerator extends ContainerLifeCycle {
             return rateRampUpPeriod;
         }
 
+        public ArrivalProcess getArrivalProcess() {
+            return arrivalProcess;
+        }
+
+        public LoadProfile getLoadProfile() {
+            return loadProfile;
+        }
+
+        @ManagedAttribute("Whether sender threads share the pacing of sends")
+        public boolean isSharedPacing() {
+            return sharedPacing;
+        }
+
+        @ManagedAttribute("Whether each user has its own virtual thread sender loop")
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        @ManagedAttribute("Whether users send their next resource tree after the previous completes")
+        public boolean isClosedModel() {
+            return closedModel;
+        }
+
+        @ManagedAttribute("Think time of closed model users in milliseconds")
+        public long getThinkTime() {
+            return thinkTime;
+        }
+
+        public ArrivalProcess getThinkTimeProcess() {
+            return thinkTimeProcess;
+        }
+
+        @ManagedAttribute("Number of virtual users per sender thread")
+        public int getVirtualUsersPerThread() {
+            return virtualUsersPerThread;
+        }
+
+        @ManagedAttribute("How sender threads select the virtual user that sends")
+        public UserSelection getUserSelection() {
+            return userSelection;
+        }
+
+        @ManagedAttribute("Whether each virtual user always sends with the same user")
+        public boolean isStickyUsers() {
+            return stickyUsers;
+        }
+
+        public IntFunction<HttpFields> getVirtualUserHeaders() {
+            return virtualUserHeaders;
+        }
+
+        @ManagedAttribute("How sender threads wait for the time of their next send")
+        public SleepStrategy getSleepStrategy() {
+            return sleepStrategy;
+        }
+
         @ManagedAttribute("Scheme for the request URI")
         public String getScheme() {
             return scheme;
@@ -841,6 +2452,11 @@ public class LoadGenerator extends ContainerLifeCycle {
             return executor;
         }
 
+        @ManagedAttribute("Whether all users share the same ClientConnector")
+        public boolean isSharedConnector() {
+            return sharedConnector;
+        }
+
         public SocketAddressResolver getSocketAddressResolver() {
             return socketAddressResolver;
         }
@@ -849,9 +2465,40 @@ public class LoadGenerator extends ContainerLifeCycle {
             return resource;
         }
 
-        @ManagedAttribute("Maximum number of queued requests")
-        public int getMaxRequestsQueued() {
-            return maxRequestsQueued;
+        @ManagedAttribute("Maximum number of queued requests")
+        public int getMaxRequestsQueued() {
+            return maxRequestsQueued;
+        }
+
+        /**
+         * @return the mix of scenarios, or an empty list if only the {@link #getResource() resource} is sent
+         */
+        public List<Scenario> getScenarios() {
+            return scenarios;
+        }
+
+        /**
+         * <p>Returns the number of resources of the resource tree, or the
+         * mean number of resources of the scenario resource trees, weighted
+         * by the scenario weights.</p>
+         *
+         * @return the mean number of resources per resource tree
+         */
+        public double getMeanResourceCount() {
+            if (scenarios.isEmpty()) {
+                return resource.descendantCount();
+            }
+            double weights = 0;
+            double resources = 0;
+            for (Scenario scenario : scenarios) {
+                weights += scenario.getWeight();
+                resources += scenario.getWeight() * scenario.getResource().descendantCount();
+            }
+            return resources / weights;
+        }
+
+        public List<Feeder> getFeeders() {
+            return feeders;
         }
 
         public List<Listener> getListeners() {
@@ -866,6 +2513,31 @@ public class LoadGenerator extends ContainerLifeCycle {
             return resourceListeners;
         }
 
+        @ManagedAttribute("Whether Resource.Info objects are recycled")
+        public boolean isRecycleInfos() {
+            return recycleInfos;
+        }
+
+        @ManagedAttribute("Capacity of the ring buffer of resource events, or 0 for synchronous listeners")
+        public int getListenerQueueSize() {
+            return listenerQueueSize;
+        }
+
+        @ManagedAttribute("Number of threads that notify resource listeners")
+        public int getListenerThreads() {
+            return listenerThreads;
+        }
+
+        @ManagedAttribute("What to do with resource events when the ring buffer is full")
+        public ListenerOverflow getListenerOverflow() {
+            return listenerOverflow;
+        }
+
+        @ManagedAttribute("Max number of concurrent requests per resource tree, or 0 for unlimited")
+        public int getTreeConcurrency() {
+            return treeConcurrency;
+        }
+
         @ManagedAttribute("Whether the connect operation is blocking")
         public boolean isConnectBlocking() {
             return connectBlocking;
@@ -885,19 +2557,40 @@ public class LoadGenerator extends ContainerLifeCycle {
         public void toJSON(JSON.Output out) {
             out.add("threads", getThreads());
             out.add("warmupIterationsPerThread", getWarmupIterationsPerThread());
+            out.add("warmupFor", getWarmupFor());
+            out.add("adaptiveWarmup", isAdaptiveWarmup());
             out.add("iterationsPerThread", getIterationsPerThread());
             out.add("runFor", getRunFor());
             out.add("usersPerThread", getUsersPerThread());
             out.add("channelsPerUser", getChannelsPerUser());
             out.add("resourceRate", getResourceRate());
             out.add("rateRampUpPeriod", getRateRampUpPeriod());
+            out.add("arrivalProcess", getArrivalProcess());
+            out.add("loadProfile", getLoadProfile());
+            out.add("sharedPacing", isSharedPacing());
+            out.add("virtualThreads", isVirtualThreads());
+            out.add("closedModel", isClosedModel());
+            out.add("thinkTime", getThinkTime());
+            out.add("thinkTimeProcess", getThinkTimeProcess());
+            out.add("virtualUsersPerThread", getVirtualUsersPerThread());
+            out.add("userSelection", getUserSelection().name());
+            out.add("stickyUsers", isStickyUsers());
+            out.add("sleepStrategy", getSleepStrategy().name());
             out.add("scheme", getScheme());
             out.add("host", getHost());
             out.add("port", getPort());
             out.add("transport", getHttpClientTransportBuilder());
             out.add("resource", getResource());
+            out.add("scenarios", getScenarios());
+            out.add("feeders", getFeeders());
+            out.add("recycleInfos", isRecycleInfos());
+            out.add("listenerQueueSize", getListenerQueueSize());
+            out.add("listenerThreads", getListenerThreads());
+            out.add("listenerOverflow", getListenerOverflow().name());
+            out.add("treeConcurrency", getTreeConcurrency());
             out.add("maxRequestsQueued", getMaxRequestsQueued());
             out.add("connectBlocking", isConnectBlocking());
+            out.add("sharedConnector", isSharedConnector());
             out.add("connectTimeout", getConnectTimeout());
             out.add("idleTimeout", getIdleTimeout());
         }
@@ -906,19 +2599,42 @@ public class LoadGenerator extends ContainerLifeCycle {
         public void fromJSON(Map<String, Object> map) {
             threads = asInt(map, "threads");
             warmupIterationsPerThread = asInt(map, "warmupIterationsPerThread");
+            warmupFor = asLong(map, "warmupFor");
+            adaptiveWarmup = map.get("adaptiveWarmup") == Boolean.TRUE;
             iterationsPerThread = asInt(map, "iterationsPerThread");
             runFor = asLong(map, "runFor");
             usersPerThread = asInt(map, "usersPerThread");
             channelsPerUser = asInt(map, "channelsPerUser");
             resourceRate = asInt(map, "resourceRate");
             rateRampUpPeriod = asLong(map, "rateRampUpPeriod");
+            arrivalProcess = asArrivalProcess(map, "arrivalProcess");
+            loadProfile = asLoadProfile(map);
+            sharedPacing = map.get("sharedPacing") == Boolean.TRUE;
+            virtualThreads = map.get("virtualThreads") == Boolean.TRUE;
+            closedModel = map.get("closedModel") == Boolean.TRUE;
+            thinkTime = asLong(map, "thinkTime");
+            thinkTimeProcess = asArrivalProcess(map, "thinkTimeProcess");
+            virtualUsersPerThread = asInt(map, "virtualUsersPerThread");
+            userSelection = UserSelection.valueOf(asString(map, "userSelection", UserSelection.ROUND_ROBIN.name()));
+            stickyUsers = map.get("stickyUsers") == Boolean.TRUE;
+            sleepStrategy = SleepStrategy.valueOf(asString(map, "sleepStrategy", SleepStrategy.PARK.name()));
             scheme = asString(map, "scheme", "http");
             host = asString(map, "host", "localhost");
             port = asInt(map, "port");
             httpClientTransportBuilder = asTransport(map);
             resource = asResource(map);
+            scenarios.clear();
+            scenarios.addAll(asScenarios(map));
+            feeders.clear();
+            feeders.addAll(asFeeders(map));
+            recycleInfos = map.get("recycleInfos") == Boolean.TRUE;
+            listenerQueueSize = asInt(map, "listenerQueueSize");
+            listenerThreads = map.containsKey("listenerThreads") ? asInt(map, "listenerThreads") : 1;
+            listenerOverflow = ListenerOverflow.valueOf(asString(map, "listenerOverflow", ListenerOverflow.BLOCK.name()));
+            treeConcurrency = asInt(map, "treeConcurrency");
             maxRequestsQueued = asInt(map, "maxRequestsQueued");
             connectBlocking = map.get("connectBlocking") == Boolean.TRUE;
+            sharedConnector = map.get("sharedConnector") == Boolean.TRUE;
             connectTimeout = asInt(map, "connectTimeout");
             idleTimeout = asInt(map, "idleTimeout");
         }
@@ -972,6 +2688,104 @@ public class LoadGenerator extends ContainerLifeCycle {
             return result;
         }
 
+        private ArrivalProcess asArrivalProcess(Map<?, ?> map, String name) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> arrivalMap = (Map<String, Object>)map.get(name);
+            if (arrivalMap == null) {
+                return new ConstantArrivalProcess();
+            }
+            String type = (String)arrivalMap.get("type");
+            if (type == null) {
+                return new ConstantArrivalProcess();
+            }
+            ArrivalProcess result;
+            switch (type) {
+                case ConstantArrivalProcess.TYPE:
+                    result = new ConstantArrivalProcess();
+                    break;
+                case PoissonArrivalProcess.TYPE:
+                    result = new PoissonArrivalProcess();
+                    break;
+                case UniformArrivalProcess.TYPE:
+                    result = new UniformArrivalProcess();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown arrival process type: " + type);
+            }
+            result.fromJSON(arrivalMap);
+            return result;
+        }
+
+        private List<Scenario> asScenarios(Map<?, ?> map) {
+            Object scenarios = map.get("scenarios");
+            Object[] array;
+            if (scenarios instanceof Object[]) {
+                array = (Object[])scenarios;
+            } else if (scenarios instanceof Collection) {
+                array = ((Collection<?>)scenarios).toArray();
+            } else {
+                return List.of();
+            }
+            List<Scenario> result = new ArrayList<>();
+            for (Object element : array) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> scenarioMap = (Map<String, Object>)element;
+                Scenario scenario = new Scenario();
+                scenario.fromJSON(scenarioMap);
+                result.add(scenario);
+            }
+            return result;
+        }
+
+        private List<Feeder> asFeeders(Map<?, ?> map) {
+            Object feeders = map.get("feeders");
+            Object[] array;
+            if (feeders instanceof Object[]) {
+                array = (Object[])feeders;
+            } else if (feeders instanceof Collection) {
+                array = ((Collection<?>)feeders).toArray();
+            } else {
+                return List.of();
+            }
+            List<Feeder> result = new ArrayList<>();
+            for (Object element : array) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> feederMap = (Map<String, Object>)element;
+                String type = (String)feederMap.get("type");
+                Feeder feeder;
+                switch (type == null ? "" : type) {
+                    case CounterFeeder.TYPE:
+                        feeder = new CounterFeeder();
+                        break;
+                    case RandomFeeder.TYPE:
+                        feeder = new RandomFeeder();
+                        break;
+                    case ZipfianFeeder.TYPE:
+                        feeder = new ZipfianFeeder();
+                        break;
+                    case FileFeeder.TYPE:
+                        feeder = new FileFeeder();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown feeder type: " + type);
+                }
+                feeder.fromJSON(feederMap);
+                result.add(feeder);
+            }
+            return result;
+        }
+
+        private LoadProfile asLoadProfile(Map<?, ?> map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> profileMap = (Map<String, Object>)map.get("loadProfile");
+            if (profileMap == null) {
+                return null;
+            }
+            LoadProfile result = new LoadProfile();
+            result.fromJSON(profileMap);
+            return result;
+        }
+
         private Resource asResource(Map<?, ?> map) {
             @SuppressWarnings("unchecked")
             Map<String, Object> resourceMap = (Map<String, Object>)map.get("resource");
@@ -1024,6 +2838,39 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Configures the amount of time that the load generator should warm up.</p>
+         * <p>This setting always takes precedence over {@link #warmupIterationsPerThread(int)}.</p>
+         *
+         * @param time the time the load generator warms up
+         * @param unit the unit of time
+         * @return this Builder
+         * @see #adaptiveWarmup(boolean)
+         */
+        public Builder warmupFor(long time, TimeUnit unit) {
+            if (time > 0) {
+                this.warmupFor = unit.toMillis(time);
+            }
+            return this;
+        }
+
+        /**
+         * <p>Configures whether the warmup ends as soon as the warmup response times
+         * stabilize, rather than after the {@link #warmupFor(long, TimeUnit) warmup time}.</p>
+         * <p>The warmup response times are considered stable when their median and
+         * 99th percentile do not change significantly for a few consecutive intervals,
+         * and the JIT compiler is mostly idle.</p>
+         * <p>The {@link #warmupFor(long, TimeUnit) warmup time} must be configured,
+         * and it is the max warmup time in case the response times never stabilize.</p>
+         *
+         * @param adaptiveWarmup whether the warmup ends when the response times stabilize
+         * @return this Builder
+         */
+        public Builder adaptiveWarmup(boolean adaptiveWarmup) {
+            this.adaptiveWarmup = adaptiveWarmup;
+            return this;
+        }
+
         /**
          * @param iterationsPerThread the number of iterations that each sender thread performs, or zero to run forever
          * @return this Builder
@@ -1036,6 +2883,8 @@ public class LoadGenerator extends ContainerLifeCycle {
         /**
          * <p>Configures the amount of time that the load generator should run.</p>
          * <p>This setting always takes precedence over {@link #iterationsPerThread}.</p>
+         * <p>The run time is measured from the end of the warmup, so that
+         * the warmup does not shorten the recorded run.</p>
          *
          * @param time the time the load generator runs
          * @param unit the unit of time
@@ -1122,6 +2971,209 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>The arrival process that determines the spacing between resource tree sends.</p>
+         * <p>The default arrival process is {@link ConstantArrivalProcess}, that evenly spaces
+         * sends according to the {@link #resourceRate(int) resource rate}.</p>
+         * <p>Use {@link PoissonArrivalProcess} to simulate the bursty traffic of independent users.</p>
+         *
+         * @param arrivalProcess the arrival process of resource tree sends
+         * @return this Builder
+         */
+        public Builder arrivalProcess(ArrivalProcess arrivalProcess) {
+            this.arrivalProcess = Objects.requireNonNull(arrivalProcess);
+            return this;
+        }
+
+        /**
+         * <p>The load profile that determines how the resource rate changes over time.</p>
+         * <p>The load profile begins after the warmup iterations, that are paced
+         * by the {@link #resourceRate(int) resource rate}; after warmup, the load
+         * profile replaces the resource rate and the {@link #rateRampUpPeriod(long)
+         * rate ramp-up}, and its duration replaces the {@link #iterationsPerThread(int)
+         * iterations} and the {@link #runFor(long, TimeUnit) run time}.</p>
+         *
+         * @param loadProfile the load profile, or null for a constant resource rate
+         * @return this Builder
+         */
+        public Builder loadProfile(LoadProfile loadProfile) {
+            this.loadProfile = loadProfile;
+            return this;
+        }
+
+        /**
+         * <p>Whether sender threads share the pacing of sends.</p>
+         * <p>By default, the {@link #resourceRate(int) resource rate} is split among
+         * sender threads, and each sender thread paces its own sends; if a sender
+         * thread is stalled (for example, by a {@link #connectBlocking(boolean)
+         * blocking connect}), the total rate drops below the nominal rate.</p>
+         * <p>With shared pacing, sender threads claim send slots from a shared
+         * counter, so that other sender threads send in place of a stalled one,
+         * and the total rate is kept.</p>
+         *
+         * @param sharedPacing whether sender threads share the pacing of sends
+         * @return this Builder
+         * @see LoadGenerator#getMissedSlots()
+         */
+        public Builder sharedPacing(boolean sharedPacing) {
+            this.sharedPacing = sharedPacing;
+            return this;
+        }
+
+        /**
+         * <p>Whether each user has its own sender loop, running in a virtual thread.</p>
+         * <p>By default, each sender thread is a platform thread that sends
+         * resource trees on behalf of its {@link #usersPerThread(int) users}
+         * in a round-robin fashion.</p>
+         * <p>With virtual threads, each user has its own independent sender loop
+         * running in a virtual thread, so that a large number of users can be
+         * simulated without a platform thread for each user.
+         * The {@link #resourceRate(int) resource rate} is split among all users,
+         * and the {@link #warmupIterationsPerThread(int) warmup iterations} and
+         * the {@link #iterationsPerThread(int) iterations} apply to each user.</p>
+         * <p>Virtual threads require Java 21 or later.</p>
+         *
+         * @param virtualThreads whether each user has its own virtual thread sender loop
+         * @return this Builder
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * <p>Whether the load generation follows a closed model rather than an open model.</p>
+         * <p>In the default open model, resource trees are sent at the
+         * {@link #resourceRate(int) resource rate}, independently of responses.</p>
+         * <p>In the closed model, each user sends a resource tree, waits for the
+         * whole resource tree to complete, {@link #thinkTime(long, TimeUnit) thinks}
+         * and then sends the next resource tree, so that the throughput depends on
+         * the response times.
+         * The resource rate is ignored, and the {@link #rateRampUpPeriod(long) rate
+         * ramp-up period}, if any, spreads the first sends of the users.</p>
+         *
+         * @param closedModel whether the load generation follows a closed model
+         * @return this Builder
+         */
+        public Builder closedModel(boolean closedModel) {
+            this.closedModel = closedModel;
+            return this;
+        }
+
+        /**
+         * <p>The average time closed model users think after a resource tree
+         * completes, before they send the next resource tree.</p>
+         * <p>The same think time applies to {@link #virtualUsersPerThread(int) virtual users}.</p>
+         * <p>The distribution of think times is determined by the
+         * {@link #thinkTimeProcess(ArrivalProcess) think time process}.</p>
+         *
+         * @param time the average think time
+         * @param unit the unit of time
+         * @return this Builder
+         * @see #closedModel(boolean)
+         */
+        public Builder thinkTime(long time, TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.thinkTime = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * <p>The distribution of think times, independent of the
+         * {@link #arrivalProcess(ArrivalProcess) arrival process} of sends.</p>
+         * <p>The think time process produces values with mean {@code 1}, that are
+         * multiplied by the {@link #thinkTime(long, TimeUnit) think time}; the default
+         * {@link ConstantArrivalProcess} always thinks for the think time, while
+         * {@link PoissonArrivalProcess} gives exponentially distributed think times.</p>
+         *
+         * @param thinkTimeProcess the distribution of think times
+         * @return this Builder
+         */
+        public Builder thinkTimeProcess(ArrivalProcess thinkTimeProcess) {
+            this.thinkTimeProcess = Objects.requireNonNull(thinkTimeProcess);
+            return this;
+        }
+
+        /**
+         * <p>Configures the number of {@link VirtualUser virtual users} per sender thread.</p>
+         * <p>Virtual users only hold the per-user state, such as the cookies and the
+         * {@link #virtualUserHeaders(IntFunction) headers}, and send their resource trees
+         * with the {@code HttpClient}s of the {@link #usersPerThread(int) users} of the
+         * sender thread, so that it is possible to simulate hundreds of thousands of
+         * users with few HttpClients and connections.</p>
+         * <p>For each send, the sender thread selects a virtual user with the
+         * {@link #userSelection(UserSelection) user selection}; virtual users that have a
+         * resource tree in flight, or that are still thinking for the
+         * {@link #thinkTime(long, TimeUnit) think time} after their previous resource tree
+         * completed, are skipped unless all the virtual users selected in a few attempts are.</p>
+         *
+         * @param virtualUsersPerThread the number of virtual users per sender thread, or zero to disable virtual users
+         * @return this Builder
+         */
+        public Builder virtualUsersPerThread(int virtualUsersPerThread) {
+            if (virtualUsersPerThread < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.virtualUsersPerThread = virtualUsersPerThread;
+            return this;
+        }
+
+        /**
+         * @param userSelection how sender threads select the virtual user that sends
+         * @return this Builder
+         * @see #virtualUsersPerThread(int)
+         */
+        public Builder userSelection(UserSelection userSelection) {
+            this.userSelection = Objects.requireNonNull(userSelection);
+            return this;
+        }
+
+        /**
+         * <p>Configures whether each virtual user always sends with the same
+         * {@code HttpClient}, and therefore over the same few connections,
+         * rather than with the next {@code HttpClient} in turn.</p>
+         *
+         * @param stickyUsers whether each virtual user always sends with the same user
+         * @return this Builder
+         * @see #virtualUsersPerThread(int)
+         */
+        public Builder stickyUsers(boolean stickyUsers) {
+            this.stickyUsers = stickyUsers;
+            return this;
+        }
+
+        /**
+         * <p>Configures the headers, such as {@code Authorization}, that each virtual
+         * user adds to all its requests.</p>
+         * <p>The function is called once per virtual user, with the virtual user id;
+         * the returned headers should be immutable, and may be shared among virtual users.</p>
+         *
+         * @param virtualUserHeaders the function that returns the headers of a virtual user
+         * @return this Builder
+         * @see #virtualUsersPerThread(int)
+         */
+        public Builder virtualUserHeaders(IntFunction<HttpFields> virtualUserHeaders) {
+            this.virtualUserHeaders = virtualUserHeaders;
+            return this;
+        }
+
+        /**
+         * <p>How sender threads wait for the time of their next send.</p>
+         * <p>The default {@link SleepStrategy#PARK} has the granularity of the OS
+         * parking; at high resource rates, {@link SleepStrategy#SPIN_PARK} or
+         * {@link SleepStrategy#YIELD_SPIN} send more precisely, at the cost of CPU.</p>
+         *
+         * @param sleepStrategy the sleep strategy of sender threads
+         * @return this Builder
+         * @see LoadGenerator#getSendLagHistogram()
+         */
+        public Builder sleepStrategy(SleepStrategy sleepStrategy) {
+            this.sleepStrategy = Objects.requireNonNull(sleepStrategy);
+            return this;
+        }
+
         /**
          * @param scheme the default scheme
          * @return this Builder
@@ -1190,6 +3242,23 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Configures whether all users share the same {@link ClientConnector},
+         * and therefore the same NIO selectors, {@code ByteBufferPool} and scheduler,
+         * rather than each user having its own.</p>
+         * <p>Each user still has its own {@code HttpClient}, and therefore its own
+         * connection pool.</p>
+         * <p>With many users, sharing the connector greatly reduces the number
+         * of threads and the memory used by the load generator.</p>
+         *
+         * @param sharedConnector whether all users share the same ClientConnector
+         * @return this Builder
+         */
+        public Builder sharedConnector(boolean sharedConnector) {
+            this.sharedConnector = sharedConnector;
+            return this;
+        }
+
         /**
          * @param socketAddressResolver the shared SocketAddressResolver
          * @return this Builder
@@ -1217,6 +3286,34 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Adds a {@link Scenario} to the mix of scenarios.</p>
+         * <p>When scenarios are configured, every iteration sends the resource
+         * tree of a scenario chosen at random according to the scenario weights,
+         * and the {@link #resource(Resource) resource} is ignored.</p>
+         *
+         * @param scenario the {@link Scenario} to add
+         * @return this Builder
+         */
+        public Builder scenario(Scenario scenario) {
+            scenarios.add(scenario);
+            return this;
+        }
+
+        /**
+         * <p>Adds a {@link Feeder} that provides the values of the variables
+         * of the resource paths, request header values and request contents.</p>
+         * <p>The feeders are invoked once per resource tree, so that all the
+         * resources of a resource tree use the same values.</p>
+         *
+         * @param feeder the {@link Feeder} to add
+         * @return this Builder
+         */
+        public Builder feeder(Feeder feeder) {
+            feeders.add(feeder);
+            return this;
+        }
+
         /**
          * @param listener the {@link Listener} to add
          * @return this Builder
@@ -1244,6 +3341,93 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Configures whether {@link Resource.Info} objects, and the related
+         * response handlers, are recycled after their resource tree completes,
+         * rather than being allocated for every resource of every resource tree.</p>
+         * <p>When recycling is enabled, {@link Resource.Listener}s must not
+         * retain the {@link Resource.Info} objects they are notified with,
+         * nor use them after the listener method returns, because they will
+         * be reused by the next resource trees.</p>
+         *
+         * @param recycleInfos whether to recycle Resource.Info objects
+         * @return this Builder
+         */
+        public Builder recycleInfos(boolean recycleInfos) {
+            this.recycleInfos = recycleInfos;
+            return this;
+        }
+
+        /**
+         * <p>Configures the asynchronous dispatch of resource events to
+         * {@link Resource.Listener}s, so that slow listeners do not delay
+         * the threads that complete responses.</p>
+         * <p>When the listener queue size is positive, resource events are
+         * published into a ring buffer of that size, rounded up to a power of 2,
+         * and the {@link #listenerThreads(int) listener threads} notify the
+         * resource listeners; otherwise, the resource listeners are notified
+         * synchronously by the threads that complete responses.</p>
+         * <p>Resource listeners notified asynchronously may be notified
+         * concurrently and out of order, even with a single listener thread.
+         * When {@link #recycleInfos(boolean) recycling Infos}, the events are copied
+         * into the ring buffer, so the same retention contract applies.</p>
+         *
+         * @param listenerQueueSize the capacity of the ring buffer of resource events, or 0 for synchronous listeners
+         * @return this Builder
+         * @see #listenerOverflow(ListenerOverflow)
+         * @see LoadGenerator#getDroppedListenerEvents()
+         */
+        public Builder listenerQueueSize(int listenerQueueSize) {
+            this.listenerQueueSize = listenerQueueSize;
+            return this;
+        }
+
+        /**
+         * @param listenerThreads the number of threads that notify resource listeners asynchronously
+         * @return this Builder
+         * @see #listenerQueueSize(int)
+         */
+        public Builder listenerThreads(int listenerThreads) {
+            this.listenerThreads = listenerThreads;
+            return this;
+        }
+
+        /**
+         * @param listenerOverflow what to do with resource events when the ring buffer is full
+         * @return this Builder
+         * @see #listenerQueueSize(int)
+         */
+        public Builder listenerOverflow(ListenerOverflow listenerOverflow) {
+            this.listenerOverflow = Objects.requireNonNull(listenerOverflow);
+            return this;
+        }
+
+        /**
+         * <p>Configures the max number of concurrent requests of each resource tree.</p>
+         * <p>When a resource completes, all its children are sent at once, limited
+         * only by the {@link #channelsPerUser(int) channels per user}.
+         * Browsers instead open a limited number of HTTP/1.1 connections (typically 6)
+         * per origin, and queue the other requests until a connection is free.
+         * When the tree concurrency is positive, at most that number of requests of
+         * each resource tree are in progress, and the others are sent in order as
+         * the requests in progress complete; the time they waited is reported by
+         * {@link Resource.Info#getQueueDelay()}.</p>
+         * <p>All the resources of a resource tree share the same origin, so the
+         * limit applies to the whole resource tree; resources pushed by the
+         * server do not count towards the limit.</p>
+         *
+         * @param treeConcurrency the max number of concurrent requests per resource tree, or 0 for unlimited
+         * @return this Builder
+         * @see #channelsPerUser(int)
+         */
+        public Builder treeConcurrency(int treeConcurrency) {
+            if (treeConcurrency < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.treeConcurrency = treeConcurrency;
+            return this;
+        }
+
         /**
          * @param connectBlocking same as {@link HttpClient#setConnectBlocking(boolean)}
          * @return this Builder
@@ -1278,6 +3462,29 @@ public class LoadGenerator extends ContainerLifeCycle {
             if (rateRampUpPeriod > 0 && resourceRate == 0) {
                 throw new IllegalArgumentException("invalid rate ramp-up greater than 0 with resource rate 0");
             }
+            if (loadProfile != null && loadProfile.getStages().isEmpty()) {
+                throw new IllegalArgumentException("invalid load profile without stages");
+            }
+            if (closedModel && loadProfile != null) {
+                throw new IllegalArgumentException("invalid load profile with closed model");
+            }
+            if (virtualUsersPerThread > 0 && closedModel) {
+                throw new IllegalArgumentException("invalid virtual users with closed model");
+            }
+            if (virtualUsersPerThread > 0 && virtualThreads) {
+                throw new IllegalArgumentException("invalid virtual users with virtual threads");
+            }
+            if (adaptiveWarmup && warmupFor == 0) {
+                throw new IllegalArgumentException("invalid adaptive warmup without warmup time");
+            }
+            if (virtualThreads) {
+                if (!VirtualThreads.isSupported()) {
+                    throw new IllegalArgumentException("invalid virtual threads, not supported by this JVM");
+                }
+                if (usersPerThread == 0) {
+                    throw new IllegalArgumentException("invalid virtual threads with users per thread 0");
+                }
+            }
             return new LoadGenerator(this);
         }
     }
@@ -1347,39 +3554,47 @@ public class LoadGenerator extends ContainerLifeCycle {
     }
 
     private class WarmupCallback extends Callback.Nested {
-        private final CountDownLatch latch;
-        private final Callback counter;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        // The warmup resource trees in flight, plus one until join() is called.
+        private final AtomicLong counter = new AtomicLong(1);
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private volatile boolean complete;
 
-        public WarmupCallback(Callback callback, int warmupIterations) {
+        public WarmupCallback(Callback callback) {
             super(callback);
-            latch = new CountDownLatch(warmupIterations == 0 ? 0 : 1);
-            // If there are no warmup iterations, the callback will never be invoked.
-            counter = warmupIterations == 0 ? NOOP : new CountingCallback(Callback.from(this::success, this::failure), warmupIterations);
+        }
+
+        public void increment() {
+            counter.incrementAndGet();
         }
 
         @Override
         public void succeeded() {
-            counter.succeeded();
+            if (counter.decrementAndGet() == 0 && !failed.get()) {
+                success();
+            }
         }
 
         @Override
         public void failed(Throwable x) {
-            counter.failed(x);
+            if (failed.compareAndSet(false, true)) {
+                failure(x);
+            }
         }
 
         public void join() {
             try {
-                if (counter == NOOP) {
-                    fireReadyEvent();
-                }
+                // No more warmup resource trees, wait
+                // for those in flight to complete.
+                succeeded();
                 latch.await();
             } catch (InterruptedException x) {
                 throw new RuntimeException(x);
             }
-        }
-
-        private void success() {
-            try {
+            // The barrier is awaited by the sender thread rather than by the
+            // thread that completes the last warmup resource tree, so that
+            // many senders cannot exhaust the HttpClient threads while waiting.
+            if (complete) {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("awaiting barrier for ready event");
                 }
@@ -1391,13 +3606,16 @@ public class LoadGenerator extends ContainerLifeCycle {
                     LOGGER.debug("awaiting barrier for ready listener");
                 }
                 awaitBarrier();
-                // Do not forward success the nested callback,
-                // as these are just warmup iterations.
-            } finally {
-                latch.countDown();
             }
         }
 
+        private void success() {
+            // Do not forward success the nested callback,
+            // as these are just warmup iterations.
+            complete = true;
+            latch.countDown();
+        }
+
         private void failure(Throwable failure) {
             latch.countDown();
             // Only failures are forwarded to the nested callback.
@@ -1405,6 +3623,65 @@ public class LoadGenerator extends ContainerLifeCycle {
         }
     }
 
+    /**
+     * <p>A user of the closed model that is thinking, and will be
+     * ready to send its next resource tree at {@code readyTime}.</p>
+     */
+    private static class ThinkingUser implements Delayed {
+        private final int index;
+        private final long completeTime;
+        private final long readyTime;
+
+        private ThinkingUser(int index, long completeTime, long readyTime) {
+            this.index = index;
+            this.completeTime = completeTime;
+            this.readyTime = readyTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyTime, ((ThinkingUser)other).readyTime);
+        }
+    }
+
+    /**
+     * <p>Makes the closed model user think when its resource tree completes.</p>
+     */
+    private static class ThinkCallback extends Callback.Nested {
+        private final DelayQueue<ThinkingUser> readyUsers;
+        private final int index;
+        private final long thinkTime;
+
+        private ThinkCallback(Callback callback, DelayQueue<ThinkingUser> readyUsers, int index, long thinkTime) {
+            super(callback);
+            this.readyUsers = readyUsers;
+            this.index = index;
+            this.thinkTime = thinkTime;
+        }
+
+        @Override
+        public void succeeded() {
+            think();
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x) {
+            think();
+            super.failed(x);
+        }
+
+        private void think() {
+            long now = System.nanoTime();
+            readyUsers.offer(new ThinkingUser(index, now, now + thinkTime));
+        }
+    }
+
     private static class RunCallback extends Callback.Completable {
         private final AtomicLong counter = new AtomicLong();
         private boolean last;
@@ -0,0 +1,465 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A load profile made of a sequence of {@link Stage stages},
+ * each describing how the resource rate changes over time.</p>
+ * <p>Each stage has a duration and a target resource rate; the rate at the
+ * beginning of a stage is the rate at the end of the previous stage, or zero
+ * for the first stage.</p>
+ * <p>Stages can be used to describe capacity runs, for example:</p>
+ * <pre>
+ * LoadProfile profile = new LoadProfile()
+ *     .ramp(1, TimeUnit.MINUTES, 1000)   // Ramp up from 0 to 1000 resources/s.
+ *     .hold(5, TimeUnit.MINUTES, 1000)   // Plateau at 1000 resources/s.
+ *     .hold(5, TimeUnit.MINUTES, 2000)   // Step up to 2000 resources/s.
+ *     .hold(10, TimeUnit.SECONDS, 8000)  // Spike to 8000 resources/s.
+ *     .hold(5, TimeUnit.MINUTES, 2000)   // Back to 2000 resources/s.
+ *     .ramp(1, TimeUnit.MINUTES, 0);     // Ramp down to 0 resources/s.
+ * </pre>
+ * <p>A {@link Stage.Type#SINE sine} stage oscillates around its target rate,
+ * for example to simulate day/night traffic cycles.</p>
+ * <p>The rates of a load profile are total rates across all sender threads,
+ * like {@link LoadGenerator.Builder#resourceRate(int)}.</p>
+ */
+public class LoadProfile implements JSON.Convertible {
+    private static final double NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // The stages are copied when added, and the offsets of each stage
+    // within this profile are kept in arrays parallel to the stages,
+    // so that the same Stage can be added many times, even to other profiles.
+    private Stage[] stages = new Stage[0];
+    private long[] beginTimes = new long[0];
+    private double[] beginRates = new double[0];
+    private double[] beginSends = new double[0];
+    private double[] sends = new double[0];
+
+    /**
+     * <p>Adds a stage where the rate changes linearly from the rate
+     * at the end of the previous stage to the given rate.</p>
+     *
+     * @param duration the stage duration
+     * @param unit the stage duration unit
+     * @param rate the resource rate at the end of the stage
+     * @return this LoadProfile
+     */
+    public LoadProfile ramp(long duration, TimeUnit unit, double rate) {
+        return stage(new Stage(Stage.Type.RAMP, unit.toNanos(duration), rate, 0, 0));
+    }
+
+    /**
+     * <p>Adds a stage where the rate is constant.</p>
+     * <p>A hold stage with a rate different from the previous
+     * stage's rate is a step up or step down of the load;
+     * a short hold stage with a high rate is a load spike.</p>
+     *
+     * @param duration the stage duration
+     * @param unit the stage duration unit
+     * @param rate the resource rate of the stage
+     * @return this LoadProfile
+     */
+    public LoadProfile hold(long duration, TimeUnit unit, double rate) {
+        return stage(new Stage(Stage.Type.HOLD, unit.toNanos(duration), rate, 0, 0));
+    }
+
+    /**
+     * <p>Adds a stage where the rate oscillates sinusoidally around the given rate.</p>
+     *
+     * @param duration the stage duration
+     * @param unit the stage duration and period unit
+     * @param rate the mean resource rate of the stage
+     * @param amplitude the amplitude of the oscillation, not greater than the mean rate
+     * @param period the period of the oscillation
+     * @return this LoadProfile
+     */
+    public LoadProfile sine(long duration, TimeUnit unit, double rate, double amplitude, long period) {
+        return stage(new Stage(Stage.Type.SINE, unit.toNanos(duration), rate, amplitude, unit.toNanos(period)));
+    }
+
+    /**
+     * <p>Adds a copy of the given stage, so that the same stage
+     * can be added many times, for example to return to a plateau
+     * after a spike.</p>
+     *
+     * @param stage the stage to add
+     * @return this LoadProfile
+     */
+    public LoadProfile stage(Stage stage) {
+        int count = stages.length;
+        Stage copy = new Stage(stage.getType(), stage.getDuration(), stage.getRate(), stage.getAmplitude(), stage.getPeriod());
+        long beginTime = 0;
+        double beginRate = 0;
+        double beginSend = 0;
+        if (count > 0) {
+            int last = count - 1;
+            Stage previous = stages[last];
+            beginTime = beginTimes[last] + previous.getDuration();
+            beginRate = previous.rateAt(beginRates[last], toSeconds(previous.getDuration()));
+            beginSend = beginSends[last] + sends[last];
+        }
+        stages = Arrays.copyOf(stages, count + 1);
+        stages[count] = copy;
+        beginTimes = Arrays.copyOf(beginTimes, count + 1);
+        beginTimes[count] = beginTime;
+        beginRates = Arrays.copyOf(beginRates, count + 1);
+        beginRates[count] = beginRate;
+        beginSends = Arrays.copyOf(beginSends, count + 1);
+        beginSends[count] = beginSend;
+        sends = Arrays.copyOf(sends, count + 1);
+        sends[count] = copy.sendsAt(beginRate, toSeconds(copy.getDuration()));
+        return this;
+    }
+
+    /**
+     * @return the stages of this load profile
+     */
+    public List<Stage> getStages() {
+        return List.of(stages);
+    }
+
+    /**
+     * @param stage the stage index
+     * @return the time, in nanoseconds since the beginning of this load profile, the stage begins
+     */
+    public long getBeginTime(int stage) {
+        return beginTimes[stage];
+    }
+
+    /**
+     * @param stage the stage index
+     * @return the time, in nanoseconds since the beginning of this load profile, the stage ends
+     */
+    public long getEndTime(int stage) {
+        return beginTimes[stage] + stages[stage].getDuration();
+    }
+
+    /**
+     * @param stage the stage index
+     * @return the nominal number of resource trees sent during the stage
+     */
+    public double getSends(int stage) {
+        return sends[stage];
+    }
+
+    /**
+     * @return the total duration of this load profile, in nanoseconds
+     */
+    public long getDuration() {
+        int count = stages.length;
+        return count == 0 ? 0 : getEndTime(count - 1);
+    }
+
+    /**
+     * @param time the time, in nanoseconds, since the beginning of this load profile
+     * @return the index of the stage at the given time, or -1 if the time is outside this load profile
+     */
+    public int stageAt(long time) {
+        if (time < 0) {
+            return -1;
+        }
+        for (int i = 0; i < stages.length; ++i) {
+            if (time < getEndTime(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param time the time, in nanoseconds, since the beginning of this load profile
+     * @return the resource rate at the given time
+     */
+    public double rateAt(long time) {
+        int index = stageAt(time);
+        if (index < 0) {
+            return 0;
+        }
+        return stages[index].rateAt(beginRates[index], toSeconds(time - beginTimes[index]));
+    }
+
+    /**
+     * <p>Returns the time at which the given number of resource trees
+     * should have been sent since the beginning of this load profile.</p>
+     * <p>This method is the inverse of the integral of the rate over time;
+     * it is invoked by sender threads for every send, and does not allocate.</p>
+     *
+     * @param sends the number of resource trees sent since the beginning of this load profile
+     * @return the time, in nanoseconds since the beginning of this load profile,
+     * at which the given number of resource trees should have been sent,
+     * capped to the {@link #getDuration() duration} of this load profile
+     */
+    public long timeAt(double sends) {
+        for (int i = 0; i < stages.length; ++i) {
+            if (sends <= beginSends[i] + this.sends[i]) {
+                double time = stages[i].timeAt(beginRates[i], sends - beginSends[i]);
+                return Math.min(getEndTime(i), beginTimes[i] + Math.round(time * NANOS));
+            }
+        }
+        return getDuration();
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("stages", getStages());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        // Replace, rather than append to, the existing stages.
+        stages = new Stage[0];
+        beginTimes = new long[0];
+        beginRates = new double[0];
+        beginSends = new double[0];
+        sends = new double[0];
+        Object value = map.get("stages");
+        Object[] stages = value instanceof Collection ? ((Collection<?>)value).toArray() : (Object[])value;
+        if (stages != null) {
+            Arrays.stream(stages)
+                    .map(element -> {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> stageMap = (Map<String, Object>)element;
+                        return Stage.from(stageMap);
+                    })
+                    .forEach(this::stage);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x%s", getClass().getSimpleName(), hashCode(), getStages());
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / NANOS;
+    }
+
+    /**
+     * <p>A stage of a {@link LoadProfile}.</p>
+     * <p>A stage only describes the shape of the rate; the time it begins and
+     * the rate at its beginning depend on the previous stages, and are
+     * computed by the load profile the stage is added to.</p>
+     * <p>Stages are immutable; use {@link #from(Map)} to create a stage from JSON.</p>
+     */
+    public static class Stage implements JSON.Convertible {
+        private final Type type;
+        private final long duration;
+        private final double rate;
+        private final double amplitude;
+        private final long period;
+
+        /**
+         * @param type the stage type
+         * @param duration the stage duration, in nanoseconds
+         * @param rate the stage target rate, or mean rate for {@link Type#SINE} stages
+         * @param amplitude the oscillation amplitude for {@link Type#SINE} stages
+         * @param period the oscillation period, in nanoseconds, for {@link Type#SINE} stages
+         */
+        public Stage(Type type, long duration, double rate, double amplitude, long period) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("invalid stage duration " + duration);
+            }
+            if (rate < 0) {
+                throw new IllegalArgumentException("invalid stage rate " + rate);
+            }
+            if (type == Type.SINE && (amplitude < 0 || amplitude > rate || period <= 0)) {
+                throw new IllegalArgumentException("invalid sine stage amplitude " + amplitude + " or period " + period);
+            }
+            this.type = Objects.requireNonNull(type);
+            this.duration = duration;
+            this.rate = rate;
+            this.amplitude = amplitude;
+            this.period = period;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the stage duration, in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return the stage target rate, or mean rate for {@link Type#SINE} stages
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the oscillation amplitude for {@link Type#SINE} stages
+         */
+        public double getAmplitude() {
+            return amplitude;
+        }
+
+        /**
+         * @return the oscillation period, in nanoseconds, for {@link Type#SINE} stages
+         */
+        public long getPeriod() {
+            return period;
+        }
+
+        private double rateAt(double beginRate, double time) {
+            switch (type) {
+                case RAMP:
+                    return beginRate + (rate - beginRate) * time / toSeconds(duration);
+                case HOLD:
+                    return rate;
+                case SINE:
+                    return rate + amplitude * Math.sin(2 * Math.PI * time / toSeconds(period));
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        private double sendsAt(double beginRate, double time) {
+            switch (type) {
+                case RAMP:
+                    return beginRate * time + (rate - beginRate) * time * time / (2 * toSeconds(duration));
+                case HOLD:
+                    return rate * time;
+                case SINE:
+                    double p = toSeconds(period);
+                    return rate * time + amplitude * p / (2 * Math.PI) * (1 - Math.cos(2 * Math.PI * time / p));
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        private double timeAt(double beginRate, double sends) {
+            if (sends <= 0) {
+                return 0;
+            }
+            switch (type) {
+                case RAMP: {
+                    // Solve 1/2 * k * t^2 + r0 * t - sends = 0 for t,
+                    // using the form that is numerically stable when k is small.
+                    double k = (rate - beginRate) / toSeconds(duration);
+                    double delta = Math.sqrt(Math.max(0, beginRate * beginRate + 2 * k * sends));
+                    double divisor = beginRate + delta;
+                    return divisor > 0 ? 2 * sends / divisor : toSeconds(duration);
+                }
+                case HOLD: {
+                    return rate > 0 ? sends / rate : toSeconds(duration);
+                }
+                case SINE: {
+                    // The integral of the rate cannot be inverted analytically,
+                    // but it is monotonic and its derivative is the rate, so use
+                    // Newton's method from the mean rate estimate, falling back
+                    // to bisection when a step leaves the bracket of the solution.
+                    double low = 0;
+                    double high = toSeconds(duration);
+                    double time = rate > 0 ? Math.min(sends / rate, high) : high;
+                    for (int i = 0; i < 64; ++i) {
+                        double error = sendsAt(beginRate, time) - sends;
+                        if (error == 0) {
+                            return time;
+                        }
+                        if (error < 0) {
+                            low = time;
+                        } else {
+                            high = time;
+                        }
+                        double next = time - error / rateAt(beginRate, time);
+                        if (!(next > low && next < high)) {
+                            next = (low + high) / 2;
+                        }
+                        // Stop at nanosecond precision, or at the
+                        // precision of doubles for very long stages.
+                        if (Math.abs(next - time) <= 1D / NANOS + Math.ulp(time)) {
+                            return next;
+                        }
+                        time = next;
+                    }
+                    return time;
+                }
+                default: {
+                    throw new IllegalStateException();
+                }
+            }
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("type", type.name().toLowerCase(Locale.ENGLISH));
+            out.add("duration", TimeUnit.NANOSECONDS.toMillis(duration));
+            out.add("rate", rate);
+            if (type == Type.SINE) {
+                out.add("amplitude", amplitude);
+                out.add("period", TimeUnit.NANOSECONDS.toMillis(period));
+            }
+        }
+
+        @Override
+        public void fromJSON(Map<String, Object> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @param map the JSON representation of a stage, as produced by {@link #toJSON(JSON.Output)}
+         * @return a new stage
+         */
+        public static Stage from(Map<String, Object> map) {
+            Type type = Type.valueOf(String.valueOf(map.get("type")).toUpperCase(Locale.ENGLISH));
+            long duration = TimeUnit.MILLISECONDS.toNanos(asNumber(map, "duration").longValue());
+            double rate = asNumber(map, "rate").doubleValue();
+            double amplitude = asNumber(map, "amplitude").doubleValue();
+            long period = TimeUnit.MILLISECONDS.toNanos(asNumber(map, "period").longValue());
+            return new Stage(type, duration, rate, amplitude, period);
+        }
+
+        private static Number asNumber(Map<String, Object> map, String name) {
+            Object value = map.get(name);
+            return value instanceof Number ? (Number)value : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s,%dms,r=%.3f]", getClass().getSimpleName(), type, TimeUnit.NANOSECONDS.toMillis(duration), rate);
+        }
+
+        /**
+         * <p>The shape of the rate during a stage.</p>
+         */
+        public enum Type {
+            /**
+             * <p>The rate changes linearly from the rate at the end of the previous stage to the target rate.</p>
+             */
+            RAMP,
+            /**
+             * <p>The rate is constant at the target rate.</p>
+             */
+            HOLD,
+            /**
+             * <p>The rate oscillates sinusoidally around the target rate.</p>
+             */
+            SINE
+        }
+    }
+}
@@ -0,0 +1,44 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>An {@link ArrivalProcess} where sends follow a Poisson process,
+ * so that inter-arrival times are exponentially distributed.</p>
+ * <p>This is the arrival process of independent users, that produces
+ * bursts of sends as well as idle periods, while the average rate is
+ * the configured resource rate.</p>
+ */
+public class PoissonArrivalProcess extends RandomArrivalProcess {
+    public static final String TYPE = "poisson";
+
+    @Override
+    public PoissonArrivalProcess seed(Long seed) {
+        super.seed(seed);
+        return this;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected double next(SplittableRandom random) {
+        // Inverse transform sampling of the exponential distribution with mean 1.
+        return -Math.log(1D - random.nextDouble());
+    }
+}
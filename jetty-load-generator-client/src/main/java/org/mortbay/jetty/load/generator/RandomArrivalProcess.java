@@ -0,0 +1,71 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>Base class for {@link ArrivalProcess}es that produce random inter-arrival times.</p>
+ * <p>When a seed is configured, each sender thread derives its own seed from it,
+ * so that the sequence of inter-arrival times is reproducible across runs.</p>
+ */
+public abstract class RandomArrivalProcess extends ArrivalProcess {
+    private Long seed;
+
+    /**
+     * @param seed the random seed, or null for a random seed
+     * @return this RandomArrivalProcess
+     */
+    public RandomArrivalProcess seed(Long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public Arrivals newArrivals(int sender) {
+        Long seed = getSeed();
+        SplittableRandom random = new SplittableRandom(seed == null ? ThreadLocalRandom.current().nextLong() : seed + sender);
+        return () -> next(random);
+    }
+
+    /**
+     * @param random the random generator of the sender thread
+     * @return the next inter-arrival time, normalized so that the mean is {@code 1}
+     */
+    protected abstract double next(SplittableRandom random);
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        Long seed = getSeed();
+        if (seed != null) {
+            out.add("seed", seed);
+        }
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        Object seed = map.get("seed");
+        this.seed = seed instanceof Number ? ((Number)seed).longValue() : null;
+    }
+}
@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A {@link Feeder} whose variable takes values uniformly distributed
+ * between the {@link #min(long) min value}, inclusive, and the
+ * {@link #max(long) max value}, exclusive.</p>
+ */
+public class RandomFeeder extends VariableFeeder {
+    public static final String TYPE = "random";
+
+    private long min;
+    private long max = Long.MAX_VALUE;
+
+    @Override
+    public RandomFeeder variable(String variable) {
+        super.variable(variable);
+        return this;
+    }
+
+    /**
+     * @param min the min value, inclusive
+     * @return this RandomFeeder
+     */
+    public RandomFeeder min(long min) {
+        this.min = min;
+        return this;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @param max the max value, exclusive
+     * @return this RandomFeeder
+     */
+    public RandomFeeder max(long max) {
+        this.max = max;
+        return this;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (getMin() >= getMax()) {
+            throw new IllegalArgumentException("invalid range [" + getMin() + ", " + getMax() + ")");
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected String next() {
+        return Long.toString(ThreadLocalRandom.current().nextLong(getMin(), getMax()));
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("min", getMin());
+        out.add("max", getMax());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        Object min = map.get("min");
+        if (min instanceof Number) {
+            min(((Number)min).longValue());
+        }
+        Object max = map.get("max");
+        if (max instanceof Number) {
+            max(((Number)max).longValue());
+        }
+    }
+}
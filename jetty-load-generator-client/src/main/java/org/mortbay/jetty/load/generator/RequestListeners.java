@@ -0,0 +1,134 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.eclipse.jetty.client.api.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link Request.Listener} that notifies an array of request listeners,
+ * so that many request listeners are added to a request with a single call.</p>
+ * <p>Like HttpClient does, a failure of a listener is logged and does not
+ * prevent the notification of the other listeners, and each listener of
+ * request content sees the whole content buffer.</p>
+ */
+class RequestListeners implements Request.Listener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestListeners.class);
+
+    private final Request.Listener[] listeners;
+
+    private RequestListeners(Request.Listener[] listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * @param listeners the request listeners to combine
+     * @return null if there are no listeners, the listener if there is only one,
+     * otherwise a listener that notifies all the listeners
+     */
+    static Request.Listener combine(List<Request.Listener> listeners) {
+        switch (listeners.size()) {
+            case 0:
+                return null;
+            case 1:
+                return listeners.get(0);
+            default:
+                return new RequestListeners(listeners.toArray(Request.Listener[]::new));
+        }
+    }
+
+    @Override
+    public void onQueued(Request request) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onQueued(request);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onBegin(Request request) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onBegin(request);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onHeaders(Request request) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onHeaders(request);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onCommit(Request request) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onCommit(request);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onContent(Request request, ByteBuffer content) {
+        int position = content.position();
+        for (Request.Listener listener : listeners) {
+            // Each listener may consume the buffer.
+            content.position(position);
+            try {
+                listener.onContent(request, content);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onSuccess(Request request) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onSuccess(request);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
+    @Override
+    public void onFailure(Request request, Throwable failure) {
+        for (Request.Listener listener : listeners) {
+            try {
+                listener.onFailure(request, failure);
+            } catch (Throwable x) {
+                LOGGER.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>Limits the number of concurrent requests of a resource tree,
+ * like browsers limit the number of concurrent requests per origin.</p>
+ * <p>A request is {@link #acquire(int, Resource.Info) admitted} if there
+ * are less than the max number of requests in progress, otherwise it is
+ * queued; when a request {@link #release() completes}, its permit is
+ * transferred to the oldest queued request, if any.</p>
+ */
+class RequestWindow {
+    private final AutoLock lock = new AutoLock();
+    private final int maxRequests;
+    private final int[] queue;
+    private final Resource.Info[] infos;
+    private int head;
+    private int tail;
+    private int active;
+
+    /**
+     * @param maxRequests the max number of concurrent requests
+     * @param nodes the number of nodes of the resource tree
+     */
+    RequestWindow(int maxRequests, int nodes) {
+        this.maxRequests = maxRequests;
+        // Each node is queued at most once.
+        this.queue = new int[nodes];
+        this.infos = new Resource.Info[nodes];
+    }
+
+    /**
+     * <p>Resets this window to be reused by another resource tree.</p>
+     */
+    void clear() {
+        try (AutoLock ignored = lock.lock()) {
+            head = 0;
+            tail = 0;
+            active = 0;
+        }
+    }
+
+    /**
+     * @param node the node to send
+     * @param info the node Info
+     * @return true if the request can be sent, false if it has been queued
+     */
+    boolean acquire(int node, Resource.Info info) {
+        try (AutoLock ignored = lock.lock()) {
+            if (active < maxRequests) {
+                ++active;
+                return true;
+            }
+            infos[node] = info;
+            queue[tail++] = node;
+            return false;
+        }
+    }
+
+    /**
+     * <p>Releases the permit of a completed request.</p>
+     *
+     * @return the queued node that must be sent with the permit, or -1 if no node is queued
+     */
+    int release() {
+        try (AutoLock ignored = lock.lock()) {
+            if (head == tail) {
+                --active;
+                return -1;
+            }
+            return queue[head++];
+        }
+    }
+
+    /**
+     * @param node a node returned by {@link #release()}
+     * @return the Info of the node
+     */
+    Resource.Info take(int node) {
+        try (AutoLock ignored = lock.lock()) {
+            Resource.Info info = infos[node];
+            infos[node] = null;
+            return info;
+        }
+    }
+}
@@ -14,6 +14,7 @@
 package org.mortbay.jetty.load.generator;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -45,6 +46,8 @@ public class Resource implements JSON.Convertible {
     private String method = HttpMethod.GET.asString();
     private String path;
     private long requestLength;
+    private Path requestBody;
+    private String requestContent;
     private long responseLength;
 
     public Resource() {
@@ -80,6 +83,9 @@ public class Resource implements JSON.Convertible {
     }
 
     /**
+     * <p>The path may contain variables such as {@code /item/${id}},
+     * that are replaced by the values provided by the {@link Feeder}s.</p>
+     *
      * @param path the resource path
      * @return this Resource
      */
@@ -105,6 +111,48 @@ public class Resource implements JSON.Convertible {
         return requestLength;
     }
 
+    /**
+     * <p>Sets the file, or the directory of files, whose bytes are sent as request content.</p>
+     * <p>The file is memory-mapped once when the load generator starts, and its mapped
+     * bytes are sent for every request, without copying.
+     * For a directory, each regular file in the directory is memory-mapped, and the
+     * files are sent in rotation, one per request, in file name order.</p>
+     * <p>When the request body is set, the {@link #requestLength(long) request length}
+     * is ignored, and the request content length is the length of the file.</p>
+     *
+     * @param requestBody the file or directory with the request content
+     * @return this Resource
+     */
+    public Resource requestBody(Path requestBody) {
+        this.requestBody = requestBody;
+        return this;
+    }
+
+    public Path getRequestBody() {
+        return requestBody;
+    }
+
+    /**
+     * <p>Sets the text sent as request content, encoded in UTF-8.</p>
+     * <p>The request content may contain variables such as {@code ${id}},
+     * like the {@link #path(String) path} and the
+     * {@link #requestHeader(String, String) request header} values,
+     * that are replaced by the values provided by the {@link Feeder}s.</p>
+     * <p>When the request content is set, the {@link #requestLength(long) request length}
+     * and the {@link #requestBody(Path) request body} are ignored.</p>
+     *
+     * @param requestContent the request content text
+     * @return this Resource
+     */
+    public Resource requestContent(String requestContent) {
+        this.requestContent = requestContent;
+        return this;
+    }
+
+    public String getRequestContent() {
+        return requestContent;
+    }
+
     /**
      * <p>Adds a request header.</p>
      *
@@ -224,6 +272,14 @@ public class Resource implements JSON.Convertible {
         }
         out.add("path", path);
         out.add("requestLength", getRequestLength());
+        Path requestBody = getRequestBody();
+        if (requestBody != null) {
+            out.add("requestBody", requestBody.toString());
+        }
+        String requestContent = getRequestContent();
+        if (requestContent != null) {
+            out.add("requestContent", requestContent);
+        }
         out.add("responseLength", getResponseLength());
         HttpFields requestHeaders = getRequestHeaders();
         if (requestHeaders != null) {
@@ -250,6 +306,11 @@ public class Resource implements JSON.Convertible {
         if (requestLength != null) {
             requestLength(requestLength.longValue());
         }
+        String requestBody = (String)map.get("requestBody");
+        if (requestBody != null) {
+            requestBody(Path.of(requestBody));
+        }
+        requestContent((String)map.get("requestContent"));
         Number responseLength = (Number)map.get("responseLength");
         if (responseLength != null) {
             responseLength(responseLength.longValue());
@@ -314,9 +375,12 @@ public class Resource implements JSON.Convertible {
      * <p>Value class containing information per-resource and per-request.</p>
      */
     public static class Info {
-        private final LoadGenerator generator;
-        private final Resource resource;
+        private LoadGenerator generator;
+        private Resource resource;
+        private int scenario = -1;
+        private long intendedRequestTime;
         private long requestTime;
+        private long queueDelay;
         private long latencyTime;
         private long responseTime;
         private long treeTime;
@@ -341,6 +405,44 @@ public class Resource implements JSON.Convertible {
             return resource;
         }
 
+        /**
+         * <p>Returns the index of the scenario of the resource tree this
+         * resource belongs to, in {@link LoadGenerator.Config#getScenarios()}.</p>
+         * <p>Scenarios are identified by index rather than by resource, so that
+         * scenarios may share the same {@link Resource} objects.</p>
+         *
+         * @return the index of the scenario, or -1 if scenarios are not configured
+         */
+        public int getScenario() {
+            return scenario;
+        }
+
+        void setScenario(int scenario) {
+            this.scenario = scenario;
+        }
+
+        /**
+         * <p>Returns the time, in ns, the request was intended to be sent.</p>
+         * <p>For resource tree roots, this is the send time scheduled by the
+         * configured resource rate, that may be earlier than the
+         * {@link #getRequestTime() actual request time} if the sender thread
+         * fell behind (for example, due to GC pauses or an overloaded loader).
+         * Measuring response times from the intended request time avoids
+         * <em>coordinated omission</em> of such delays.</p>
+         * <p>For other resources, this is the time the request is queued to be
+         * sent, or the intended request time of the parent for children of
+         * group resources.</p>
+         *
+         * @return the time, in ns, the request was intended to be sent
+         */
+        public long getIntendedRequestTime() {
+            return intendedRequestTime;
+        }
+
+        void setIntendedRequestTime(long intendedRequestTime) {
+            this.intendedRequestTime = intendedRequestTime;
+        }
+
         /**
          * @return the time, in ns, the request is being sent
          */
@@ -352,6 +454,25 @@ public class Resource implements JSON.Convertible {
             this.requestTime = requestTime;
         }
 
+        /**
+         * <p>Returns the time, in ns, the request waited for a free slot
+         * because the resource tree had the
+         * {@link LoadGenerator.Builder#treeConcurrency(int) max number}
+         * of concurrent requests in progress.</p>
+         * <p>The queue delay is included in the time between the
+         * {@link #getIntendedRequestTime() intended request time}
+         * and the {@link #getRequestTime() request time}.</p>
+         *
+         * @return the time, in ns, the request waited to be sent, or 0 if it did not wait
+         */
+        public long getQueueDelay() {
+            return queueDelay;
+        }
+
+        void setQueueDelay(long queueDelay) {
+            this.queueDelay = queueDelay;
+        }
+
         /**
          * @return the time, in ns, the response first byte arrived
          */
@@ -432,6 +553,44 @@ public class Resource implements JSON.Convertible {
             this.failure = failure;
         }
 
+        /**
+         * <p>Resets this Info, so that it can be reused for another request of the same resource.</p>
+         */
+        void reset() {
+            intendedRequestTime = 0;
+            requestTime = 0;
+            queueDelay = 0;
+            latencyTime = 0;
+            responseTime = 0;
+            treeTime = 0;
+            contentLength = 0;
+            pushed = false;
+            status = 0;
+            failure = null;
+        }
+
+        /**
+         * <p>Copies the given Info into this Info, so that the copy
+         * remains unchanged when the given Info is reused.</p>
+         *
+         * @param info the Info to copy
+         */
+        void copy(Info info) {
+            generator = info.generator;
+            resource = info.resource;
+            scenario = info.scenario;
+            intendedRequestTime = info.intendedRequestTime;
+            requestTime = info.requestTime;
+            queueDelay = info.queueDelay;
+            latencyTime = info.latencyTime;
+            responseTime = info.responseTime;
+            treeTime = info.treeTime;
+            contentLength = info.contentLength;
+            pushed = info.pushed;
+            status = info.status;
+            failure = info.failure;
+        }
+
         @Override
         public String toString() {
             return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), getResource());
@@ -450,6 +609,9 @@ public class Resource implements JSON.Convertible {
     /**
      * <p>Listener for resource node events.</p>
      * <p>Resource node events are emitted for non-warmup resource requests that completed successfully.</p>
+     * <p>If the load generator is configured to
+     * {@link LoadGenerator.Builder#recycleInfos(boolean) recycle} {@link Info} objects,
+     * listeners must not retain the {@link Info} object after the method returns.</p>
      */
     public interface NodeListener extends Listener {
         public void onResourceNode(Info info);
@@ -458,6 +620,9 @@ public class Resource implements JSON.Convertible {
     /**
      * <p>Listener for resource tree events.</p>
      * <p>Resource tree events are emitted for the non-warmup root resource.</p>
+     * <p>If the load generator is configured to
+     * {@link LoadGenerator.Builder#recycleInfos(boolean) recycle} {@link Info} objects,
+     * listeners must not retain the {@link Info} object after the method returns.</p>
      */
     public interface TreeListener extends Listener {
         public void onResourceTree(Info info);
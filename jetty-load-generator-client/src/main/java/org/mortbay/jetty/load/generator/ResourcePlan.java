@@ -0,0 +1,172 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>An immutable, flattened representation of a {@link Resource} tree.</p>
+ * <p>The resource nodes are numbered in breadth-first order, with the root
+ * node at index {@code 0}, so that the children of a node have consecutive
+ * indexes, and can be iterated over by index without allocating collections.</p>
+ * <p>Resources are also indexed by path, so that pushed resources are found
+ * in constant time and without allocation, see {@link #findDescendant(int, URI)}.</p>
+ */
+class ResourcePlan {
+    private final int scenario;
+    private final Resource[] resources;
+    private final int[] childStarts;
+    private final int[] childEnds;
+    private final int[] preOrders;
+    private final int[] descendants;
+    private final String[] queries;
+    private final Map<String, int[]> paths = new HashMap<>();
+
+    /**
+     * @param root the root of the resource tree
+     */
+    ResourcePlan(Resource root) {
+        this(root, -1);
+    }
+
+    /**
+     * @param root the root of the resource tree
+     * @param scenario the index of the scenario of the resource tree, or -1 if scenarios are not configured
+     */
+    ResourcePlan(Resource root, int scenario) {
+        this.scenario = scenario;
+        List<Resource> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); ++i) {
+            nodes.addAll(nodes.get(i).getResources());
+        }
+        int size = nodes.size();
+        this.resources = nodes.toArray(new Resource[size]);
+        this.childStarts = new int[size];
+        this.childEnds = new int[size];
+        int next = 1;
+        for (int i = 0; i < size; ++i) {
+            childStarts[i] = next;
+            next += resources[i].getResources().size();
+            childEnds[i] = next;
+        }
+        // The depth-first pre-order numbering gives, for each node, the
+        // range of pre-order numbers of its descendants, so that whether
+        // a node is a descendant of another is computed in constant time.
+        this.preOrders = new int[size];
+        this.descendants = new int[size];
+        number(0, 0);
+        this.queries = new String[size];
+        Map<String, List<Integer>> nodesByPath = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            String path = resources[i].getPath();
+            if (path != null) {
+                int question = path.indexOf('?');
+                if (question >= 0) {
+                    queries[i] = path.substring(question + 1);
+                    path = path.substring(0, question);
+                }
+                nodesByPath.computeIfAbsent(path, k -> new ArrayList<>()).add(i);
+            }
+        }
+        // Sort the nodes with the same path in depth-first order,
+        // so that the first match is the same as a depth-first search.
+        nodesByPath.forEach((path, list) -> paths.put(path, list.stream()
+                .sorted(Comparator.comparingInt(n -> preOrders[n]))
+                .mapToInt(Integer::intValue)
+                .toArray()));
+    }
+
+    private int number(int node, int preOrder) {
+        preOrders[node] = preOrder;
+        int next = preOrder + 1;
+        for (int child = childStarts[node]; child < childEnds[node]; ++child) {
+            next = number(child, next);
+        }
+        descendants[node] = next - preOrder - 1;
+        return next;
+    }
+
+    /**
+     * @return the index of the scenario of the resource tree, or -1 if scenarios are not configured
+     */
+    int getScenario() {
+        return scenario;
+    }
+
+    /**
+     * @return the number of resource nodes
+     */
+    int size() {
+        return resources.length;
+    }
+
+    /**
+     * @param node the node index
+     * @return the resource at the given node index
+     */
+    Resource getResource(int node) {
+        return resources[node];
+    }
+
+    /**
+     * @param node the node index
+     * @return the index of the first child of the given node
+     */
+    int getChildStart(int node) {
+        return childStarts[node];
+    }
+
+    /**
+     * @param node the node index
+     * @return the index after the last child of the given node
+     */
+    int getChildEnd(int node) {
+        return childEnds[node];
+    }
+
+    /**
+     * <p>Finds a descendant of the given node by path and query,
+     * with the same semantic of {@link Resource#findDescendant(URI)}.</p>
+     * <p>Lookups use the path index, so they take constant time
+     * (for distinct paths) and do not allocate.</p>
+     *
+     * @param node the node index
+     * @param uri the URI with the path and query to find
+     * @return the index of the matching descendant node, or {@code -1} if there is no match
+     */
+    int findDescendant(int node, URI uri) {
+        int[] candidates = paths.get(uri.getRawPath());
+        if (candidates == null) {
+            return -1;
+        }
+        String query = uri.getRawQuery();
+        int preOrder = preOrders[node];
+        for (int candidate : candidates) {
+            int candidatePreOrder = preOrders[candidate];
+            if (candidatePreOrder > preOrder &&
+                candidatePreOrder <= preOrder + descendants[node] &&
+                Objects.equals(query, queries[candidate])) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+}
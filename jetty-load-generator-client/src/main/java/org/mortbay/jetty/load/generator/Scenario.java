@@ -0,0 +1,91 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A named {@link Resource} tree with a weight, part of a mix of scenarios.</p>
+ * <p>When scenarios are configured, every iteration of the load generator
+ * sends the resource tree of one scenario, chosen at random with a
+ * probability proportional to the scenario weight; for example, weights
+ * of 70, 20 and 10 for the product page, search and checkout scenarios
+ * emulate traffic where 70% of the iterations fetch a product page.</p>
+ *
+ * @see LoadGenerator.Builder#scenario(Scenario)
+ */
+public class Scenario implements JSON.Convertible {
+    private String name;
+    private double weight;
+    private Resource resource;
+
+    public Scenario() {
+    }
+
+    /**
+     * @param name the scenario name
+     * @param weight the scenario weight, relative to the weights of the other scenarios
+     * @param resource the root of the scenario resource tree
+     */
+    public Scenario(String name, double weight, Resource resource) {
+        this.name = Objects.requireNonNull(name);
+        this.weight = weight;
+        this.resource = Objects.requireNonNull(resource);
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("invalid weight " + weight);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("name", getName());
+        out.add("weight", getWeight());
+        out.add("resource", getResource());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        name = (String)map.get("name");
+        Number weight = (Number)map.get("weight");
+        this.weight = weight == null ? 1D : weight.doubleValue();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> resourceMap = (Map<String, Object>)map.get("resource");
+        if (resourceMap == null) {
+            resource = new Resource("/");
+        } else {
+            resource = new Resource();
+            resource.fromJSON(resourceMap);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%h[%s,weight=%s]", getClass().getSimpleName(), hashCode(), getName(), getWeight());
+    }
+}
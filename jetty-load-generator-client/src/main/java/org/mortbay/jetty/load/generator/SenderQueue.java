@@ -0,0 +1,163 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>A lock-free, multi-producer, single-consumer queue
+ * of the resource nodes of a resource tree to send.</p>
+ * <p>Producers {@link #reserve(int) reserve} slots, {@link #set(int, int, Resource.Info) set}
+ * the nodes in the slots, and then {@link #publish(int) publish} them.
+ * The producer that publishes nodes into an empty queue becomes the only
+ * consumer, and must {@link #drain(Consumer) drain} the queue, while other
+ * producers just return; the consumer drains until the queue is empty,
+ * including the nodes published by other producers while draining.</p>
+ * <p>The queue has a fixed capacity, because each node of a resource
+ * tree is queued at most once.</p>
+ * <p>The queue also tracks the {@link #complete() completion} of the
+ * resource tree, so that it can be recycled only after it has been
+ * completed and after its consumer is done draining.</p>
+ */
+class SenderQueue {
+    private static final int COMPLETE = 1 << 30;
+
+    private final AtomicInteger tail = new AtomicInteger();
+    // The number of published nodes not yet drained, plus the COMPLETE bit.
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int[] nodes;
+    private final AtomicReferenceArray<Resource.Info> infos;
+    // Only accessed by the consumer.
+    private int head;
+
+    /**
+     * @param capacity the max number of nodes
+     */
+    SenderQueue(int capacity) {
+        this.nodes = new int[capacity];
+        this.infos = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * <p>Resets this queue to be reused; must only be called
+     * when the queue is empty and there are no producers.</p>
+     */
+    void clear() {
+        head = 0;
+        tail.set(0);
+        pending.set(0);
+    }
+
+    /**
+     * @param count the number of slots to reserve
+     * @return the first reserved slot
+     */
+    int reserve(int count) {
+        int slot = tail.getAndAdd(count);
+        if (slot + count > nodes.length) {
+            throw new IllegalStateException("queue overflow");
+        }
+        return slot;
+    }
+
+    /**
+     * @param slot the reserved slot
+     * @param node the node index
+     * @param info the node Info
+     */
+    void set(int slot, int node, Resource.Info info) {
+        nodes[slot] = node;
+        // Writing the Info publishes the node index too.
+        infos.setRelease(slot, info);
+    }
+
+    /**
+     * @param count the number of nodes to publish
+     * @return whether the caller must drain the queue
+     */
+    boolean publish(int count) {
+        return (pending.getAndAdd(count) & ~COMPLETE) == 0;
+    }
+
+    /**
+     * @param node the node index
+     * @param info the node Info
+     * @return whether the caller must drain the queue
+     */
+    boolean offer(int node, Resource.Info info) {
+        set(reserve(1), node, info);
+        return publish(1);
+    }
+
+    /**
+     * <p>Drains the queue until it is empty.</p>
+     *
+     * @param consumer the consumer of the nodes
+     * @return whether the queue has been completed while draining,
+     * in which case the caller must recycle it
+     */
+    boolean drain(Consumer consumer) {
+        int count = pending.get() & ~COMPLETE;
+        while (true) {
+            for (int i = 0; i < count; ++i) {
+                int slot = head++;
+                Resource.Info info = awaitInfo(slot);
+                int node = nodes[slot];
+                // Clear the slot, so that it can be reused.
+                infos.setPlain(slot, null);
+                consumer.accept(node, info);
+            }
+            int left = pending.addAndGet(-count);
+            count = left & ~COMPLETE;
+            if (count == 0) {
+                return left == COMPLETE;
+            }
+        }
+    }
+
+    private Resource.Info awaitInfo(int slot) {
+        // Producers may publish in a different order than they reserved,
+        // so the producer of this slot may not have written it yet.
+        int spins = 0;
+        while (true) {
+            Resource.Info info = infos.getAcquire(slot);
+            if (info != null) {
+                return info;
+            }
+            if (++spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * <p>Marks the resource tree as complete.</p>
+     *
+     * @return whether the queue is not being drained,
+     * in which case the caller must recycle it
+     */
+    boolean complete() {
+        return pending.getAndAdd(COMPLETE) == 0;
+    }
+
+    /**
+     * <p>Consumer of queued nodes.</p>
+     */
+    interface Consumer {
+        void accept(int node, Resource.Info info);
+    }
+}
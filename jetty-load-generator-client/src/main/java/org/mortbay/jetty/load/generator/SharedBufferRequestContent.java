@@ -0,0 +1,109 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.AbstractRequestContent;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * <p>A request content that sends slices of a shared, read-only {@link ByteBuffer},
+ * rather than a new array for every request.</p>
+ * <p>The content is sent in chunks of at most the shared buffer size, repeating
+ * the shared buffer bytes as necessary, so that the content length may be
+ * larger than the shared buffer, and even larger than {@link Integer#MAX_VALUE}.</p>
+ * <p>This content is reproducible, and may be used by concurrent requests.</p>
+ */
+public class SharedBufferRequestContent extends AbstractRequestContent {
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(64 * 1024).asReadOnlyBuffer();
+
+    private final ByteBuffer buffer;
+    private final long length;
+
+    /**
+     * <p>Creates a content of the given length, made of zero bytes.</p>
+     *
+     * @param length the content length
+     */
+    public SharedBufferRequestContent(long length) {
+        this(ZEROS, length);
+    }
+
+    /**
+     * @param buffer the shared buffer, whose bytes between its position and its limit are sent
+     * @param length the content length
+     */
+    public SharedBufferRequestContent(ByteBuffer buffer, long length) {
+        this("application/octet-stream", buffer, length);
+    }
+
+    /**
+     * @param contentType the content type
+     * @param buffer the shared buffer, whose bytes between its position and its limit are sent
+     * @param length the content length
+     */
+    public SharedBufferRequestContent(String contentType, ByteBuffer buffer, long length) {
+        super(contentType);
+        if (length < 0) {
+            throw new IllegalArgumentException("invalid length " + length);
+        }
+        if (length > 0 && !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("invalid empty buffer");
+        }
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean isReproducible() {
+        return true;
+    }
+
+    @Override
+    protected Request.Content.Subscription newSubscription(Request.Content.Consumer consumer, boolean emitInitialContent) {
+        return new SubscriptionImpl(consumer, emitInitialContent);
+    }
+
+    private class SubscriptionImpl extends AbstractSubscription {
+        private long remaining = length;
+        private boolean last;
+
+        private SubscriptionImpl(Request.Content.Consumer consumer, boolean emitInitialContent) {
+            super(consumer, emitInitialContent);
+        }
+
+        @Override
+        protected boolean produceContent(Producer producer) throws Exception {
+            if (last) {
+                throw new EOFException("demand after last content");
+            }
+            // The slice is a view of the shared buffer,
+            // with its own position and limit.
+            ByteBuffer chunk = buffer.slice();
+            int size = (int)Math.min(chunk.remaining(), remaining);
+            chunk.limit(size);
+            remaining -= size;
+            last = remaining == 0;
+            return producer.produce(chunk, last, Callback.NOOP);
+        }
+    }
+}
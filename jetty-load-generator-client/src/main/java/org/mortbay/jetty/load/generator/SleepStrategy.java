@@ -0,0 +1,86 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>How sender threads wait for the time of their next send.</p>
+ * <p>Parking has a granularity that depends on the OS (typically
+ * 50-100 microseconds on Linux), that makes sends jittery and clustered at
+ * high resource rates.
+ * Spinning gives a better precision at the cost of burning CPU,
+ * and should be used with few sender threads on dedicated cores.</p>
+ *
+ * @see LoadGenerator.Builder#sleepStrategy(SleepStrategy)
+ */
+public enum SleepStrategy {
+    /**
+     * <p>Parks the sender thread until the send time.</p>
+     */
+    PARK {
+        @Override
+        void sleepUntil(long deadline) {
+            park(deadline);
+        }
+    },
+    /**
+     * <p>Parks the sender thread until shortly before the send
+     * time, and then spins until the send time.</p>
+     */
+    SPIN_PARK {
+        @Override
+        void sleepUntil(long deadline) {
+            park(deadline - SPIN_NANOS);
+            spin(deadline);
+        }
+    },
+    /**
+     * <p>Yields the CPU until the send time, without parking.</p>
+     */
+    YIELD_SPIN {
+        @Override
+        void sleepUntil(long deadline) {
+            while (deadline - System.nanoTime() > 0) {
+                Thread.yield();
+            }
+        }
+    };
+
+    // Larger than the typical park granularity.
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * @param deadline the {@link System#nanoTime()} to wait for
+     */
+    abstract void sleepUntil(long deadline);
+
+    private static void park(long deadline) {
+        while (true) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    private static void spin(long deadline) {
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A text with variables such as {@code /item/${id}}, compiled once
+ * into literal parts and variable slots, so that rendering it only
+ * concatenates strings, without parsing the text again.</p>
+ * <p>The values of the variables are provided by {@link Feeder}s,
+ * and are indexed by the slots of the variables.</p>
+ */
+class Template {
+    private static final String PREFIX = "${";
+    private static final String SUFFIX = "}";
+
+    private final String text;
+    private final String[] literals;
+    private final int[] slots;
+    private final int length;
+
+    /**
+     * @param text the text to compile
+     * @param variables the slots of the variables, indexed by variable name
+     * @throws IllegalArgumentException if the text refers to an unknown variable
+     */
+    Template(String text, Map<String, Integer> variables) {
+        this.text = text;
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int prefix = text.indexOf(PREFIX, start);
+            if (prefix < 0) {
+                literals.add(text.substring(start));
+                break;
+            }
+            int suffix = text.indexOf(SUFFIX, prefix + PREFIX.length());
+            if (suffix < 0) {
+                throw new IllegalArgumentException("unterminated variable in " + text);
+            }
+            String name = text.substring(prefix + PREFIX.length(), suffix);
+            Integer slot = variables.get(name);
+            if (slot == null) {
+                throw new IllegalArgumentException("unknown variable '" + name + "' in " + text);
+            }
+            literals.add(text.substring(start, prefix));
+            slots.add(slot);
+            start = suffix + SUFFIX.length();
+        }
+        this.literals = literals.toArray(String[]::new);
+        this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        this.length = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * @param text the text to test
+     * @return whether the given text contains variables
+     */
+    static boolean isTemplate(String text) {
+        return text != null && text.contains(PREFIX);
+    }
+
+    /**
+     * @param values the values of the variables, indexed by slot
+     * @return the text with the variables replaced by their values
+     */
+    String render(String[] values) {
+        StringBuilder builder = new StringBuilder(length + 16 * slots.length);
+        for (int i = 0; i < slots.length; ++i) {
+            builder.append(literals[i]).append(values[slots[i]]);
+        }
+        return builder.append(literals[slots.length]).toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
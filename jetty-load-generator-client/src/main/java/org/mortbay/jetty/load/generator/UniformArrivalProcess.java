@@ -0,0 +1,79 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>An {@link ArrivalProcess} where inter-arrival times are uniformly
+ * distributed around the nominal spacing.</p>
+ * <p>With a {@link #spread(double) spread} of {@code 0.5}, inter-arrival
+ * times are uniformly distributed between {@code 0.5} and {@code 1.5}
+ * times the nominal spacing.</p>
+ */
+public class UniformArrivalProcess extends RandomArrivalProcess {
+    public static final String TYPE = "uniform";
+
+    private double spread = 1D;
+
+    @Override
+    public UniformArrivalProcess seed(Long seed) {
+        super.seed(seed);
+        return this;
+    }
+
+    /**
+     * @param spread the spread around the nominal spacing, between 0 and 1
+     * @return this UniformArrivalProcess
+     */
+    public UniformArrivalProcess spread(double spread) {
+        if (spread < 0 || spread > 1) {
+            throw new IllegalArgumentException("invalid spread " + spread);
+        }
+        this.spread = spread;
+        return this;
+    }
+
+    public double getSpread() {
+        return spread;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected double next(SplittableRandom random) {
+        return 1D + getSpread() * (2D * random.nextDouble() - 1D);
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("spread", getSpread());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        Object spread = map.get("spread");
+        if (spread instanceof Number) {
+            spread(((Number)spread).doubleValue());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>How sender threads select the {@link VirtualUser virtual user}
+ * that sends the next resource tree.</p>
+ *
+ * @see LoadGenerator.Builder#virtualUsersPerThread(int)
+ */
+public enum UserSelection {
+    /**
+     * <p>Selects the virtual users in turn.</p>
+     */
+    ROUND_ROBIN {
+        @Override
+        IntSupplier newSelector(int users) {
+            int[] next = new int[1];
+            return () -> {
+                int result = next[0];
+                next[0] = result + 1 == users ? 0 : result + 1;
+                return result;
+            };
+        }
+    },
+    /**
+     * <p>Selects the virtual users uniformly at random.</p>
+     */
+    RANDOM {
+        @Override
+        IntSupplier newSelector(int users) {
+            return () -> ThreadLocalRandom.current().nextInt(users);
+        }
+    },
+    /**
+     * <p>Selects the virtual users with a Zipf distribution, so that few
+     * users are very active while most users are rarely active.</p>
+     */
+    ZIPFIAN {
+        @Override
+        IntSupplier newSelector(int users) {
+            Zipfian zipfian = new Zipfian(users, 1);
+            return () -> zipfian.next(ThreadLocalRandom.current());
+        }
+    };
+
+    /**
+     * <p>Returns a selector of virtual user indexes, used only by one sender thread.</p>
+     *
+     * @param users the number of virtual users
+     * @return a selector that returns indexes between {@code 0} and {@code users - 1}
+     */
+    abstract IntSupplier newSelector(int users);
+}
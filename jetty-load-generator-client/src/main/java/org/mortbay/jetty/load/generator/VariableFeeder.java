@@ -0,0 +1,67 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>Base class for {@link Feeder}s that provide the values of a single variable.</p>
+ */
+public abstract class VariableFeeder extends Feeder {
+    private String variable;
+
+    /**
+     * @param variable the variable name
+     * @return this VariableFeeder
+     */
+    public VariableFeeder variable(String variable) {
+        this.variable = Objects.requireNonNull(variable);
+        return this;
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    @Override
+    public List<String> getVariables() {
+        return List.of(Objects.requireNonNull(getVariable(), "missing variable"));
+    }
+
+    @Override
+    public void feed(String[] values, int offset) {
+        values[offset] = next();
+    }
+
+    /**
+     * @return the next value of the variable
+     */
+    protected abstract String next();
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("variable", getVariable());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        variable = (String)map.get("variable");
+    }
+}
@@ -0,0 +1,41 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>Support for virtual threads, that are not available in this Java version.</p>
+ * <p>The multi-release jar contains a Java 21 version of this class
+ * that supports virtual threads.</p>
+ */
+class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether virtual threads are supported
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @param namePrefix the prefix of the virtual thread names
+     * @return an ExecutorService that runs each task in a new virtual thread
+     */
+    static ExecutorService newExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("virtual threads require Java 21");
+    }
+}
@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * <p>A lightweight simulated user, that holds only the per-user state and
+ * shares the {@code HttpClient}s of its sender thread with other virtual users.</p>
+ * <p>The per-user state is the user id, the headers such as {@code Authorization}
+ * that are added to every request of the user, the cookies received from the
+ * server, and the think-time clock.</p>
+ * <p>An idle virtual user takes about 40 bytes plus its headers and cookies;
+ * with an {@code Authorization} header and a couple of session cookies,
+ * it takes less than 1 KiB, so that a load generator can simulate hundreds
+ * of thousands of logged-in users.</p>
+ *
+ * @see LoadGenerator.Builder#virtualUsersPerThread(int)
+ */
+public class VirtualUser {
+    private final int id;
+    private final HttpFields headers;
+    private String cookies;
+    private volatile boolean busy;
+    private volatile long readyTime = System.nanoTime();
+    private long thinkTime;
+
+    VirtualUser(int id, HttpFields headers) {
+        this.id = id;
+        this.headers = headers;
+    }
+
+    /**
+     * @return the id of this virtual user, unique across sender threads
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the headers added to every request of this virtual user, or null
+     */
+    public HttpFields getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the value of the {@code Cookie} header for the requests of this virtual user, or null
+     */
+    public synchronized String getCookies() {
+        return cookies;
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @return whether this virtual user has no resource tree in flight and is done thinking
+     */
+    boolean isReady(long now) {
+        return !busy && now - readyTime >= 0;
+    }
+
+    /**
+     * @param thinkTime the time, in ns, this virtual user thinks after the resource tree completes
+     */
+    void send(long thinkTime) {
+        this.thinkTime = thinkTime;
+        busy = true;
+    }
+
+    /**
+     * @param completeTime the {@link System#nanoTime()} the resource tree completed
+     */
+    void complete(long completeTime) {
+        this.readyTime = completeTime + thinkTime;
+        busy = false;
+    }
+
+    void apply(Request request) {
+        HttpFields headers = this.headers;
+        String cookies = getCookies();
+        if (headers != null || cookies != null) {
+            request.headers(fields -> {
+                if (headers != null) {
+                    fields.add(headers);
+                }
+                if (cookies != null) {
+                    fields.put(HttpHeader.COOKIE, cookies);
+                }
+            });
+        }
+    }
+
+    void receive(HttpFields responseHeaders) {
+        for (HttpField field : responseHeaders) {
+            if (field.getHeader() == HttpHeader.SET_COOKIE) {
+                setCookie(field.getValue());
+            }
+        }
+    }
+
+    synchronized void setCookie(String setCookie) {
+        int semicolon = setCookie.indexOf(';');
+        String pair = semicolon < 0 ? setCookie : setCookie.substring(0, semicolon);
+        int equals = pair.indexOf('=');
+        if (equals <= 0) {
+            return;
+        }
+        String name = pair.substring(0, equals).trim();
+        String value = pair.substring(equals + 1).trim();
+        String result = removeCookie(cookies, name);
+        if (semicolon < 0 || !isExpired(setCookie.substring(semicolon + 1))) {
+            String cookie = name + "=" + value;
+            result = result == null ? cookie : result + "; " + cookie;
+        }
+        cookies = result;
+    }
+
+    private static boolean isExpired(String attributes) {
+        for (String attribute : attributes.split(";")) {
+            int equals = attribute.indexOf('=');
+            if (equals > 0 && "max-age".equalsIgnoreCase(attribute.substring(0, equals).trim())) {
+                try {
+                    return Long.parseLong(attribute.substring(equals + 1).trim()) <= 0;
+                } catch (NumberFormatException x) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String removeCookie(String cookies, String name) {
+        if (cookies == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(cookies.length());
+        for (String cookie : cookies.split("; ")) {
+            if (!cookie.startsWith(name + "=")) {
+                if (builder.length() > 0) {
+                    builder.append("; ");
+                }
+                builder.append(cookie);
+            }
+        }
+        return builder.length() == 0 ? null : builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[id=%d]", getClass().getSimpleName(), hashCode(), id);
+    }
+}
@@ -0,0 +1,102 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Random;
+
+/**
+ * <p>Samples ranks from a Zipf distribution, where the probability
+ * of rank {@code k} is proportional to {@code 1 / k^exponent}.</p>
+ * <p>Sampling uses the rejection-inversion method by Hörmann and Derflinger,
+ * that takes constant time and memory regardless of the number of ranks.</p>
+ */
+class Zipfian {
+    private final int ranks;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralRanks;
+    private final double s;
+
+    /**
+     * @param ranks the number of ranks
+     * @param exponent the exponent of the distribution
+     */
+    Zipfian(int ranks, double exponent) {
+        if (ranks < 1) {
+            throw new IllegalArgumentException("invalid ranks " + ranks);
+        }
+        if (exponent <= 0) {
+            throw new IllegalArgumentException("invalid exponent " + exponent);
+        }
+        this.ranks = ranks;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5D) - 1;
+        this.hIntegralRanks = hIntegral(ranks + 0.5D);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5D) - h(2));
+    }
+
+    /**
+     * @param random the source of randomness
+     * @return a rank between {@code 0}, the most frequent, and {@code ranks - 1}
+     */
+    int next(Random random) {
+        while (true) {
+            double u = hIntegralRanks + random.nextDouble() * (hIntegralX1 - hIntegralRanks);
+            double x = hIntegralInverse(u);
+            int k = (int)(x + 0.5D);
+            if (k < 1) {
+                k = 1;
+            } else if (k > ranks) {
+                k = ranks;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5D) - h(k)) {
+                return k - 1;
+            }
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            // Limit to avoid NaN due to rounding.
+            t = -1;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, also for x close to 0.
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1E-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5D - x * (1 / 3D - 0.25D * x));
+    }
+
+    // (exp(x) - 1) / x, also for x close to 0.
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1E-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5D * (1 + x / 3D * (1 + 0.25D * x));
+    }
+}
@@ -0,0 +1,103 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A {@link Feeder} whose variable takes values between {@code 0} and
+ * {@link #keys(int) keys - 1} with a Zipf distribution, so that few keys
+ * are very popular while most keys are rarely used, like the items of
+ * a catalog.</p>
+ * <p>Key {@code 0} is the most popular, and the popularity of key
+ * {@code k} is proportional to {@code 1 / (k + 1)^exponent}.</p>
+ */
+public class ZipfianFeeder extends VariableFeeder {
+    public static final String TYPE = "zipfian";
+
+    private int keys = 1000;
+    private double exponent = 1D;
+    private Zipfian zipfian;
+
+    @Override
+    public ZipfianFeeder variable(String variable) {
+        super.variable(variable);
+        return this;
+    }
+
+    /**
+     * @param keys the number of keys
+     * @return this ZipfianFeeder
+     */
+    public ZipfianFeeder keys(int keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * @param exponent the exponent of the distribution; the larger, the more skewed
+     * @return this ZipfianFeeder
+     */
+    public ZipfianFeeder exponent(double exponent) {
+        this.exponent = exponent;
+        return this;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        zipfian = new Zipfian(getKeys(), getExponent());
+        super.doStart();
+    }
+
+    @Override
+    protected String next() {
+        return Integer.toString(zipfian.next(ThreadLocalRandom.current()));
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        super.toJSON(out);
+        out.add("keys", getKeys());
+        out.add("exponent", getExponent());
+    }
+
+    @Override
+    public void fromJSON(Map<String, Object> map) {
+        super.fromJSON(map);
+        Object keys = map.get("keys");
+        if (keys instanceof Number) {
+            keys(((Number)keys).intValue());
+        }
+        Object exponent = map.get("exponent");
+        if (exponent instanceof Number) {
+            exponent(((Number)exponent).doubleValue());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Support for virtual threads, available from Java 21.</p>
+ */
+class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether virtual threads are supported
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @param namePrefix the prefix of the virtual thread names
+     * @return an ExecutorService that runs each task in a new virtual thread
+     */
+    static ExecutorService newExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}
@@ -0,0 +1,153 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.function.IntConsumer;
+
+import org.junit.Assume;
+
+/**
+ * <p>Measures the time and the bytes allocated by benchmark tasks,
+ * using the per-thread allocation counters of the JVM.</p>
+ * <p>Benchmarks that only print their measures, without asserting
+ * anything deterministic, should call {@link #assumeBenchmarks()},
+ * so that they only run with {@code -Dbenchmarks=true}.</p>
+ */
+final class AllocationMeter {
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * <p>Creates a meter, skipping the test if the JVM
+     * cannot measure the bytes allocated by threads.</p>
+     */
+    AllocationMeter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        this.threads = (com.sun.management.ThreadMXBean)threads;
+        Assume.assumeTrue(this.threads.isThreadAllocatedMemorySupported());
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * <p>Skips the test unless the {@code benchmarks} system property is {@code true}.</p>
+     */
+    static void assumeBenchmarks() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+    }
+
+    com.sun.management.ThreadMXBean getThreadMXBean() {
+        return threads;
+    }
+
+    /**
+     * @param threadIds the ids of the threads
+     * @return the sum of the bytes allocated by the given threads that are still alive
+     */
+    long allocatedBytes(long[] threadIds) {
+        // Threads that died in the meantime report -1.
+        return Arrays.stream(threads.getThreadAllocatedBytes(threadIds))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    /**
+     * <p>Runs the given task in the current thread for the given number of iterations.</p>
+     *
+     * @param iterations the number of iterations
+     * @param task the task, which is passed the iteration index
+     * @return the time and the bytes allocated per iteration
+     */
+    Measure measure(int iterations, IntConsumer task) {
+        long threadId = Thread.currentThread().getId();
+        long beginBytes = threads.getThreadAllocatedBytes(threadId);
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            task.accept(i);
+        }
+        long nanos = System.nanoTime() - begin;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - beginBytes;
+        return new Measure(nanos / iterations, bytes / iterations);
+    }
+
+    /**
+     * <p>Runs the given tasks in the current thread, first to warm them up,
+     * so that they are measured on JIT compiled code, then to measure them.</p>
+     *
+     * @param unit the unit of an iteration, for example "request"
+     * @param iterations the number of iterations
+     * @param name1 the name of the first task
+     * @param task1 the first task
+     * @param name2 the name of the second task
+     * @param task2 the second task
+     * @return the measures of the two tasks
+     * @see #measure(int, IntConsumer)
+     */
+    Measure[] compare(String unit, int iterations, String name1, IntConsumer task1, String name2, IntConsumer task2) throws Exception {
+        return compare(unit, name1, () -> measure(iterations, task1), name2, () -> measure(iterations, task2));
+    }
+
+    /**
+     * <p>Runs the given measures, first to warm them up, so that they are
+     * measured on JIT compiled code, then to measure them, and prints them.</p>
+     *
+     * @param unit the unit of the measures, for example "request"
+     * @param name1 the name of the first measure
+     * @param measure1 the first measure
+     * @param name2 the name of the second measure
+     * @param measure2 the second measure
+     * @return the measures
+     */
+    Measure[] compare(String unit, String name1, Callable<Measure> measure1, String name2, Callable<Measure> measure2) throws Exception {
+        measure1.call();
+        measure2.call();
+        Measure[] result = {measure1.call(), measure2.call()};
+        String format = "%-" + Math.max(name1.length(), name2.length()) + "s - %s%n";
+        System.err.printf("%n" + format, name1, result[0].toString(unit));
+        System.err.printf(format + "%n", name2, result[1].toString(unit));
+        return result;
+    }
+
+    /**
+     * <p>The time and the bytes allocated per unit of work.</p>
+     */
+    static class Measure {
+        private final long nanos;
+        private final long bytes;
+
+        /**
+         * @param nanos the time per unit of work, or -1 if not measured
+         * @param bytes the bytes allocated per unit of work
+         */
+        Measure(long nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        String toString(String unit) {
+            String allocated = String.format("allocated: %d bytes/%s", bytes, unit);
+            return nanos < 0 ? allocated : String.format("%d ns/%s, %s", nanos, unit, allocated);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArrivalProcessTest {
+    @Test
+    public void testConstant() {
+        ArrivalProcess.Arrivals arrivals = new ConstantArrivalProcess().newArrivals(0);
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(1D, arrivals.next(), 0D);
+        }
+    }
+
+    @Test
+    public void testPoissonMean() {
+        assertMean(new PoissonArrivalProcess().newArrivals(0));
+    }
+
+    @Test
+    public void testUniformMean() {
+        UniformArrivalProcess process = new UniformArrivalProcess().spread(0.5);
+        ArrivalProcess.Arrivals arrivals = process.newArrivals(0);
+        for (int i = 0; i < 1000; ++i) {
+            double next = arrivals.next();
+            Assert.assertTrue(next >= 0.5);
+            Assert.assertTrue(next <= 1.5);
+        }
+        assertMean(arrivals);
+    }
+
+    @Test
+    public void testSeededIsReproducible() {
+        PoissonArrivalProcess process = new PoissonArrivalProcess().seed(42L);
+        ArrivalProcess.Arrivals arrivals1 = process.newArrivals(1);
+        ArrivalProcess.Arrivals arrivals2 = process.newArrivals(1);
+        ArrivalProcess.Arrivals arrivals3 = process.newArrivals(2);
+        boolean different = false;
+        for (int i = 0; i < 100; ++i) {
+            double next1 = arrivals1.next();
+            Assert.assertEquals(next1, arrivals2.next(), 0D);
+            different |= next1 != arrivals3.next();
+        }
+        // Different sender threads have different sequences.
+        Assert.assertTrue(different);
+    }
+
+    @Test
+    public void testConfigJSON() {
+        LoadGenerator.Builder builder = new LoadGenerator.Builder()
+                .arrivalProcess(new UniformArrivalProcess().spread(0.25).seed(13L));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(builder));
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON(map);
+
+        ArrivalProcess arrivalProcess = config.getArrivalProcess();
+        Assert.assertTrue(arrivalProcess instanceof UniformArrivalProcess);
+        UniformArrivalProcess uniform = (UniformArrivalProcess)arrivalProcess;
+        Assert.assertEquals(0.25, uniform.getSpread(), 0D);
+        Assert.assertEquals(13L, (long)uniform.getSeed());
+    }
+
+    private static void assertMean(ArrivalProcess.Arrivals arrivals) {
+        int count = 100_000;
+        double sum = 0;
+        for (int i = 0; i < count; ++i) {
+            double next = arrivals.next();
+            Assert.assertTrue(next >= 0);
+            sum += next;
+        }
+        Assert.assertEquals(1D, sum / count, 0.02);
+    }
+}
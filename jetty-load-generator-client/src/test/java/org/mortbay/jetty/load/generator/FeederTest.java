@@ -0,0 +1,164 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FeederTest {
+    @Test
+    public void testTemplate() {
+        Map<String, Integer> variables = Map.of("id", 0, "name", 1);
+        String[] values = {"42", "foo"};
+        Assert.assertEquals("/item/42", new Template("/item/${id}", variables).render(values));
+        Assert.assertEquals("foo-42-42", new Template("${name}-${id}-${id}", variables).render(values));
+        Assert.assertEquals("/static", new Template("/static", variables).render(values));
+        Assert.assertTrue(Template.isTemplate("/item/${id}"));
+        Assert.assertFalse(Template.isTemplate("/item/$id"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTemplateUnknownVariable() {
+        new Template("/item/${sku}", Map.of("id", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTemplateUnterminatedVariable() {
+        new Template("/item/${id", Map.of("id", 0));
+    }
+
+    @Test
+    public void testCounter() throws Exception {
+        CounterFeeder feeder = new CounterFeeder().variable("id").start(10);
+        feeder.start();
+        String[] values = new String[2];
+        feeder.feed(values, 1);
+        Assert.assertEquals("10", values[1]);
+        feeder.feed(values, 1);
+        Assert.assertEquals("11", values[1]);
+        Assert.assertNull(values[0]);
+        feeder.stop();
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        RandomFeeder feeder = new RandomFeeder().variable("id").min(5).max(8);
+        feeder.start();
+        String[] values = new String[1];
+        for (int i = 0; i < 100; ++i) {
+            feeder.feed(values, 0);
+            long value = Long.parseLong(values[0]);
+            Assert.assertTrue(value >= 5 && value < 8);
+        }
+        feeder.stop();
+    }
+
+    @Test
+    public void testZipfian() throws Exception {
+        ZipfianFeeder feeder = new ZipfianFeeder().variable("id").keys(100);
+        feeder.start();
+        String[] values = new String[1];
+        int[] counts = new int[100];
+        for (int i = 0; i < 10_000; ++i) {
+            feeder.feed(values, 0);
+            ++counts[Integer.parseInt(values[0])];
+        }
+        // The most popular key is the first.
+        Assert.assertTrue(counts[0] > counts[1]);
+        Assert.assertTrue(counts[1] > counts[50]);
+        feeder.stop();
+    }
+
+    @Test
+    public void testLineFile() throws Exception {
+        Path file = Files.createTempFile("jlg-", ".txt");
+        try {
+            Files.writeString(file, "a,1\r\n\nb\nc");
+            FileFeeder feeder = new FileFeeder().path(file).variables("id");
+            feeder.start();
+            String[] values = new String[1];
+            for (String expected : List.of("a,1", "b", "c", "a,1")) {
+                feeder.feed(values, 0);
+                Assert.assertEquals(expected, values[0]);
+            }
+            feeder.stop();
+        } finally {
+            IO.delete(file.toFile());
+        }
+    }
+
+    @Test
+    public void testCSVFile() throws Exception {
+        Path file = Files.createTempFile("jlg-", ".csv");
+        try {
+            Files.writeString(file, "id;name\n1;été\n2\n3;x;y\n");
+            FileFeeder feeder = new FileFeeder().path(file).header(true).separator(';');
+            Assert.assertEquals(List.of("id", "name"), feeder.getVariables());
+            feeder.start();
+            String[] values = new String[2];
+            feeder.feed(values, 0);
+            Assert.assertArrayEquals(new String[]{"1", "été"}, values);
+            feeder.feed(values, 0);
+            Assert.assertArrayEquals(new String[]{"2", ""}, values);
+            // The last variable takes the rest of the line.
+            feeder.feed(values, 0);
+            Assert.assertArrayEquals(new String[]{"3", "x;y"}, values);
+            // The header is skipped when wrapping around.
+            feeder.feed(values, 0);
+            Assert.assertArrayEquals(new String[]{"1", "été"}, values);
+            feeder.stop();
+        } finally {
+            IO.delete(file.toFile());
+        }
+    }
+
+    @Test
+    public void testConfigJSON() {
+        LoadGenerator.Builder builder = new LoadGenerator.Builder()
+                .feeder(new CounterFeeder().variable("id").start(3))
+                .feeder(new RandomFeeder().variable("r").min(1).max(9))
+                .feeder(new ZipfianFeeder().variable("z").keys(10).exponent(1.5))
+                .feeder(new FileFeeder().path(Path.of("users.csv")).variables("user", "password").separator('\t'));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(builder));
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON(map);
+
+        List<Feeder> feeders = config.getFeeders();
+        Assert.assertEquals(4, feeders.size());
+        CounterFeeder counter = (CounterFeeder)feeders.get(0);
+        Assert.assertEquals("id", counter.getVariable());
+        Assert.assertEquals(3, counter.getStart());
+        RandomFeeder random = (RandomFeeder)feeders.get(1);
+        Assert.assertEquals(1, random.getMin());
+        Assert.assertEquals(9, random.getMax());
+        ZipfianFeeder zipfian = (ZipfianFeeder)feeders.get(2);
+        Assert.assertEquals(10, zipfian.getKeys());
+        Assert.assertEquals(1.5, zipfian.getExponent(), 0D);
+        FileFeeder file = (FileFeeder)feeders.get(3);
+        Assert.assertEquals(Path.of("users.csv"), file.getPath());
+        Assert.assertEquals(List.of("user", "password"), file.getVariables());
+        Assert.assertEquals('\t', file.getSeparator());
+    }
+}
@@ -96,22 +96,7 @@ public class HTTP2LoadGeneratorTest {
 
     @Test
     public void testPush() throws Exception {
-        startServer(new TestHandler() {
-            @Override
-            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-                if ("/".equals(target)) {
-                    request.newPushBuilder()
-                            .path("/1")
-                            .setHeader(Resource.RESPONSE_LENGTH, String.valueOf(10 * 1024))
-                            .push();
-                    request.newPushBuilder()
-                            .path("/2")
-                            .setHeader(Resource.RESPONSE_LENGTH, String.valueOf(32 * 1024))
-                            .push();
-                }
-                super.handle(target, jettyRequest, request, response);
-            }
-        });
+        startServer(new PushHandler());
 
         AtomicLong requests = new AtomicLong();
         AtomicLong sent = new AtomicLong();
@@ -140,4 +125,67 @@ public class HTTP2LoadGeneratorTest {
         Assert.assertEquals(1, sent.get());
         Assert.assertEquals(2, pushed.get());
     }
+
+    @Test
+    public void testPushWithRecycleInfos() throws Exception {
+        startServer(new PushHandler());
+
+        // The pushed resources complete before their parent, so the parent
+        // completes the resource tree, and its Sender may be recycled for
+        // the next resource tree while its response handler is still running.
+        int iterations = 200;
+        AtomicLong requests = new AtomicLong();
+        AtomicLong sent = new AtomicLong();
+        AtomicLong pushed = new AtomicLong();
+        AtomicLong trees = new AtomicLong();
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .httpClientTransportBuilder(new HTTP2ClientTransportBuilder())
+                .port(connector.getLocalPort())
+                .iterationsPerThread(iterations)
+                // A single closed model user without think time sends the next
+                // resource tree as soon as the previous one completes.
+                .closedModel(true)
+                .thinkTime(0, TimeUnit.MILLISECONDS)
+                .recycleInfos(true)
+                .resource(new Resource("/", new Resource("/1"), new Resource("/2")).responseLength(128 * 1024))
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        requests.incrementAndGet();
+                    }
+                })
+                .resourceListener((Resource.NodeListener)info -> {
+                    if (info.isPushed()) {
+                        pushed.incrementAndGet();
+                    } else {
+                        sent.incrementAndGet();
+                    }
+                })
+                .resourceListener((Resource.TreeListener)info -> trees.incrementAndGet())
+                .build();
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        Assert.assertEquals(iterations, trees.get());
+        // Pushed resources must not be sent again by the next resource tree.
+        Assert.assertEquals(iterations, requests.get());
+        Assert.assertEquals(iterations, sent.get());
+        Assert.assertEquals(2 * iterations, pushed.get());
+    }
+
+    private static class PushHandler extends TestHandler {
+        @Override
+        public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            if ("/".equals(target)) {
+                request.newPushBuilder()
+                        .path("/1")
+                        .setHeader(Resource.RESPONSE_LENGTH, String.valueOf(10 * 1024))
+                        .push();
+                request.newPushBuilder()
+                        .path("/2")
+                        .setHeader(Resource.RESPONSE_LENGTH, String.valueOf(32 * 1024))
+                        .push();
+            }
+            super.handle(target, jettyRequest, request, response);
+        }
+    }
 }
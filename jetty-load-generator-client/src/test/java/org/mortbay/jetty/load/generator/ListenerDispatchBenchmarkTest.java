@@ -0,0 +1,115 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Compares the cost of dispatching request listeners and resource
+ * listeners with precomputed dispatch tables with the cost of building
+ * the request listener chain with a stream and of dispatching resource
+ * events with {@code instanceof} scans, as the load generator used to do.</p>
+ */
+public class ListenerDispatchBenchmarkTest {
+    private final LongAdder events = new LongAdder();
+    private final List<Request.Listener> requestListeners = List.of(
+            new Request.Listener() {
+                @Override
+                public void onBegin(Request request) {
+                    events.increment();
+                }
+            },
+            new Request.Listener() {
+                @Override
+                public void onSuccess(Request request) {
+                    events.increment();
+                }
+            },
+            new Request.Listener() {
+                @Override
+                public void onFailure(Request request, Throwable failure) {
+                    events.increment();
+                }
+            });
+    private final List<Resource.Listener> resourceListeners = List.of(
+            (Resource.NodeListener)info -> events.increment(),
+            (Resource.TreeListener)info -> events.increment(),
+            (Resource.NodeListener)info -> events.increment());
+    private HttpClient client;
+
+    @Before
+    public void prepare() throws Exception {
+        client = new HttpClient();
+        client.start();
+    }
+
+    @After
+    public void dispose() throws Exception {
+        client.stop();
+    }
+
+    @Test
+    public void testRequestListeners() throws Exception {
+        AllocationMeter meter = new AllocationMeter();
+        Request.Listener combined = RequestListeners.combine(requestListeners);
+
+        Consumer<Request> chained = request -> requestListeners.stream()
+                .reduce(request, Request::listener, (r1, r2) -> r1);
+        Consumer<Request> prebuilt = request -> request.listener(combined);
+
+        // Requests are allocated in the measure, but they are the same for both.
+        AllocationMeter.Measure[] measures = meter.compare("request", 200_000,
+                "stream chain", i -> chained.accept(client.newRequest("localhost", 8080)),
+                "prebuilt", i -> prebuilt.accept(client.newRequest("localhost", 8080)));
+        Assert.assertTrue(measures[1].getBytes() < measures[0].getBytes());
+    }
+
+    @Test
+    public void testResourceListeners() throws Exception {
+        AllocationMeter meter = new AllocationMeter();
+        Resource.NodeListener[] nodeListeners = resourceListeners.stream()
+                .filter(l -> l instanceof Resource.NodeListener)
+                .map(l -> (Resource.NodeListener)l)
+                .toArray(Resource.NodeListener[]::new);
+        Resource.Info info = new Resource("/").newInfo(null);
+
+        IntConsumer scan = i -> {
+            for (Resource.Listener l : resourceListeners) {
+                if (l instanceof Resource.NodeListener) {
+                    ((Resource.NodeListener)l).onResourceNode(info);
+                }
+            }
+        };
+        IntConsumer table = i -> {
+            for (int j = 0; j < nodeListeners.length; ++j) {
+                nodeListeners[j].onResourceNode(info);
+            }
+        };
+
+        AllocationMeter.Measure[] measures = meter.compare("event", 5_000_000,
+                "instanceof scan", scan, "dispatch table", table);
+        Assert.assertTrue(events.sum() > 0);
+        Assert.assertEquals(0, measures[1].getBytes());
+    }
+}
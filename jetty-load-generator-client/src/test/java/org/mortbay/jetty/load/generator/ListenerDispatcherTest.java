@@ -0,0 +1,141 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ListenerDispatcherTest {
+    @Test
+    public void testBlockDeliversAllEvents() throws Exception {
+        AtomicInteger nodes = new AtomicInteger();
+        AtomicInteger trees = new AtomicInteger();
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test-", 4, 2, ListenerOverflow.BLOCK, false,
+                info -> nodes.incrementAndGet(), info -> trees.incrementAndGet());
+        Assert.assertEquals(4, dispatcher.getCapacity());
+        dispatcher.start();
+        try {
+            Resource.Info info = new Resource("/").newInfo(null);
+            int events = 10_000;
+            Thread[] producers = new Thread[3];
+            for (int i = 0; i < producers.length; ++i) {
+                producers[i] = new Thread(() -> {
+                    for (int j = 0; j < events; ++j) {
+                        dispatcher.publishNode(info);
+                        dispatcher.publishTree(info);
+                    }
+                });
+                producers[i].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            dispatcher.flush();
+            Assert.assertEquals(producers.length * events, nodes.get());
+            Assert.assertEquals(producers.length * events, trees.get());
+            Assert.assertEquals(0, dispatcher.getDropped());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger nodes = new AtomicInteger();
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test-", 3, 1, ListenerOverflow.DROP, false, info -> {
+            await(latch);
+            nodes.incrementAndGet();
+        }, info -> {});
+        dispatcher.start();
+        try {
+            Resource.Info info = new Resource("/").newInfo(null);
+            for (int i = 0; i < 10; ++i) {
+                dispatcher.publishNode(info);
+            }
+            // Slots are released only after the listeners are notified.
+            Assert.assertEquals(6, dispatcher.getDropped());
+            latch.countDown();
+            dispatcher.flush();
+            Assert.assertEquals(4, nodes.get());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testSampleWhenHalfFull() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger nodes = new AtomicInteger();
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test-", 64, 1, ListenerOverflow.SAMPLE, false, info -> {
+            await(latch);
+            nodes.incrementAndGet();
+        }, info -> {});
+        dispatcher.start();
+        try {
+            Resource.Info info = new Resource("/").newInfo(null);
+            int events = 100;
+            for (int i = 0; i < events; ++i) {
+                dispatcher.publishNode(info);
+            }
+            latch.countDown();
+            dispatcher.flush();
+            // Half of the ring buffer is filled, then one event out of 8 is published.
+            int published = nodes.get();
+            Assert.assertTrue(String.valueOf(published), published > 32 && published < 48);
+            Assert.assertEquals(events - published, dispatcher.getDropped());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testCopiedEvents() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Integer> statuses = new CopyOnWriteArrayList<>();
+        ListenerDispatcher dispatcher = new ListenerDispatcher("test-", 4, 1, ListenerOverflow.BLOCK, true, info -> {
+            await(latch);
+            statuses.add(info.getStatus());
+        }, info -> {});
+        dispatcher.start();
+        try {
+            // The same Info is reused, as when recycling Infos.
+            Resource.Info info = new Resource("/").newInfo(null);
+            for (int status = 200; status < 203; ++status) {
+                info.reset();
+                info.setStatus(status);
+                dispatcher.publishNode(info);
+            }
+            latch.countDown();
+            dispatcher.flush();
+            Assert.assertEquals(List.of(200, 201, 202), statuses);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException x) {
+            throw new RuntimeException(x);
+        }
+    }
+}
@@ -15,10 +15,16 @@ package org.mortbay.jetty.load.generator;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -26,17 +32,25 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
 import org.eclipse.jetty.jmx.MBeanContainer;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Handler;
@@ -45,6 +59,7 @@ import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.SocketAddressResolver;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
@@ -52,6 +67,7 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -353,6 +369,287 @@ public class LoadGeneratorTest {
         Assert.assertEquals(3, resources.get());
     }
 
+    @Test
+    public void testRequestContent() throws Exception {
+        List<Long> lengths = new CopyOnWriteArrayList<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                jettyRequest.setHandled(true);
+                lengths.add(request.getInputStream().transferTo(OutputStream.nullOutputStream()));
+            }
+        });
+
+        // Larger than the shared buffer, so that it is sent in multiple chunks.
+        long length = 1024 * 1024 + 1;
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .warmupIterationsPerThread(1)
+                .iterationsPerThread(2)
+                .resourceRate(5)
+                .resource(new Resource("/").method("POST").requestLength(length))
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(List.of(length, length, length), lengths);
+    }
+
+    @Test
+    public void testRequestBody() throws Exception {
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                jettyRequest.setHandled(true);
+                bodies.add(target + ":" + new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        });
+
+        Path directory = Files.createTempDirectory("jlg-");
+        try {
+            Path file = Files.writeString(directory.resolve("body.json"), "{}");
+            Path files = Files.createDirectory(directory.resolve("bodies"));
+            Files.writeString(files.resolve("a.txt"), "a");
+            Files.writeString(files.resolve("b.txt"), "bb");
+            LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                    .port(connector.getLocalPort())
+                    .httpClientTransportBuilder(clientTransportBuilder)
+                    .warmupIterationsPerThread(0)
+                    .iterationsPerThread(3)
+                    .resourceRate(5)
+                    .resource(new Resource(
+                            new Resource("/file").method("POST").requestBody(file),
+                            new Resource("/files").method("POST").requestBody(files)
+                    ))
+                    .build();
+
+            loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(3, bodies.stream().filter("/file:{}"::equals).count());
+            // Requests may arrive out of order, but the files are rotated.
+            List<String> rotated = bodies.stream().filter(body -> body.startsWith("/files:")).sorted().collect(Collectors.toList());
+            Assert.assertEquals(List.of("/files:a", "/files:a", "/files:bb"), rotated);
+        } finally {
+            IO.delete(directory.toFile());
+        }
+    }
+
+    @Test
+    public void testScenarios() throws Exception {
+        List<String> paths = new CopyOnWriteArrayList<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) {
+                jettyRequest.setHandled(true);
+                paths.add(target);
+            }
+        });
+
+        AtomicLong trees = new AtomicLong();
+        AtomicLong misattributed = new AtomicLong();
+        int iterations = 200;
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .warmupIterationsPerThread(0)
+                .iterationsPerThread(iterations)
+                .resourceRate(0)
+                .scenario(new Scenario("product", 3, new Resource("/product", new Resource("/product.css"))))
+                .scenario(new Scenario("search", 1, new Resource("/search")))
+                .resourceListener((Resource.TreeListener)info -> {
+                    trees.incrementAndGet();
+                    int expected = "/product".equals(info.getResource().getPath()) ? 0 : 1;
+                    if (info.getScenario() != expected) {
+                        misattributed.incrementAndGet();
+                    }
+                })
+                .build();
+
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        Assert.assertEquals(iterations, trees.get());
+        Assert.assertEquals(0, misattributed.get());
+        long products = paths.stream().filter("/product"::equals).count();
+        long searches = paths.stream().filter("/search"::equals).count();
+        Assert.assertEquals(iterations, products + searches);
+        Assert.assertEquals(products, paths.stream().filter("/product.css"::equals).count());
+        // 75% of the iterations are products, with a wide margin.
+        Assert.assertTrue(String.valueOf(products), products > iterations / 2 && products < iterations * 9 / 10);
+    }
+
+    @Test
+    public void testFeeders() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                jettyRequest.setHandled(true);
+                String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                requests.add(request.getRequestURI() + "?" + request.getQueryString() + "|" + request.getHeader("X-User") + "|" + body);
+            }
+        });
+
+        Path file = Files.createTempFile("jlg-", ".csv");
+        try {
+            Files.writeString(file, "user,password\nalice,a1\nbob,b2\n");
+            LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                    .port(connector.getLocalPort())
+                    .httpClientTransportBuilder(clientTransportBuilder)
+                    .warmupIterationsPerThread(0)
+                    .iterationsPerThread(2)
+                    .resourceRate(5)
+                    .feeder(new CounterFeeder().variable("id").start(1))
+                    .feeder(new FileFeeder().path(file).header(true))
+                    .resource(new Resource("/item/${id}?u=${user}")
+                            .method("POST")
+                            .requestHeader("X-User", "${user}")
+                            .requestContent("{\"password\":\"${password}\"}")
+                            .resources(new Resource("/static")))
+                    .build();
+
+            loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+            // The resources of a tree share the values of the variables.
+            List<String> sorted = requests.stream().sorted().collect(Collectors.toList());
+            Assert.assertEquals(List.of(
+                    "/item/1?u=alice|alice|{\"password\":\"a1\"}",
+                    "/item/2?u=bob|bob|{\"password\":\"b2\"}",
+                    "/static?null|null|",
+                    "/static?null|null|"
+            ), sorted);
+        } finally {
+            IO.delete(file.toFile());
+        }
+    }
+
+    @Test
+    public void testManyListeners() throws Exception {
+        startServer(new TestHandler());
+
+        AtomicLong begins = new AtomicLong();
+        AtomicLong successes = new AtomicLong();
+        AtomicLong nodes = new AtomicLong();
+        AtomicLong trees = new AtomicLong();
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .iterationsPerThread(3)
+                .resourceRate(5)
+                .resource(new Resource("/", new Resource("/1"), new Resource("/2")))
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        throw new IllegalStateException("explicitly_thrown_by_test");
+                    }
+                })
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        begins.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onSuccess(Request request) {
+                        successes.incrementAndGet();
+                    }
+                })
+                .resourceListener((Resource.TreeListener)info -> trees.incrementAndGet())
+                .resourceListener((Resource.NodeListener)info -> nodes.incrementAndGet())
+                .resourceListener((Resource.NodeListener)info -> nodes.incrementAndGet())
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        // A failing listener does not prevent notifying the other listeners.
+        Assert.assertEquals(9, begins.get());
+        Assert.assertEquals(9, successes.get());
+        Assert.assertEquals(18, nodes.get());
+        Assert.assertEquals(3, trees.get());
+    }
+
+    @Test
+    public void testAsyncListeners() throws Exception {
+        startServer(new TestHandler());
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<String> paths = new CopyOnWriteArrayList<>();
+        AtomicLong trees = new AtomicLong();
+        AtomicLong completeTrees = new AtomicLong();
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .iterationsPerThread(5)
+                .resourceRate(0)
+                .resource(new Resource("/", new Resource("/1"), new Resource("/2")))
+                .recycleInfos(true)
+                .listenerQueueSize(16)
+                .listenerThreads(2)
+                .resourceListener((Resource.NodeListener)info -> {
+                    threads.add(Thread.currentThread().getName());
+                    paths.add(info.getResource().getPath());
+                })
+                .resourceListener((Resource.TreeListener)info -> trees.incrementAndGet())
+                .listener((LoadGenerator.CompleteListener)generator -> completeTrees.set(trees.get()))
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(threads.toString(), threads.stream().allMatch(name -> name.contains("-listener-")));
+        // Infos are recycled, but the events are copied, so that listeners see all the resources.
+        Assert.assertEquals(15, paths.size());
+        Assert.assertEquals(5, paths.stream().filter("/"::equals).count());
+        Assert.assertEquals(5, paths.stream().filter("/1"::equals).count());
+        // Events are notified before the complete event.
+        Assert.assertEquals(5, completeTrees.get());
+        Assert.assertEquals(0, loadGenerator.getDroppedListenerEvents());
+    }
+
+    @Test
+    public void testTreeConcurrency() throws Exception {
+        AtomicInteger concurrency = new AtomicInteger();
+        AtomicInteger maxConcurrency = new AtomicInteger();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                jettyRequest.setHandled(true);
+                maxConcurrency.accumulateAndGet(concurrency.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException x) {
+                    throw new InterruptedIOException();
+                } finally {
+                    concurrency.decrementAndGet();
+                }
+            }
+        });
+
+        List<Resource.Info> infos = new CopyOnWriteArrayList<>();
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resource(new Resource("/",
+                        new Resource("/1", new Resource("/11")),
+                        new Resource("/2"),
+                        new Resource("/3"),
+                        new Resource("/4"),
+                        new Resource("/5"),
+                        new Resource("/6")))
+                .treeConcurrency(2)
+                .resourceListener((Resource.NodeListener)infos::add)
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2, maxConcurrency.get());
+        Assert.assertEquals(8, infos.size());
+        Assert.assertTrue(infos.stream().allMatch(info -> info.getStatus() == 200));
+        // The root is never queued, while at least 4 of its 6 children are.
+        Assert.assertTrue(infos.stream().filter(info -> "/".equals(info.getResource().getPath())).allMatch(info -> info.getQueueDelay() == 0));
+        Assert.assertTrue(infos.stream().filter(info -> info.getQueueDelay() > 0).count() >= 4);
+    }
+
     @Test
     public void testTwoRuns() throws Exception {
         startServer(new TestHandler());
@@ -495,6 +792,36 @@ public class LoadGeneratorTest {
         Assert.assertTrue(requests.get() <= expected + 1);
     }
 
+    @Test
+    public void testLoadProfile() throws Exception {
+        startServer(new TestHandler());
+
+        AtomicLong requests = new AtomicLong();
+        LoadProfile loadProfile = new LoadProfile()
+                .hold(2, TimeUnit.SECONDS, 20)
+                .ramp(2, TimeUnit.SECONDS, 0);
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(2)
+                .loadProfile(loadProfile)
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        requests.incrementAndGet();
+                    }
+                })
+                .build();
+
+        long start = System.nanoTime();
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        // 40 requests during the hold stage, 20 during the ramp down.
+        Assert.assertTrue(Math.abs(requests.get() - 60) <= 2);
+        Assert.assertTrue(elapsed >= loadProfile.getDuration());
+    }
+
     @Test
     public void testSomeRequestFailure() throws Exception {
         startServer(new AbstractHandler() {
@@ -592,6 +919,113 @@ public class LoadGeneratorTest {
         Assert.assertTrue(readyLatch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testWarmupFor() throws Exception {
+        startServer(new TestHandler());
+
+        int threads = 2;
+        int count = 30;
+        long warmupFor = 1000;
+        AtomicLong readyTime = new AtomicLong();
+        AtomicInteger warmupResources = new AtomicInteger();
+        AtomicInteger resources = new AtomicInteger();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(threads)
+                .warmupIterationsPerThread(1)
+                .warmupFor(warmupFor, TimeUnit.MILLISECONDS)
+                .iterationsPerThread(count)
+                .resourceRate(100)
+                .requestListener(new Request.Listener() {
+                    @Override
+                    public void onBegin(Request request) {
+                        if (readyTime.get() == 0) {
+                            warmupResources.incrementAndGet();
+                        }
+                    }
+                })
+                .listener((LoadGenerator.ReadyListener)g -> readyTime.set(System.nanoTime()))
+                .resourceListener((Resource.NodeListener)info -> resources.incrementAndGet())
+                .build();
+
+        long begin = System.nanoTime();
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        Assert.assertTrue(readyTime.get() > 0);
+        long warmup = TimeUnit.NANOSECONDS.toMillis(readyTime.get() - begin);
+        Assert.assertTrue("warmup " + warmup, warmup >= warmupFor);
+        // The warmup time takes precedence over the warmup iterations.
+        Assert.assertTrue(warmupResources.get() > threads);
+        Assert.assertEquals(threads * count, resources.get());
+    }
+
+    @Test
+    public void testWarmupForWithRunFor() throws Exception {
+        startServer(new TestHandler());
+
+        long warmupFor = 2000;
+        long runFor = 1;
+        AtomicLong readyTime = new AtomicLong();
+        AtomicLong completeTime = new AtomicLong();
+        AtomicInteger resources = new AtomicInteger();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .warmupFor(warmupFor, TimeUnit.MILLISECONDS)
+                .runFor(runFor, TimeUnit.SECONDS)
+                .resourceRate(20)
+                .listener((LoadGenerator.ReadyListener)g -> readyTime.set(System.nanoTime()))
+                .listener((LoadGenerator.CompleteListener)g -> completeTime.set(System.nanoTime()))
+                .resourceListener((Resource.NodeListener)info -> resources.incrementAndGet())
+                .build();
+
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        // The run time is measured from the end of the warmup,
+        // even if the warmup time is longer than the run time.
+        long run = TimeUnit.NANOSECONDS.toMillis(completeTime.get() - readyTime.get());
+        Assert.assertTrue("run " + run, run >= TimeUnit.SECONDS.toMillis(runFor));
+        Assert.assertTrue("resources " + resources.get(), resources.get() > 10);
+    }
+
+    @Test
+    public void testAdaptiveWarmup() throws Exception {
+        startServer(new TestHandler());
+
+        int count = 30;
+        long maxWarmup = 10000;
+        AtomicLong readyTime = new AtomicLong();
+        AtomicInteger resources = new AtomicInteger();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .warmupFor(maxWarmup, TimeUnit.MILLISECONDS)
+                .adaptiveWarmup(true)
+                .iterationsPerThread(count)
+                .resourceRate(200)
+                .listener((LoadGenerator.ReadyListener)g -> readyTime.set(System.nanoTime()))
+                .resourceListener((Resource.NodeListener)info -> resources.incrementAndGet())
+                .build();
+
+        long begin = System.nanoTime();
+        loadGenerator.begin().get(30, TimeUnit.SECONDS);
+
+        Assert.assertTrue(readyTime.get() > 0);
+        // The warmup lasts at least the stable intervals, and at most the max warmup time.
+        long warmup = TimeUnit.NANOSECONDS.toMillis(readyTime.get() - begin);
+        Assert.assertTrue("warmup " + warmup, warmup >= 1000);
+        Assert.assertTrue("warmup " + warmup, warmup < maxWarmup + 5000);
+        Assert.assertEquals(count, resources.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdaptiveWarmupWithoutWarmupTime() {
+        LoadGenerator.builder()
+                .adaptiveWarmup(true)
+                .build();
+    }
+
     @Test
     public void testResourceFromRequestAttribute() throws Exception {
         Resource resource = new Resource("/original");
@@ -663,6 +1097,421 @@ public class LoadGeneratorTest {
         Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testIntendedRequestTimeIncludesSenderDelay() throws Exception {
+        startServer(new TestHandler());
+
+        long delay = 1000;
+        List<Resource.Info> infos = new CopyOnWriteArrayList<>();
+        LoadGenerator.Builder config = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .iterationsPerThread(5)
+                .resourceRate(10)
+                .resourceListener((Resource.NodeListener)infos::add);
+        AtomicBoolean stalled = new AtomicBoolean();
+        LoadGenerator loadGenerator = new LoadGenerator(config) {
+            @Override
+            protected Request newRequest(HttpClient client, Config config, Resource resource) {
+                // Simulate a sender thread stall on the first request.
+                if (stalled.compareAndSet(false, true)) {
+                    sleep(delay);
+                }
+                return super.newRequest(client, config, resource);
+            }
+        };
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(5, infos.size());
+        Assert.assertTrue(infos.stream().allMatch(info -> info.getIntendedRequestTime() <= info.getRequestTime()));
+        long maxDelay = infos.stream()
+                .mapToLong(info -> info.getRequestTime() - info.getIntendedRequestTime())
+                .max()
+                .orElse(0);
+        Assert.assertTrue(maxDelay >= TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    @Test
+    public void testSharedPacingRedistributesStalledSenderSlots() throws Exception {
+        startServer(new TestHandler());
+
+        long perThreadMissedSlots = runWithStalledSenderThread(false);
+        long sharedMissedSlots = runWithStalledSenderThread(true);
+
+        // Without shared pacing, the stalled sender thread misses its
+        // send slots, and then sends in a burst to catch up.
+        Assert.assertTrue(perThreadMissedSlots > 0);
+        // With shared pacing, the other sender thread sends in its place.
+        Assert.assertTrue(sharedMissedSlots < perThreadMissedSlots);
+    }
+
+    private long runWithStalledSenderThread(boolean sharedPacing) throws Exception {
+        LongAdder requests = new LongAdder();
+        LoadGenerator.Builder config = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(2)
+                .iterationsPerThread(30)
+                .resourceRate(20)
+                .sharedPacing(sharedPacing)
+                .resourceListener((Resource.NodeListener)info -> requests.increment());
+        AtomicBoolean stalled = new AtomicBoolean();
+        LoadGenerator loadGenerator = new LoadGenerator(config) {
+            @Override
+            protected Request newRequest(HttpClient client, Config config, Resource resource) {
+                // Simulate a sender thread stall on the first request.
+                if (stalled.compareAndSet(false, true)) {
+                    sleep(1000);
+                }
+                return super.newRequest(client, config, resource);
+            }
+        };
+
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(60, requests.intValue());
+        return loadGenerator.getMissedSlots();
+    }
+
+    @Test
+    public void testClosedModel() throws Exception {
+        startServer(new TestHandler());
+
+        int users = 3;
+        int iterations = 12;
+        long thinkTime = 100;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .usersPerThread(users)
+                .iterationsPerThread(iterations)
+                .closedModel(true)
+                .thinkTime(thinkTime, TimeUnit.MILLISECONDS)
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    }
+                })
+                .resourceListener((Resource.NodeListener)info -> inFlight.decrementAndGet())
+                .build();
+
+        long begin = System.nanoTime();
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        // Each user waits for its resource tree before sending the next.
+        Assert.assertTrue(maxInFlight.get() <= users);
+        // Each user sends 4 resource trees, thinking 3 times.
+        Assert.assertTrue(elapsed >= (iterations / users - 1) * thinkTime);
+        Assert.assertTrue(loadGenerator.getTotalThinkTime() >= TimeUnit.MILLISECONDS.toNanos((iterations - users) * thinkTime));
+    }
+
+    @Test
+    public void testThinkTimeProcess() throws Exception {
+        startServer(new TestHandler());
+
+        int iterations = 5;
+        AtomicInteger resources = new AtomicInteger();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .iterationsPerThread(iterations)
+                .closedModel(true)
+                .thinkTime(1, TimeUnit.HOURS)
+                // Users never think, independently of the arrival process.
+                .thinkTimeProcess(new ArrivalProcess() {
+                    @Override
+                    public String getType() {
+                        return "zero";
+                    }
+
+                    @Override
+                    public Arrivals newArrivals(int sender) {
+                        return () -> 0;
+                    }
+                })
+                .resourceListener((Resource.NodeListener)info -> resources.incrementAndGet())
+                .build();
+
+        // Would take hours if users thought for the think time.
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(iterations, resources.get());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(VirtualThreads.isSupported());
+
+        startServer(new TestHandler());
+
+        int threads = 2;
+        int usersPerThread = 10;
+        int iterations = 5;
+        Set<String> senders = ConcurrentHashMap.newKeySet();
+        LongAdder requests = new LongAdder();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(threads)
+                .usersPerThread(usersPerThread)
+                .virtualThreads(true)
+                .warmupIterationsPerThread(2)
+                .iterationsPerThread(iterations)
+                .resourceRate(200)
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onQueued(Request request) {
+                        senders.add(Thread.currentThread().getName());
+                    }
+                })
+                .resourceListener((Resource.NodeListener)info -> requests.increment())
+                .build();
+
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+        // Each user has its own sender loop.
+        Assert.assertEquals(threads * usersPerThread * iterations, requests.intValue());
+        Assert.assertEquals(threads * usersPerThread, senders.size());
+    }
+
+    @Test
+    public void testResourceRateChangeWhileRunning() throws Exception {
+        startServer(new TestHandler());
+
+        Queue<Long> requestTimes = new ConcurrentLinkedDeque<>();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(20)
+                .runFor(5, TimeUnit.SECONDS)
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onBegin(Request request) {
+                        requestTimes.offer(System.nanoTime());
+                    }
+                })
+                .build();
+
+        CompletableFuture<Void> cf = loadGenerator.begin();
+        while (requestTimes.isEmpty()) {
+            sleep(10);
+        }
+        sleep(1500);
+        long change = System.nanoTime();
+        loadGenerator.setResourceRate(100);
+        Assert.assertEquals(100, loadGenerator.getResourceRate());
+        // The original configuration is not changed.
+        Assert.assertEquals(20, loadGenerator.getConfig().getResourceRate());
+        sleep(1500);
+        long end = System.nanoTime();
+        cf.get(10, TimeUnit.SECONDS);
+
+        // About 20 requests in the second before the change,
+        // and about 100 requests in the second after the change.
+        long second = TimeUnit.SECONDS.toNanos(1);
+        long requestsBefore = requestTimes.stream().filter(t -> t >= change - second && t < change).count();
+        long requestsAfter = requestTimes.stream().filter(t -> t >= end - second && t < end).count();
+        Assert.assertEquals(20, requestsBefore, 5);
+        Assert.assertEquals(100, requestsAfter, 15);
+    }
+
+    @Test
+    public void testUsersPerThreadChangeWhileRunning() throws Exception {
+        startServer(new TestHandler());
+
+        LongAdder resources = new LongAdder();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .usersPerThread(1)
+                .closedModel(true)
+                .thinkTime(100, TimeUnit.MILLISECONDS)
+                .runFor(3, TimeUnit.SECONDS)
+                .resourceListener((Resource.NodeListener)info -> resources.increment())
+                .build();
+
+        CompletableFuture<Void> cf = loadGenerator.begin();
+        while (resources.intValue() == 0) {
+            sleep(10);
+        }
+        Assert.assertEquals(1, loadGenerator.getBeans(HttpClient.class).size());
+        loadGenerator.setUsersPerThread(4);
+        sleep(500);
+        // New users have been started.
+        Assert.assertEquals(4, loadGenerator.getBeans(HttpClient.class).size());
+        loadGenerator.setUsersPerThread(2);
+        sleep(500);
+        // Extra users are left idle.
+        Assert.assertEquals(4, loadGenerator.getBeans(HttpClient.class).size());
+        cf.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRecycleInfos() throws Exception {
+        startServer(new TestHandler());
+
+        int iterations = 20;
+        Set<Resource.Info> infos = ConcurrentHashMap.newKeySet();
+        AtomicLong nodes = new AtomicLong();
+        AtomicLong trees = new AtomicLong();
+        AtomicLong mismatches = new AtomicLong();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .warmupIterationsPerThread(5)
+                .iterationsPerThread(iterations)
+                .resourceRate(20)
+                .recycleInfos(true)
+                .resource(new Resource("/",
+                        new Resource("/1").responseLength(1024),
+                        new Resource("/2").responseLength(2048)
+                ).responseLength(512))
+                .resourceListener((Resource.NodeListener)info -> {
+                    nodes.incrementAndGet();
+                    // Only the identity of the Info is retained.
+                    infos.add(info);
+                    // A reused Info must not carry values from its previous request.
+                    long expected = info.getResource().getResponseLength();
+                    if (info.getStatus() != HttpStatus.OK_200 || info.getContentLength() != expected ||
+                            info.getResponseTime() < info.getRequestTime() || info.getFailure() != null || info.isPushed()) {
+                        mismatches.incrementAndGet();
+                    }
+                })
+                .resourceListener((Resource.TreeListener)info -> trees.incrementAndGet())
+                .build();
+
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(iterations, trees.get());
+        Assert.assertEquals(3 * iterations, nodes.get());
+        Assert.assertEquals(0, mismatches.get());
+        // Infos have been recycled.
+        Assert.assertTrue(String.valueOf(infos.size()), infos.size() < nodes.get());
+    }
+
+    @Test
+    public void testSharedConnector() throws Exception {
+        startServer(new TestHandler());
+
+        int threads = 2;
+        int usersPerThread = 3;
+        LongAdder resources = new LongAdder();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(threads)
+                .usersPerThread(usersPerThread)
+                .sharedConnector(true)
+                .resourceRate(100)
+                .runFor(2, TimeUnit.SECONDS)
+                .resourceListener((Resource.NodeListener)info -> {
+                    if (info.getStatus() == HttpStatus.OK_200) {
+                        resources.increment();
+                    }
+                })
+                .build();
+
+        CompletableFuture<Void> cf = loadGenerator.begin();
+        while (resources.intValue() < threads * usersPerThread && !cf.isDone()) {
+            sleep(10);
+        }
+        Collection<ClientConnector> connectors = loadGenerator.getBeans(ClientConnector.class);
+        Assert.assertEquals(1, connectors.size());
+        ClientConnector clientConnector = connectors.iterator().next();
+        Collection<HttpClient> clients = loadGenerator.getBeans(HttpClient.class);
+        Assert.assertEquals(threads * usersPerThread, clients.size());
+        for (HttpClient client : clients) {
+            Assert.assertSame(clientConnector.getByteBufferPool(), client.getByteBufferPool());
+            Assert.assertSame(clientConnector.getScheduler(), client.getScheduler());
+        }
+        cf.get(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(clientConnector.isStopped());
+    }
+
+    @Test
+    public void testVirtualUsers() throws Exception {
+        Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+        AtomicInteger sessionIds = new AtomicInteger();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) {
+                jettyRequest.setHandled(true);
+                String user = request.getHeader("Authorization");
+                String cookie = request.getHeader("Cookie");
+                if (cookie == null) {
+                    response.addHeader("Set-Cookie", "session=" + user + "-" + sessionIds.incrementAndGet() + "; Path=/");
+                } else {
+                    sessions.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(cookie);
+                }
+            }
+        });
+
+        int threads = 2;
+        int virtualUsers = 10;
+        int count = 100;
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(threads)
+                .usersPerThread(2)
+                .virtualUsersPerThread(virtualUsers)
+                .virtualUserHeaders(id -> HttpFields.build().put("Authorization", "user-" + id).asImmutable())
+                .stickyUsers(true)
+                // Each virtual user logs in during warmup.
+                .warmupIterationsPerThread(virtualUsers)
+                .iterationsPerThread(count)
+                .resourceRate(200)
+                .build();
+
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        // All virtual users have sent, each with its own session cookie.
+        Assert.assertEquals(threads * virtualUsers, sessions.size());
+        sessions.forEach((user, cookies) -> {
+            Assert.assertEquals(1, cookies.size());
+            Assert.assertTrue(cookies.iterator().next().startsWith("session=" + user + "-"));
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVirtualUsersWithClosedModel() {
+        LoadGenerator.builder()
+                .virtualUsersPerThread(10)
+                .closedModel(true)
+                .build();
+    }
+
+    @Test
+    public void testSleepStrategies() throws Exception {
+        startServer(new TestHandler());
+
+        for (SleepStrategy sleepStrategy : SleepStrategy.values()) {
+            LongAdder resourceTrees = new LongAdder();
+            LoadGenerator loadGenerator = LoadGenerator.builder()
+                    .port(connector.getLocalPort())
+                    .httpClientTransportBuilder(clientTransportBuilder)
+                    .resourceRate(200)
+                    .warmupIterationsPerThread(100)
+                    .iterationsPerThread(200)
+                    .sleepStrategy(sleepStrategy)
+                    .resourceListener((Resource.TreeListener)info -> resourceTrees.increment())
+                    .build();
+
+            loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+            Histogram sendLag = loadGenerator.getSendLagHistogram();
+            Assert.assertEquals(resourceTrees.longValue(), sendLag.getTotalCount());
+            // Most sends are sent close to their intended time.
+            Assert.assertTrue(sleepStrategy + " " + sendLag.getValueAtPercentile(50), sendLag.getValueAtPercentile(50) < TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
     private static void sleep(long time) {
         try {
             Thread.sleep(time);
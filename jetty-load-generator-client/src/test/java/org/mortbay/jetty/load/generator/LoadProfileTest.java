@@ -0,0 +1,200 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadProfileTest {
+    @Test
+    public void testHold() {
+        LoadProfile profile = new LoadProfile()
+                .hold(10, TimeUnit.SECONDS, 100);
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(10), profile.getDuration());
+        Assert.assertEquals(100D, profile.rateAt(TimeUnit.SECONDS.toNanos(5)), 0D);
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), profile.timeAt(1));
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(5), profile.timeAt(500));
+        // Past the end of the profile.
+        Assert.assertEquals(profile.getDuration(), profile.timeAt(2000));
+    }
+
+    @Test
+    public void testRampUpHoldRampDown() {
+        LoadProfile profile = new LoadProfile()
+                .ramp(10, TimeUnit.SECONDS, 100)
+                .hold(10, TimeUnit.SECONDS, 100)
+                .ramp(10, TimeUnit.SECONDS, 0);
+
+        Assert.assertEquals(3, profile.getStages().size());
+        Assert.assertEquals(500D, profile.getSends(0), 1e-9);
+        Assert.assertEquals(1000D, profile.getSends(1), 1e-9);
+        Assert.assertEquals(500D, profile.getSends(2), 1e-9);
+
+        Assert.assertEquals(50D, profile.rateAt(TimeUnit.SECONDS.toNanos(5)), 1e-9);
+        Assert.assertEquals(100D, profile.rateAt(TimeUnit.SECONDS.toNanos(15)), 1e-9);
+        Assert.assertEquals(50D, profile.rateAt(TimeUnit.SECONDS.toNanos(25)), 1e-9);
+
+        // Ramp up: sends = 1/2 * 10 * t^2.
+        assertTimeAt(profile, 125, TimeUnit.SECONDS.toNanos(5));
+        assertTimeAt(profile, 500, TimeUnit.SECONDS.toNanos(10));
+        assertTimeAt(profile, 1000, TimeUnit.SECONDS.toNanos(15));
+        // Ramp down: sends = 100 * t - 1/2 * 10 * t^2.
+        assertTimeAt(profile, 1500 + 375, TimeUnit.SECONDS.toNanos(25));
+        assertTimeAt(profile, 2000, TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testSine() {
+        LoadProfile profile = new LoadProfile()
+                .sine(20, TimeUnit.SECONDS, 100, 50, 10);
+
+        Assert.assertEquals(100D, profile.rateAt(0), 1e-9);
+        Assert.assertEquals(150D, profile.rateAt(TimeUnit.MILLISECONDS.toNanos(2500)), 1e-9);
+        Assert.assertEquals(50D, profile.rateAt(TimeUnit.MILLISECONDS.toNanos(7500)), 1e-9);
+        // Whole periods have the same number of sends of a constant rate.
+        Assert.assertEquals(2000D, profile.getSends(0), 1e-6);
+        assertTimeAt(profile, 1000, TimeUnit.SECONDS.toNanos(10));
+
+        long previous = 0;
+        for (int sends = 1; sends <= 2000; ++sends) {
+            long time = profile.timeAt(sends);
+            Assert.assertTrue(time > previous);
+            previous = time;
+        }
+    }
+
+    @Test
+    public void testLongSine() {
+        // The rate touches zero at the troughs, and the stage is longer
+        // than the range where doubles have nanosecond precision.
+        LoadProfile profile = new LoadProfile()
+                .sine(300, TimeUnit.DAYS, 10, 10, 1);
+
+        long day = TimeUnit.DAYS.toNanos(1);
+        assertTimeAt(profile, 10D * TimeUnit.DAYS.toSeconds(100), 100 * day);
+        // Half a period, where the cosine is -1.
+        double sends = 10D * TimeUnit.DAYS.toSeconds(200) + 10D * TimeUnit.HOURS.toSeconds(12) + 10D * TimeUnit.DAYS.toSeconds(1) / Math.PI;
+        assertTimeAt(profile, sends, 200 * day + day / 2);
+    }
+
+    @Test
+    public void testStageAt() {
+        LoadProfile profile = new LoadProfile()
+                .hold(1, TimeUnit.SECONDS, 10)
+                .hold(1, TimeUnit.SECONDS, 0)
+                .hold(1, TimeUnit.SECONDS, 10);
+
+        Assert.assertEquals(-1, profile.stageAt(-1));
+        Assert.assertEquals(0, profile.stageAt(0));
+        Assert.assertEquals(1, profile.stageAt(TimeUnit.MILLISECONDS.toNanos(1500)));
+        Assert.assertEquals(2, profile.stageAt(TimeUnit.MILLISECONDS.toNanos(2500)));
+        Assert.assertEquals(-1, profile.stageAt(TimeUnit.SECONDS.toNanos(3)));
+
+        // The zero rate stage is skipped.
+        assertTimeAt(profile, 10, TimeUnit.SECONDS.toNanos(1));
+        assertTimeAt(profile, 11, TimeUnit.MILLISECONDS.toNanos(2100));
+    }
+
+    @Test
+    public void testReuseStage() {
+        LoadProfile.Stage plateau = new LoadProfile.Stage(LoadProfile.Stage.Type.HOLD, TimeUnit.SECONDS.toNanos(1), 10, 0, 0);
+        LoadProfile.Stage spike = new LoadProfile.Stage(LoadProfile.Stage.Type.HOLD, TimeUnit.SECONDS.toNanos(1), 100, 0, 0);
+        LoadProfile profile = new LoadProfile()
+                .stage(plateau)
+                .stage(spike)
+                .stage(plateau);
+        // Adding the same stage to another profile does not change the first profile.
+        new LoadProfile()
+                .hold(5, TimeUnit.SECONDS, 1)
+                .stage(plateau);
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(3), profile.getDuration());
+        Assert.assertEquals(0, profile.getBeginTime(0));
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(2), profile.getBeginTime(2));
+        Assert.assertEquals(0, profile.stageAt(TimeUnit.MILLISECONDS.toNanos(500)));
+        Assert.assertEquals(1, profile.stageAt(TimeUnit.MILLISECONDS.toNanos(1500)));
+        Assert.assertEquals(2, profile.stageAt(TimeUnit.MILLISECONDS.toNanos(2500)));
+        assertTimeAt(profile, 10, TimeUnit.SECONDS.toNanos(1));
+        assertTimeAt(profile, 110, TimeUnit.SECONDS.toNanos(2));
+        assertTimeAt(profile, 115, TimeUnit.MILLISECONDS.toNanos(2500));
+    }
+
+    @Test
+    public void testStageJSON() {
+        LoadProfile.Stage stage = new LoadProfile.Stage(LoadProfile.Stage.Type.SINE, TimeUnit.MINUTES.toNanos(1), 100, 20, TimeUnit.SECONDS.toNanos(10));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(stage));
+        LoadProfile.Stage copy = LoadProfile.Stage.from(map);
+
+        Assert.assertEquals(stage.getType(), copy.getType());
+        Assert.assertEquals(stage.getDuration(), copy.getDuration());
+        Assert.assertEquals(stage.getRate(), copy.getRate(), 0D);
+        Assert.assertEquals(stage.getAmplitude(), copy.getAmplitude(), 0D);
+        Assert.assertEquals(stage.getPeriod(), copy.getPeriod());
+    }
+
+    @Test
+    public void testConfigJSON() {
+        LoadGenerator.Builder builder = new LoadGenerator.Builder()
+                .loadProfile(new LoadProfile()
+                        .ramp(1, TimeUnit.MINUTES, 100)
+                        .sine(1, TimeUnit.HOURS, 100, 20, 10));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(builder));
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON(map);
+
+        LoadProfile profile = config.getLoadProfile();
+        Assert.assertNotNull(profile);
+        Assert.assertEquals(2, profile.getStages().size());
+        LoadProfile.Stage sine = profile.getStages().get(1);
+        Assert.assertEquals(LoadProfile.Stage.Type.SINE, sine.getType());
+        Assert.assertEquals(TimeUnit.HOURS.toNanos(1), sine.getDuration());
+        Assert.assertEquals(100D, sine.getRate(), 0D);
+        Assert.assertEquals(20D, sine.getAmplitude(), 0D);
+        Assert.assertEquals(TimeUnit.HOURS.toNanos(10), sine.getPeriod());
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(61), profile.getDuration());
+    }
+
+    @Test
+    public void testFromJSONReplacesStages() {
+        LoadProfile source = new LoadProfile()
+                .hold(1, TimeUnit.SECONDS, 10);
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(source));
+        LoadProfile profile = new LoadProfile()
+                .ramp(1, TimeUnit.MINUTES, 100)
+                .hold(1, TimeUnit.MINUTES, 100);
+        profile.fromJSON(map);
+
+        Assert.assertEquals(1, profile.getStages().size());
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), profile.getDuration());
+        Assert.assertEquals(10D, profile.getSends(0), 0D);
+    }
+
+    private static void assertTimeAt(LoadProfile profile, double sends, long expected) {
+        Assert.assertEquals(expected, profile.timeAt(sends), TimeUnit.MICROSECONDS.toNanos(1));
+    }
+}
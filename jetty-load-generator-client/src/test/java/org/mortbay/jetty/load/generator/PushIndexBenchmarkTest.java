@@ -0,0 +1,61 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>Compares the time and the bytes allocated to find pushed resources
+ * with the path index of {@link ResourcePlan} with those to find pushed
+ * resources with the recursive {@link Resource#findDescendant(URI)}.</p>
+ */
+public class PushIndexBenchmarkTest {
+    @Test
+    public void testIndexVsRecursiveSearch() throws Exception {
+        AllocationMeter meter = new AllocationMeter();
+
+        // A website-like tree with a page, and 10 groups of 20 resources.
+        List<URI> uris = new ArrayList<>();
+        Resource page = new Resource("/index.html");
+        for (int i = 0; i < 10; ++i) {
+            Resource group = new Resource("/style" + i + ".css");
+            for (int j = 0; j < 20; ++j) {
+                String path = "/images/" + i + "/image" + j + ".png?v=" + j;
+                group.resources(new Resource(path));
+                uris.add(URI.create("http://localhost:8080" + path));
+            }
+            page.resources(group);
+        }
+        ResourcePlan plan = new ResourcePlan(page);
+        URI[] pushes = uris.toArray(new URI[0]);
+
+        ToIntFunction<URI> recursive = uri -> page.findDescendant(uri) == null ? 0 : 1;
+        ToIntFunction<URI> indexed = uri -> plan.findDescendant(0, uri) < 0 ? 0 : 1;
+
+        int lookups = 2_000 * pushes.length;
+        long[] found = new long[1];
+        AllocationMeter.Measure[] measures = meter.compare("push", lookups,
+                "recursive", i -> found[0] += recursive.applyAsInt(pushes[i % pushes.length]),
+                "indexed", i -> found[0] += indexed.applyAsInt(pushes[i % pushes.length]));
+        Assert.assertEquals(0, measures[1].getBytes());
+        // Each lookup ran twice, to warm up and to measure, and found all the pushes.
+        Assert.assertEquals(4L * lookups, found[0]);
+    }
+}
@@ -0,0 +1,113 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Compares the bytes allocated by the load generator threads
+ * per resource tree, with and without recycling of Resource.Info
+ * objects and response handlers.</p>
+ * <p>Allocations are measured between two snapshots taken while
+ * the load is running, for the client threads that are alive at
+ * both snapshots (the server threads are excluded).</p>
+ * <p>Run with {@code -Dtrees=5000} to measure more resource trees.</p>
+ */
+public class RecycleInfosBenchmarkTest {
+    private static final int CHILDREN = 50;
+
+    private final int trees = Integer.getInteger("trees", 200);
+    private Server server;
+    private ServerConnector connector;
+
+    @Before
+    public void prepare() throws Exception {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+        server.setHandler(new TestHandler());
+        server.start();
+    }
+
+    @After
+    public void dispose() {
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testRecycleVsAllocate() throws Exception {
+        AllocationMeter meter = new AllocationMeter();
+        AllocationMeter.Measure[] measures = meter.compare("tree",
+                "allocate", () -> new AllocationMeter.Measure(-1, allocatedBytesPerTree(meter, false)),
+                "recycle", () -> new AllocationMeter.Measure(-1, allocatedBytesPerTree(meter, true)));
+        Assert.assertTrue(measures[1].getBytes() < measures[0].getBytes());
+    }
+
+    private long allocatedBytesPerTree(AllocationMeter meter, boolean recycleInfos) throws Exception {
+        Resource resource = new Resource("/");
+        for (int i = 0; i < CHILDREN; ++i) {
+            resource.resources(new Resource("/" + i));
+        }
+        // Measure the trees in the middle of the run.
+        long from = trees / 4;
+        long to = from + trees / 2;
+        AtomicLong completed = new AtomicLong();
+        AtomicLong[] snapshots = {new AtomicLong(), new AtomicLong()};
+        long[][] threadIds = new long[1][];
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(new HTTP2ClientTransportBuilder())
+                .iterationsPerThread(trees)
+                .resourceRate(100)
+                .recycleInfos(recycleInfos)
+                .resource(resource)
+                .resourceListener((Resource.TreeListener)info -> {
+                    long count = completed.incrementAndGet();
+                    if (count == from) {
+                        threadIds[0] = clientThreadIds(meter.getThreadMXBean());
+                        snapshots[0].set(meter.allocatedBytes(threadIds[0]));
+                    } else if (count == to) {
+                        snapshots[1].set(meter.allocatedBytes(threadIds[0]));
+                    }
+                })
+                .build();
+
+        loadGenerator.begin().get(trees, TimeUnit.SECONDS);
+
+        Assert.assertEquals(trees, completed.get());
+        return (snapshots[1].get() - snapshots[0].get()) / (to - from);
+    }
+
+    private static long[] clientThreadIds(com.sun.management.ThreadMXBean threads) {
+        return Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds()))
+                .filter(info -> info != null && !info.getThreadName().startsWith("server"))
+                .mapToLong(java.lang.management.ThreadInfo::getThreadId)
+                .toArray();
+    }
+}
@@ -0,0 +1,81 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Compares the bytes allocated to create requests from
+ * request templates with those allocated to create requests
+ * from scratch, as the load generator used to do.</p>
+ */
+public class RequestTemplateBenchmarkTest {
+    private HttpClient client;
+    private LoadGenerator loadGenerator;
+
+    @Before
+    public void prepare() throws Exception {
+        client = new HttpClient();
+        client.start();
+        Resource resource = new Resource("/path/to/resource?param=value").responseLength(16 * 1024);
+        resource.requestHeader("Accept", "text/html");
+        loadGenerator = LoadGenerator.builder()
+                .host("localhost")
+                .port(8080)
+                .resource(resource)
+                .build();
+        // Compiles the request templates.
+        loadGenerator.start();
+    }
+
+    @After
+    public void dispose() throws Exception {
+        loadGenerator.stop();
+        client.stop();
+    }
+
+    @Test
+    public void testTemplateVsFromScratch() throws Exception {
+        AllocationMeter meter = new AllocationMeter();
+        LoadGenerator.Config config = loadGenerator.getConfig();
+        Resource resource = config.getResource();
+
+        Supplier<Request> fromScratch = () -> {
+            Request request = client.newRequest(config.getHost(), config.getPort())
+                    .scheme(config.getScheme())
+                    .attribute(Resource.class.getName(), resource)
+                    .method(resource.getMethod())
+                    .path(resource.getPath());
+            request.headers(fields -> fields.add(resource.getRequestHeaders()));
+            request.headers(fields -> fields.put(Resource.RESPONSE_LENGTH, Long.toString(resource.getResponseLength())));
+            return request;
+        };
+        Supplier<Request> fromTemplate = () -> loadGenerator.newRequest(client, config, resource);
+
+        LongAdder paths = new LongAdder();
+        AllocationMeter.Measure[] measures = meter.compare("request", 100_000,
+                "from scratch", i -> paths.add(fromScratch.get().getPath().length()),
+                "from template", i -> paths.add(fromTemplate.get().getPath().length()));
+        Assert.assertTrue(paths.sum() > 0);
+        Assert.assertTrue(measures[1].getBytes() < measures[0].getBytes());
+    }
+}
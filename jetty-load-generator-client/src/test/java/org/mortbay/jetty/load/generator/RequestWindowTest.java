@@ -0,0 +1,57 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestWindowTest {
+    @Test
+    public void testPermitIsTransferredInOrder() {
+        Resource resource = new Resource("/");
+        Resource.Info info1 = resource.newInfo(null);
+        Resource.Info info2 = resource.newInfo(null);
+        RequestWindow window = new RequestWindow(1, 4);
+
+        Assert.assertTrue(window.acquire(0, resource.newInfo(null)));
+        Assert.assertFalse(window.acquire(2, info2));
+        Assert.assertFalse(window.acquire(1, info1));
+
+        // Queued nodes are resumed in the order they were queued.
+        Assert.assertEquals(2, window.release());
+        Assert.assertSame(info2, window.take(2));
+        Assert.assertEquals(1, window.release());
+        Assert.assertSame(info1, window.take(1));
+
+        // The last permit is returned to the window.
+        Assert.assertEquals(-1, window.release());
+        Assert.assertTrue(window.acquire(3, resource.newInfo(null)));
+    }
+
+    @Test
+    public void testClear() {
+        Resource resource = new Resource("/");
+        RequestWindow window = new RequestWindow(2, 3);
+
+        Assert.assertTrue(window.acquire(0, resource.newInfo(null)));
+        Assert.assertTrue(window.acquire(1, resource.newInfo(null)));
+        Assert.assertFalse(window.acquire(2, resource.newInfo(null)));
+
+        window.clear();
+
+        Assert.assertTrue(window.acquire(0, resource.newInfo(null)));
+        Assert.assertTrue(window.acquire(1, resource.newInfo(null)));
+        Assert.assertEquals(-1, window.release());
+    }
+}
@@ -18,12 +18,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 import groovy.lang.GroovyShell;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.xml.XmlConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
@@ -55,6 +58,20 @@ public class ResourceBuildTest {
         Assert.assertEquals("POST", resourceProfile.getResources().get(1).getMethod());
     }
 
+    @Test
+    public void testRequestBodyJSON() {
+        Resource resource = new Resource(new Resource("/upload").method("POST").requestBody(Path.of("bodies")));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(resource));
+        Resource result = new Resource();
+        result.fromJSON(map);
+
+        Assert.assertEquals(Path.of("bodies"), result.getResources().get(0).getRequestBody());
+        Assert.assertNull(result.getRequestBody());
+    }
+
     @Test
     public void testWebsiteTree() {
         Resource sample = new Resource(
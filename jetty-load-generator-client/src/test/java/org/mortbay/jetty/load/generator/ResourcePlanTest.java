@@ -0,0 +1,90 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourcePlanTest {
+    @Test
+    public void testPlan() {
+        Resource root = new Resource("/index.html",
+                new Resource("/style.css",
+                        new Resource("/logo.gif"),
+                        new Resource("/spacer.png")
+                ),
+                new Resource(
+                        new Resource("/script.js?v=1")
+                ),
+                new Resource("/favicon.ico")
+        );
+        ResourcePlan plan = new ResourcePlan(root);
+
+        Assert.assertEquals(root.descendantCount(), plan.size());
+        Assert.assertSame(root, plan.getResource(0));
+        // Breadth-first order: children have consecutive indexes.
+        Assert.assertEquals(1, plan.getChildStart(0));
+        Assert.assertEquals(4, plan.getChildEnd(0));
+        Assert.assertEquals("/style.css", plan.getResource(1).getPath());
+        Assert.assertNull(plan.getResource(2).getPath());
+        Assert.assertEquals("/favicon.ico", plan.getResource(3).getPath());
+        Assert.assertEquals(4, plan.getChildStart(1));
+        Assert.assertEquals(6, plan.getChildEnd(1));
+        Assert.assertEquals("/logo.gif", plan.getResource(4).getPath());
+        Assert.assertEquals("/spacer.png", plan.getResource(5).getPath());
+        Assert.assertEquals(6, plan.getChildStart(2));
+        Assert.assertEquals(7, plan.getChildEnd(2));
+        Assert.assertEquals("/script.js?v=1", plan.getResource(6).getPath());
+        // Leaves have empty child ranges.
+        Assert.assertEquals(plan.getChildStart(6), plan.getChildEnd(6));
+
+        Assert.assertEquals(5, plan.findDescendant(0, URI.create("http://localhost/spacer.png")));
+        Assert.assertEquals(6, plan.findDescendant(0, URI.create("http://localhost/script.js?v=1")));
+        Assert.assertEquals(-1, plan.findDescendant(0, URI.create("http://localhost/script.js")));
+        Assert.assertEquals(-1, plan.findDescendant(1, URI.create("http://localhost/favicon.ico")));
+        Assert.assertEquals(-1, plan.findDescendant(0, URI.create("http://localhost/index.html")));
+    }
+
+    @Test
+    public void testFindDescendantWithDuplicatePaths() {
+        // Same paths in different subtrees and at different depths.
+        Resource root = new Resource("/",
+                new Resource("/a",
+                        new Resource("/b",
+                                new Resource("/c?q=1")
+                        ),
+                        new Resource("/c?q=1")
+                ),
+                new Resource("/b",
+                        new Resource("/a"),
+                        new Resource("/c")
+                ),
+                new Resource("/c?q=2")
+        );
+        ResourcePlan plan = new ResourcePlan(root);
+
+        String[] uris = {"/a", "/b", "/c", "/c?q=1", "/c?q=2", "/c?q=3", "/d"};
+        for (int node = 0; node < plan.size(); ++node) {
+            Resource resource = plan.getResource(node);
+            for (String path : uris) {
+                URI uri = URI.create("http://localhost" + path);
+                Resource expected = resource.findDescendant(uri);
+                int result = plan.findDescendant(node, uri);
+                Assert.assertSame(resource + " " + path, expected, result < 0 ? null : plan.getResource(result));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScenarioTest {
+    @Test
+    public void testAliasSamplerDistribution() {
+        double[] weights = {70, 20, 10, 0.5};
+        AliasSampler sampler = new AliasSampler(weights);
+        Random random = new Random(42);
+        int samples = 1_000_000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < samples; ++i) {
+            ++counts[sampler.next(random)];
+        }
+        double total = 100.5;
+        for (int i = 0; i < weights.length; ++i) {
+            Assert.assertEquals(weights[i] / total, (double)counts[i] / samples, 0.005);
+        }
+    }
+
+    @Test
+    public void testAliasSamplerSingleWeight() {
+        AliasSampler sampler = new AliasSampler(new double[]{3});
+        Random random = new Random();
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertEquals(0, sampler.next(random));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWeight() {
+        new Scenario("none", 0, new Resource("/"));
+    }
+
+    @Test
+    public void testMeanResourceCount() {
+        LoadGenerator.Config config = new LoadGenerator.Builder()
+                .scenario(new Scenario("page", 3, new Resource("/page", new Resource("/style.css"), new Resource("/script.js"))))
+                .scenario(new Scenario("api", 1, new Resource("/api")));
+        Assert.assertEquals((3D * 3 + 1) / 4, config.getMeanResourceCount(), 0D);
+    }
+
+    @Test
+    public void testConfigJSON() {
+        LoadGenerator.Builder builder = new LoadGenerator.Builder()
+                .scenario(new Scenario("product", 70, new Resource("/product", new Resource("/product.css"))))
+                .scenario(new Scenario("search", 30, new Resource("/search")));
+
+        JSON json = new JSON();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)json.fromJSON(json.toJSON(builder));
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON(map);
+
+        List<Scenario> scenarios = config.getScenarios();
+        Assert.assertEquals(2, scenarios.size());
+        Assert.assertEquals("product", scenarios.get(0).getName());
+        Assert.assertEquals(70, scenarios.get(0).getWeight(), 0D);
+        Assert.assertEquals("/product", scenarios.get(0).getResource().getPath());
+        Assert.assertEquals(2, scenarios.get(0).getResource().descendantCount());
+        Assert.assertEquals("search", scenarios.get(1).getName());
+        Assert.assertEquals(30, scenarios.get(1).getWeight(), 0D);
+    }
+}
@@ -0,0 +1,126 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Compares the maximum sustained resource rate of platform
+ * thread senders with that of virtual thread senders.</p>
+ * <p>Only runs with {@code -Dbenchmarks=true}.</p>
+ */
+public class SenderEngineBenchmarkTest {
+    private Server server;
+    private ServerConnector connector;
+    private QueuedThreadPool executor;
+    private ScheduledExecutorScheduler scheduler;
+
+    @Before
+    public void prepare() throws Exception {
+        server = new Server();
+        connector = new ServerConnector(server, new HttpConnectionFactory());
+        server.addConnector(connector);
+        server.setHandler(new TestHandler());
+        server.start();
+        executor = new QueuedThreadPool(1024);
+        executor.start();
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+    }
+
+    @After
+    public void dispose() {
+        LifeCycle.stop(scheduler);
+        LifeCycle.stop(executor);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testPlatformThreadsVsVirtualThreads() throws Exception {
+        AllocationMeter.assumeBenchmarks();
+
+        int platformRate = maxSustainedRate(false);
+        System.err.printf("%nplatform threads - max sustained rate: %d resources/s%n", platformRate);
+        Assert.assertTrue(platformRate > 0);
+
+        Assume.assumeTrue(VirtualThreads.isSupported());
+
+        int virtualRate = maxSustainedRate(true);
+        System.err.printf("virtual threads  - max sustained rate: %d resources/s%n%n", virtualRate);
+        Assert.assertTrue(virtualRate > 0);
+    }
+
+    private int maxSustainedRate(boolean virtualThreads) throws Exception {
+        int result = 0;
+        for (int rate = 100; rate <= 12800; rate *= 2) {
+            if (!isSustained(virtualThreads, rate)) {
+                break;
+            }
+            result = rate;
+        }
+        return result;
+    }
+
+    private boolean isSustained(boolean virtualThreads, int rate) throws Exception {
+        int usersPerThread = 50;
+        LongAdder responses = new LongAdder();
+        LongAccumulator firstRequestTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        LongAccumulator lastRequestTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .threads(2)
+                .usersPerThread(usersPerThread)
+                .virtualThreads(virtualThreads)
+                // Warm up so that each user opens its connection.
+                .warmupIterationsPerThread(virtualThreads ? 1 : usersPerThread)
+                .runFor(2, TimeUnit.SECONDS)
+                .resourceRate(rate)
+                .executor(executor)
+                .scheduler(scheduler)
+                .resourceListener((Resource.NodeListener)info -> {
+                    if (info.getFailure() == null) {
+                        responses.increment();
+                        firstRequestTime.accumulate(info.getRequestTime());
+                        lastRequestTime.accumulate(info.getRequestTime());
+                    }
+                })
+                .build();
+
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        // The rate is sustained if the sender loops kept up with the
+        // nominal rate, and the server responded to all requests.
+        long count = responses.longValue();
+        double achievedRate = (count - 1) * (double)TimeUnit.SECONDS.toNanos(1) / (lastRequestTime.get() - firstRequestTime.get());
+        System.err.printf("%s threads - rate: %d, achieved rate: %.3f, missed slots: %d, send lag p99: %d us%n",
+                virtualThreads ? "virtual" : "platform", rate, achievedRate, loadGenerator.getMissedSlots(),
+                TimeUnit.NANOSECONDS.toMicros(loadGenerator.getSendLagHistogram().getValueAtPercentile(99)));
+        return achievedRate >= rate * 0.9D && loadGenerator.getMissedSlots() <= count / 100;
+    }
+}
@@ -0,0 +1,142 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>Compares the lock-free {@link SenderQueue} with the locked queue
+ * that the resource tree sender used to have, when the 200 children of
+ * a resource tree with 1 parent are queued concurrently by multiple
+ * threads, as if they were queued by the client I/O threads that
+ * complete the responses.</p>
+ * <p>Only runs with {@code -Dbenchmarks=true}; run with
+ * {@code -Dthreads=8} to queue from 8 threads.</p>
+ */
+public class SenderQueueBenchmarkTest {
+    private static final int CHILDREN = 200;
+
+    private final int threads = Integer.getInteger("threads", 4);
+    private final int trees = Integer.getInteger("trees", 20_000);
+
+    @Test
+    public void testLockFreeVsLocked() throws Exception {
+        AllocationMeter.assumeBenchmarks();
+
+        // Warm up both, so that the measures are on JIT compiled code.
+        run(LockFreeTree::new);
+        run(LockedTree::new);
+
+        long lockedNanos = run(LockedTree::new);
+        long lockFreeNanos = run(LockFreeTree::new);
+        System.err.printf("%nlocked    - threads: %d, %d ns/tree%n", threads, lockedNanos / trees);
+        System.err.printf("lock-free - threads: %d, %d ns/tree%n%n", threads, lockFreeNanos / trees);
+    }
+
+    private long run(Supplier<Tree> factory) throws Exception {
+        Resource.Info info = new Resource("/").newInfo(null);
+        AtomicLong drained = new AtomicLong();
+        // One barrier per tree, so that the threads queue the same tree concurrently.
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        Tree[] tree = new Tree[1];
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            int producer = t;
+            producers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < trees; ++i) {
+                        if (barrier.await() == 0) {
+                            tree[0] = factory.get();
+                        }
+                        barrier.await();
+                        Tree current = tree[0];
+                        for (int child = 1 + producer; child <= CHILDREN; child += threads) {
+                            current.offer(child, info, (node, nodeInfo) -> drained.incrementAndGet());
+                        }
+                    }
+                } catch (Exception x) {
+                    throw new RuntimeException(x);
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        Assert.assertEquals((long)trees * CHILDREN, drained.get());
+        return elapsed;
+    }
+
+    private interface Tree {
+        void offer(int node, Resource.Info info, SenderQueue.Consumer consumer);
+    }
+
+    private static class LockFreeTree implements Tree {
+        private final SenderQueue queue = new SenderQueue(CHILDREN + 1);
+
+        @Override
+        public void offer(int node, Resource.Info info, SenderQueue.Consumer consumer) {
+            if (queue.offer(node, info)) {
+                queue.drain(consumer);
+            }
+        }
+    }
+
+    /**
+     * <p>The queue of the resource tree sender before it was lock-free.</p>
+     */
+    private static class LockedTree implements Tree {
+        private final AutoLock lock = new AutoLock();
+        private final Queue<Integer> nodes = new ArrayDeque<>();
+        private final Queue<Resource.Info> infos = new ArrayDeque<>();
+        private boolean active;
+
+        @Override
+        public void offer(int node, Resource.Info info, SenderQueue.Consumer consumer) {
+            try (AutoLock ignored = lock.lock()) {
+                nodes.offer(node);
+                infos.offer(info);
+                if (active) {
+                    return;
+                }
+                active = true;
+            }
+            while (true) {
+                int next;
+                Resource.Info nextInfo;
+                try (AutoLock ignored = lock.lock()) {
+                    if (nodes.isEmpty()) {
+                        active = false;
+                        return;
+                    }
+                    next = nodes.poll();
+                    nextInfo = infos.poll();
+                }
+                consumer.accept(next, nextInfo);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SenderQueueTest {
+    @Test
+    public void testDrainInOrder() {
+        Resource resource = new Resource("/");
+        SenderQueue queue = new SenderQueue(4);
+        StringBuilder drained = new StringBuilder();
+
+        Assert.assertTrue(queue.offer(0, resource.newInfo(null)));
+        // Nodes published while draining are drained by the same consumer.
+        Assert.assertFalse(queue.drain((node, info) -> {
+            drained.append(node);
+            if (node == 0) {
+                int slot = queue.reserve(3);
+                for (int i = 1; i <= 3; ++i) {
+                    queue.set(slot++, i, resource.newInfo(null));
+                }
+                Assert.assertFalse(queue.publish(3));
+            }
+        }));
+
+        Assert.assertEquals("0123", drained.toString());
+        Assert.assertThrows(IllegalStateException.class, () -> queue.reserve(1));
+    }
+
+    @Test
+    public void testComplete() {
+        Resource resource = new Resource("/");
+        SenderQueue queue = new SenderQueue(1);
+
+        // Completed while not draining.
+        Assert.assertTrue(queue.offer(0, resource.newInfo(null)));
+        Assert.assertFalse(queue.drain((node, info) -> {}));
+        Assert.assertTrue(queue.complete());
+
+        // Completed while draining.
+        queue.clear();
+        Assert.assertTrue(queue.offer(0, resource.newInfo(null)));
+        Assert.assertTrue(queue.drain((node, info) -> Assert.assertFalse(queue.complete())));
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        int producers = 4;
+        int nodesPerProducer = 10_000;
+        int capacity = producers * nodesPerProducer;
+        Resource resource = new Resource("/");
+        Resource.Info info = resource.newInfo(null);
+        SenderQueue queue = new SenderQueue(capacity);
+        AtomicIntegerArray drained = new AtomicIntegerArray(capacity);
+        AtomicInteger consumers = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        SenderQueue.Consumer consumer = (node, i) -> {
+            // There must be only one consumer at a time.
+            if (consumers.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            drained.incrementAndGet(node);
+            consumers.decrementAndGet();
+        };
+
+        CyclicBarrier barrier = new CyclicBarrier(producers);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int i = 0; i < nodesPerProducer; ++i) {
+                        if (queue.offer(producer * nodesPerProducer + i, info)) {
+                            queue.drain(consumer);
+                        }
+                    }
+                } catch (Exception x) {
+                    throw new RuntimeException(x);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, overlaps.get());
+        for (int i = 0; i < capacity; ++i) {
+            Assert.assertEquals(1, drained.get(i));
+        }
+        Assert.assertTrue(queue.complete());
+    }
+}
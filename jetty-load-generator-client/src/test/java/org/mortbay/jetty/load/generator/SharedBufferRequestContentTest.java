@@ -0,0 +1,91 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.util.Callback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedBufferRequestContentTest {
+    @Test
+    public void testContentLargerThanIntegerMaxValue() {
+        long length = Integer.MAX_VALUE + 1024L * 1024 + 1;
+        SharedBufferRequestContent content = new SharedBufferRequestContent(length);
+        Assert.assertEquals(length, content.getLength());
+        Assert.assertTrue(content.isReproducible());
+
+        // Subscribe twice, to verify that the content is reproducible.
+        for (int i = 0; i < 2; ++i) {
+            AtomicLong total = new AtomicLong();
+            AtomicBoolean last = new AtomicBoolean();
+            AtomicReference<Request.Content.Subscription> subscription = new AtomicReference<>();
+            subscription.set(content.subscribe(new Request.Content.Consumer() {
+                @Override
+                public void onContent(ByteBuffer buffer, boolean isLast, Callback callback) {
+                    total.addAndGet(buffer.remaining());
+                    // Consume the buffer, which must not affect the shared buffer.
+                    buffer.position(buffer.limit());
+                    last.set(isLast);
+                    callback.succeeded();
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    Assert.fail(failure.toString());
+                }
+            }, false));
+            while (!last.get()) {
+                subscription.get().demand();
+            }
+            Assert.assertEquals(length, total.get());
+        }
+    }
+
+    @Test
+    public void testSharedBufferIsNotModified() {
+        ByteBuffer shared = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        SharedBufferRequestContent content = new SharedBufferRequestContent(shared, 7);
+        AtomicInteger chunks = new AtomicInteger();
+        StringBuilder bytes = new StringBuilder();
+        AtomicBoolean last = new AtomicBoolean();
+        Request.Content.Subscription subscription = content.subscribe(new Request.Content.Consumer() {
+            @Override
+            public void onContent(ByteBuffer buffer, boolean isLast, Callback callback) {
+                if (buffer.hasRemaining()) {
+                    chunks.incrementAndGet();
+                }
+                while (buffer.hasRemaining()) {
+                    bytes.append(buffer.get());
+                }
+                last.set(isLast);
+                callback.succeeded();
+            }
+        }, false);
+        while (!last.get()) {
+            subscription.demand();
+        }
+
+        Assert.assertEquals(3, chunks.get());
+        Assert.assertEquals("1231231", bytes.toString());
+        Assert.assertEquals(0, shared.position());
+        Assert.assertEquals(3, shared.limit());
+    }
+}
@@ -0,0 +1,112 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Compares the threads and the heap used by users that
+ * have their own ClientConnector with those used by users
+ * that share the same ClientConnector.</p>
+ * <p>Run with {@code -Dusers=10000} to simulate 10k users.</p>
+ */
+public class SharedConnectorBenchmarkTest {
+    private final int users = Integer.getInteger("users", 500);
+    private Server server;
+    private ServerConnector connector;
+    private QueuedThreadPool executor;
+
+    @Before
+    public void prepare() throws Exception {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        connector = new ServerConnector(server, new HttpConnectionFactory());
+        connector.setAcceptQueueSize(users);
+        server.addConnector(connector);
+        server.setHandler(new TestHandler());
+        server.start();
+        // Each non-shared connector takes one thread for its selector.
+        executor = new QueuedThreadPool(users + 256);
+        executor.setName("client");
+        executor.start();
+    }
+
+    @After
+    public void dispose() {
+        LifeCycle.stop(executor);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testOwnConnectorVsSharedConnector() throws Exception {
+        Footprint own = footprint(false);
+        System.err.printf("%nown connector    - users: %d, threads: %d, heap: %d KiB%n", users, own.threads, own.heap / 1024);
+        Footprint shared = footprint(true);
+        System.err.printf("shared connector - users: %d, threads: %d, heap: %d KiB%n%n", users, shared.threads, shared.heap / 1024);
+        Assert.assertTrue(shared.threads < own.threads);
+    }
+
+    private Footprint footprint(boolean sharedConnector) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong threads = new AtomicLong();
+        AtomicLong heap = new AtomicLong();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .usersPerThread(users)
+                .sharedConnector(sharedConnector)
+                .executor(executor)
+                // Warm up so that each user opens its connection.
+                .warmupIterationsPerThread(users)
+                .iterationsPerThread(1)
+                .resourceRate(0)
+                .listener((LoadGenerator.ReadyListener)g -> {
+                    // All the users are connected, measure their footprint.
+                    System.gc();
+                    threads.set(ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore);
+                    heap.set(memory.getHeapMemoryUsage().getUsed() - heapBefore);
+                })
+                .build();
+
+        loadGenerator.begin().get(users, TimeUnit.SECONDS);
+
+        return new Footprint(threads.get(), heap.get());
+    }
+
+    private static class Footprint {
+        private final long threads;
+        private final long heap;
+
+        private Footprint(long threads, long heap) {
+            this.threads = threads;
+            this.heap = heap;
+        }
+    }
+}
@@ -19,10 +19,14 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
@@ -34,7 +38,9 @@ import org.eclipse.jetty.io.ConnectionStatistics;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.LoadProfile;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.Scenario;
 
 /**
  * <p>A load generator listener that reports information about a load run.</p>
@@ -62,11 +68,19 @@ import org.mortbay.jetty.load.generator.Resource;
  * System.err.printf("max response time: %d", report.getResponseTimeHistogram().getMaxValue());
  * </pre>
  */
-public class ReportListener extends ContainerLifeCycle implements LoadGenerator.BeginListener, LoadGenerator.ReadyListener, LoadGenerator.EndListener, LoadGenerator.CompleteListener, Resource.NodeListener, Connection.Listener {
+public class ReportListener extends ContainerLifeCycle implements LoadGenerator.BeginListener, LoadGenerator.ReadyListener, LoadGenerator.EndListener, LoadGenerator.CompleteListener, Resource.NodeListener, Resource.TreeListener, Connection.Listener {
     private final Report report = new Report();
     private final CompletableFuture<Report> reportPromise = new CompletableFuture<>();
     private final ConnectionStatistics connectionStats = new ConnectionStatistics();
     private final Recorder recorder;
+    private final Recorder correctedRecorder;
+    private final Recorder queueDelayRecorder;
+    private final long lowestDiscernibleValue;
+    private final long highestTrackableValue;
+    private final int numberOfSignificantValueDigits;
+    private volatile LoadProfile loadProfile;
+    private volatile LongAdder[] stageSends;
+    private volatile ScenarioRecorder[] scenarioRecorders = new ScenarioRecorder[0];
 
     /**
      * <p>Creates a report listener that records values between 1 microsecond and 1 minute with 3 digit precision.</p>
@@ -86,6 +100,11 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
      */
     public ReportListener(long lowestDiscernibleValue, long highestTrackableValue, int numberOfSignificantValueDigits) {
         recorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
+        correctedRecorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
+        queueDelayRecorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
+        this.lowestDiscernibleValue = lowestDiscernibleValue;
+        this.highestTrackableValue = highestTrackableValue;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
         addBean(connectionStats);
     }
 
@@ -251,12 +270,27 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
     public void onBegin(LoadGenerator generator) {
         report.beginInstant = Instant.now();
         report.beginTime = System.nanoTime();
+        LoadProfile loadProfile = generator.getConfig().getLoadProfile();
+        if (loadProfile != null) {
+            LongAdder[] stageSends = new LongAdder[loadProfile.getStages().size()];
+            Arrays.setAll(stageSends, i -> new LongAdder());
+            this.stageSends = stageSends;
+        }
+        this.loadProfile = loadProfile;
+        List<Scenario> scenarios = generator.getConfig().getScenarios();
+        // Events are attributed to scenarios by the scenario index carried
+        // by Infos, so that scenarios may share the same Resource objects.
+        this.scenarioRecorders = scenarios.stream()
+                .map(ScenarioRecorder::new)
+                .toArray(ScenarioRecorder[]::new);
     }
 
     @Override
     public void onReady(LoadGenerator generator) {
-        report.readyTime = System.nanoTime();
         report.readyCPUTime = getProcessCPUTime();
+        // Take the time after the CPU time, as the latter may be slow
+        // to retrieve and the load profile begins when this method returns.
+        report.readyTime = System.nanoTime();
     }
 
     @Override
@@ -270,6 +304,28 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         report.completeCPUTime = getProcessCPUTime();
         // The histogram is reset every time getIntervalHistogram() is called.
         report.histogram = recorder.getIntervalHistogram();
+        report.correctedHistogram = correctedRecorder.getIntervalHistogram();
+        report.queueDelayHistogram = queueDelayRecorder.getIntervalHistogram();
+        report.sendLagHistogram = generator.getSendLagHistogram();
+        LoadProfile loadProfile = this.loadProfile;
+        if (loadProfile != null) {
+            List<LoadProfile.Stage> stages = loadProfile.getStages();
+            LongAdder[] stageSends = this.stageSends;
+            report.stages = IntStream.range(0, stages.size())
+                    .mapToObj(i -> new Report.Stage(stages.get(i), loadProfile.getSends(i), stageSends[i].longValue()))
+                    .collect(Collectors.toList());
+        }
+        long recordingNanos = report.getRecordingNanos();
+        report.scenarios = Arrays.stream(scenarioRecorders)
+                .map(scenarioRecorder -> scenarioRecorder.toReport(recordingNanos))
+                .collect(Collectors.toList());
+        report.missedSlots = generator.getMissedSlots();
+        report.droppedListenerEvents = generator.getDroppedListenerEvents();
+        report.thinkTime = generator.getTotalThinkTime();
+        SaturationDetector detector = generator.getBean(SaturationDetector.class);
+        if (detector != null) {
+            report.saturationVerdict = detector.getVerdict();
+        }
         report.sentBytes = connectionStats.getSentBytes();
         report.recvBytes = connectionStats.getReceivedBytes();
         reportPromise.complete(report);
@@ -281,10 +337,38 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             recordResponseGroup(info);
             long responseTime = info.getResponseTime() - info.getRequestTime();
             recorder.recordValue(responseTime);
+            long correctedResponseTime = info.getResponseTime() - info.getIntendedRequestTime();
+            correctedRecorder.recordValue(correctedResponseTime);
+            long queueDelay = info.getQueueDelay();
+            if (queueDelay > 0) {
+                queueDelayRecorder.recordValue(queueDelay);
+            }
             report.responseContent.add(info.getContentLength());
         } else {
             report.failures.increment();
         }
+        int scenario = info.getScenario();
+        if (scenario >= 0) {
+            scenarioRecorders[scenario].onResourceNode(info);
+        }
+    }
+
+    @Override
+    public void onResourceTree(Resource.Info info) {
+        report.resourceTrees.increment();
+        report.resourceTreeTime.add(info.getTreeTime() - info.getRequestTime());
+        LoadProfile loadProfile = this.loadProfile;
+        if (loadProfile != null) {
+            // The load profile begins when the warmup ends.
+            int stage = loadProfile.stageAt(info.getRequestTime() - report.readyTime);
+            if (stage >= 0) {
+                stageSends[stage].increment();
+            }
+        }
+        int scenario = info.getScenario();
+        if (scenario >= 0) {
+            scenarioRecorders[scenario].onResourceTree(info);
+        }
     }
 
     @Override
@@ -319,7 +403,38 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         }
     }
 
-    private static long getProcessCPUTime() {
+    /**
+     * <p>Records the events of the resource trees of a {@link Scenario}.</p>
+     */
+    private class ScenarioRecorder {
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Recorder treeRecorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
+        private final Scenario scenario;
+
+        private ScenarioRecorder(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        private void onResourceNode(Resource.Info info) {
+            if (info.getFailure() == null) {
+                responses.increment();
+            } else {
+                failures.increment();
+            }
+        }
+
+        private void onResourceTree(Resource.Info info) {
+            treeRecorder.recordValue(info.getTreeTime() - info.getRequestTime());
+        }
+
+        private Report.Scenario toReport(long recordingNanos) {
+            Histogram histogram = treeRecorder.getIntervalHistogram();
+            return new Report.Scenario(scenario.getName(), scenario.getWeight(), responses.longValue(), failures.longValue(), histogram, Report.nanoRate(histogram.getTotalCount(), recordingNanos));
+        }
+    }
+
+    static long getProcessCPUTime() {
         try {
             MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
             ObjectName osObjectName = new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
@@ -337,7 +452,15 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         private final LongAdder responses5xx = new LongAdder();
         private final LongAdder responseContent = new LongAdder();
         private final LongAdder failures = new LongAdder();
+        private final LongAdder resourceTrees = new LongAdder();
+        private final LongAdder resourceTreeTime = new LongAdder();
         private volatile Histogram histogram;
+        private volatile Histogram correctedHistogram;
+        private volatile Histogram sendLagHistogram;
+        private volatile Histogram queueDelayHistogram;
+        private volatile SaturationDetector.Verdict saturationVerdict;
+        private volatile List<Stage> stages = List.of();
+        private volatile List<Scenario> scenarios = List.of();
         private volatile Instant beginInstant;
         private volatile long beginTime;
         private volatile long readyTime;
@@ -347,6 +470,9 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         private volatile long completeCPUTime;
         private volatile long sentBytes;
         private volatile long recvBytes;
+        private volatile long missedSlots;
+        private volatile long droppedListenerEvents;
+        private volatile long thinkTime;
 
         /**
          * @return the Instant of the load generation {@link LoadGenerator.BeginListener begin event}
@@ -385,6 +511,77 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return histogram;
         }
 
+        /**
+         * <p>Returns the response time histogram corrected for coordinated omission.</p>
+         * <p>The corrected response time is the time between the request
+         * {@link Resource.Info#getIntendedRequestTime() was intended to be sent},
+         * to the time the response is fully received, in nanoseconds.</p>
+         * <p>Differently from {@link #getResponseTimeHistogram()}, this histogram
+         * includes the delays accumulated by the load generator when it could not
+         * send requests at the configured rate.</p>
+         * <p>Warmup requests are not recorded.</p>
+         *
+         * @return the corrected response time histogram
+         */
+        public Histogram getCorrectedResponseTimeHistogram() {
+            return correctedHistogram;
+        }
+
+        /**
+         * <p>Returns the histogram of the time between the intended send time
+         * of resource trees and the time they were actually sent, in ns.</p>
+         * <p>Large send lags indicate that the load generator itself is the bottleneck.</p>
+         *
+         * @return the send lag histogram
+         * @see LoadGenerator#getSendLagHistogram()
+         */
+        public Histogram getSendLagHistogram() {
+            return sendLagHistogram;
+        }
+
+        /**
+         * <p>Returns the histogram of the time requests waited to be sent,
+         * in ns, because their resource tree had the max number of
+         * concurrent requests in progress.</p>
+         * <p>Only the requests that waited are recorded; the histogram
+         * is empty if the tree concurrency is not limited.</p>
+         *
+         * @return the queue delay histogram
+         * @see LoadGenerator.Builder#treeConcurrency(int)
+         * @see Resource.Info#getQueueDelay()
+         */
+        public Histogram getQueueDelayHistogram() {
+            return queueDelayHistogram;
+        }
+
+        /**
+         * <p>Returns the verdict about the saturation of the load generator,
+         * when a {@link SaturationDetector} is a bean of the load generator.</p>
+         *
+         * @return the saturation verdict, or null if no saturation detector is configured
+         */
+        public SaturationDetector.Verdict getSaturationVerdict() {
+            return saturationVerdict;
+        }
+
+        /**
+         * <p>Returns the per-stage reports when a {@link LoadProfile} is configured.</p>
+         *
+         * @return the per-stage reports, or an empty list if no load profile is configured
+         */
+        public List<Stage> getStages() {
+            return stages;
+        }
+
+        /**
+         * <p>Returns the per-scenario reports when a mix of {@link org.mortbay.jetty.load.generator.Scenario scenarios} is configured.</p>
+         *
+         * @return the per-scenario reports, or an empty list if no scenarios are configured
+         */
+        public List<Scenario> getScenarios() {
+            return scenarios;
+        }
+
         /**
          * @return the request rate, in requests/s
          */
@@ -399,6 +596,32 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return nanoRate(getResponseTimeHistogram().getTotalCount(), getRecordingNanos());
         }
 
+        /**
+         * <p>Returns the effective throughput, in resource trees/s.</p>
+         * <p>In the {@link LoadGenerator.Builder#closedModel(boolean) closed model},
+         * the throughput is not configured, but depends on response times and think
+         * times.</p>
+         *
+         * @return the rate of completed resource trees, in resource trees/s
+         */
+        public double getResourceTreeRate() {
+            return nanoRate(resourceTrees.longValue(), getRecordingNanos());
+        }
+
+        /**
+         * <p>Returns the think time overhead in the
+         * {@link LoadGenerator.Builder#closedModel(boolean) closed model}.</p>
+         * <p>This is the percentage of time that users spent thinking,
+         * rather than waiting for resource trees to complete.</p>
+         *
+         * @return the percentage of user time spent thinking, or zero in the open model
+         */
+        public double getThinkTimePercent() {
+            long thinkTime = this.thinkTime;
+            long userTime = thinkTime + resourceTreeTime.longValue();
+            return userTime == 0 ? 0 : 100D * thinkTime / userTime;
+        }
+
         /**
          * @return the rate of bytes sent, in bytes/s
          */
@@ -448,6 +671,22 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return responses5xx.longValue();
         }
 
+        /**
+         * @return the number of send slots missed by the load generator
+         * @see LoadGenerator#getMissedSlots()
+         */
+        public long getMissedSlots() {
+            return missedSlots;
+        }
+
+        /**
+         * @return the number of resource events dropped by the asynchronous dispatch of resource events
+         * @see LoadGenerator#getDroppedListenerEvents()
+         */
+        public long getDroppedListenerEvents() {
+            return droppedListenerEvents;
+        }
+
         /**
          * @return the number of failures
          */
@@ -487,24 +726,189 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             out.add("averageCPUPercent", getAverageCPUPercent());
             out.add("requestRate", getRequestRate());
             out.add("responseRate", getResponseRate());
+            out.add("resourceTreeRate", getResourceTreeRate());
+            out.add("thinkTimePercent", getThinkTimePercent());
             out.add("sentBytesRate", getSentBytesRate());
             out.add("receivedBytesRate", getReceivedBytesRate());
+            out.add("missedSlots", getMissedSlots());
+            out.add("droppedListenerEvents", getDroppedListenerEvents());
+            SaturationDetector.Verdict saturationVerdict = getSaturationVerdict();
+            if (saturationVerdict != null) {
+                out.add("saturation", saturationVerdict);
+            }
             out.add("failures", getFailures());
             out.add("1xx", getResponses1xx());
             out.add("2xx", getResponses2xx());
             out.add("3xx", getResponses3xx());
             out.add("4xx", getResponses4xx());
             out.add("5xx", getResponses5xx());
+            List<Stage> stages = getStages();
+            if (!stages.isEmpty()) {
+                out.add("stages", stages);
+            }
+            List<Scenario> scenarios = getScenarios();
+            if (!scenarios.isEmpty()) {
+                out.add("scenarios", scenarios);
+            }
+            out.add("histogram", toLog(getResponseTimeHistogram()));
+            out.add("correctedHistogram", toLog(getCorrectedResponseTimeHistogram()));
+            out.add("sendLagHistogram", toLog(getSendLagHistogram()));
+            out.add("queueDelayHistogram", toLog(getQueueDelayHistogram()));
+        }
+
+        private static String toLog(Histogram histogram) {
             ByteArrayOutputStream histogramOutput = new ByteArrayOutputStream();
             HistogramLogWriter hw = new HistogramLogWriter(histogramOutput);
-            hw.outputIntervalHistogram(getResponseTimeHistogram());
+            hw.outputIntervalHistogram(histogram);
             hw.close();
-            out.add("histogram", histogramOutput.toString(StandardCharsets.UTF_8));
+            return histogramOutput.toString(StandardCharsets.UTF_8);
         }
 
         @Override
         public void fromJSON(Map<String, Object> map) {
             throw new UnsupportedOperationException();
         }
+
+        /**
+         * <p>The report of a {@link LoadProfile.Stage load profile stage}.</p>
+         */
+        public static class Stage implements JSON.Convertible {
+            private final LoadProfile.Stage stage;
+            private final double nominalSends;
+            private final long sends;
+
+            private Stage(LoadProfile.Stage stage, double nominalSends, long sends) {
+                this.stage = stage;
+                this.nominalSends = nominalSends;
+                this.sends = sends;
+            }
+
+            /**
+             * @return the load profile stage
+             */
+            public LoadProfile.Stage getStage() {
+                return stage;
+            }
+
+            /**
+             * @return the number of resource trees sent during the stage
+             */
+            public long getSends() {
+                return sends;
+            }
+
+            /**
+             * @return the nominal resource tree rate of the stage, in resource trees/s
+             */
+            public double getNominalRate() {
+                return nanoRate(nominalSends, stage.getDuration());
+            }
+
+            /**
+             * @return the resource tree rate achieved during the stage, in resource trees/s
+             */
+            public double getRate() {
+                return nanoRate(getSends(), stage.getDuration());
+            }
+
+            @Override
+            public void toJSON(JSON.Output out) {
+                out.add("stage", getStage());
+                out.add("sends", getSends());
+                out.add("nominalRate", getNominalRate());
+                out.add("rate", getRate());
+            }
+
+            @Override
+            public void fromJSON(Map<String, Object> map) {
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        /**
+         * <p>The report of a {@link org.mortbay.jetty.load.generator.Scenario scenario}.</p>
+         */
+        public static class Scenario implements JSON.Convertible {
+            private final String name;
+            private final double weight;
+            private final long responses;
+            private final long failures;
+            private final Histogram resourceTreeTimeHistogram;
+            private final double resourceTreeRate;
+
+            private Scenario(String name, double weight, long responses, long failures, Histogram resourceTreeTimeHistogram, double resourceTreeRate) {
+                this.name = name;
+                this.weight = weight;
+                this.responses = responses;
+                this.failures = failures;
+                this.resourceTreeTimeHistogram = resourceTreeTimeHistogram;
+                this.resourceTreeRate = resourceTreeRate;
+            }
+
+            /**
+             * @return the scenario name
+             */
+            public String getName() {
+                return name;
+            }
+
+            /**
+             * @return the scenario weight
+             */
+            public double getWeight() {
+                return weight;
+            }
+
+            /**
+             * @return the number of resource trees of the scenario
+             */
+            public long getResourceTrees() {
+                return resourceTreeTimeHistogram.getTotalCount();
+            }
+
+            /**
+             * @return the number of successful responses of the scenario resources
+             */
+            public long getResponses() {
+                return responses;
+            }
+
+            /**
+             * @return the number of failed requests of the scenario resources
+             */
+            public long getFailures() {
+                return failures;
+            }
+
+            /**
+             * @return the histogram of the times to fetch the scenario resource trees, in nanoseconds
+             */
+            public Histogram getResourceTreeTimeHistogram() {
+                return resourceTreeTimeHistogram;
+            }
+
+            /**
+             * @return the rate of completed resource trees of the scenario, in resource trees/s
+             */
+            public double getResourceTreeRate() {
+                return resourceTreeRate;
+            }
+
+            @Override
+            public void toJSON(JSON.Output out) {
+                out.add("name", getName());
+                out.add("weight", getWeight());
+                out.add("resourceTrees", getResourceTrees());
+                out.add("resourceTreeRate", getResourceTreeRate());
+                out.add("responses", getResponses());
+                out.add("failures", getFailures());
+                out.add("resourceTreeTimeHistogram", toLog(getResourceTreeTimeHistogram()));
+            }
+
+            @Override
+            public void fromJSON(Map<String, Object> map) {
+                throw new UnsupportedOperationException();
+            }
+        }
     }
 }
@@ -0,0 +1,570 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A load generator listener that detects when the load generator itself is saturated,
+ * and therefore when the load it imposes on the server is not the configured one.</p>
+ * <p>Every {@link #getPeriod() period}, the detector evaluates the following signals
+ * over a sliding window made of the last {@link #getWindowPeriods() periods}:</p>
+ * <ul>
+ * <li>the 99th percentile of the {@link LoadGenerator#getSendLagHistogram() send lag}</li>
+ * <li>the number of requests queued in the users, relative to
+ * {@link LoadGenerator.Config#getMaxRequestsQueued() the max requests queued}</li>
+ * <li>the process CPU load, relative to the available processors</li>
+ * <li>the request rate, relative to the nominal request rate</li>
+ * <li>the response rate, relative to the request rate</li>
+ * </ul>
+ * <p>When a signal crosses its threshold, a {@link Saturation} event is emitted to
+ * {@link SaturationListener}s and, if configured, the load generation is
+ * {@link LoadGenerator#interrupt() interrupted}.
+ * The {@link #getVerdict() verdict} is added to the {@link ReportListener.Report report}
+ * when the detector is a bean of the load generator.</p>
+ * <p>Usage:</p>
+ * <pre>
+ * SaturationDetector detector = new SaturationDetector();
+ * LoadGenerator generator = LoadGenerator.builder()
+ *     ...
+ *     .listener(detector)
+ *     .requestListener(detector)
+ *     .resourceListener(detector)
+ *     .build();
+ * generator.addBean(detector);
+ * </pre>
+ */
+public class SaturationDetector extends ContainerLifeCycle implements LoadGenerator.ReadyListener, LoadGenerator.EndListener, Request.Listener, Resource.NodeListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaturationDetector.class);
+    private static final String QUEUED_ATTRIBUTE = SaturationDetector.class.getName() + ".queued";
+    private static final String BEGUN_ATTRIBUTE = SaturationDetector.class.getName() + ".begun";
+
+    private final AutoLock lock = new AutoLock();
+    private final List<SaturationListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final Map<Kind, Boolean> saturated = new EnumMap<>(Kind.class);
+    private final Verdict verdict = new Verdict();
+    private long period = 1000;
+    private int windowPeriods = 5;
+    private long maxSendLag = TimeUnit.MILLISECONDS.toNanos(10);
+    private double maxQueuedPercent = 50;
+    private double maxCPUPercent = 90;
+    private double minRequestRatePercent = 90;
+    private double minResponseRatePercent = 90;
+    private boolean abortOnSaturation;
+    private volatile LoadGenerator generator;
+    private volatile Scheduler scheduler;
+
+    /**
+     * @return the period of evaluation of the signals, in ms
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @param period the period of evaluation of the signals, in ms
+     */
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+    /**
+     * @return the number of periods of the sliding window over which the signals are evaluated
+     */
+    public int getWindowPeriods() {
+        return windowPeriods;
+    }
+
+    /**
+     * @param windowPeriods the number of periods of the sliding window over which the signals are evaluated
+     */
+    public void setWindowPeriods(int windowPeriods) {
+        this.windowPeriods = windowPeriods;
+    }
+
+    /**
+     * @return the max 99th percentile of the send lag, in ns
+     */
+    public long getMaxSendLag() {
+        return maxSendLag;
+    }
+
+    /**
+     * @param maxSendLag the max 99th percentile of the send lag, in ns
+     */
+    public void setMaxSendLag(long maxSendLag) {
+        this.maxSendLag = maxSendLag;
+    }
+
+    /**
+     * @return the max percentage of queued requests, relative to the max requests queued of all users
+     */
+    public double getMaxQueuedPercent() {
+        return maxQueuedPercent;
+    }
+
+    /**
+     * @param maxQueuedPercent the max percentage of queued requests, relative to the max requests queued of all users
+     */
+    public void setMaxQueuedPercent(double maxQueuedPercent) {
+        this.maxQueuedPercent = maxQueuedPercent;
+    }
+
+    /**
+     * @return the max process CPU load percentage, relative to the available processors
+     */
+    public double getMaxCPUPercent() {
+        return maxCPUPercent;
+    }
+
+    /**
+     * @param maxCPUPercent the max process CPU load percentage, relative to the available processors
+     */
+    public void setMaxCPUPercent(double maxCPUPercent) {
+        this.maxCPUPercent = maxCPUPercent;
+    }
+
+    /**
+     * @return the min request rate percentage, relative to the nominal request rate
+     */
+    public double getMinRequestRatePercent() {
+        return minRequestRatePercent;
+    }
+
+    /**
+     * @param minRequestRatePercent the min request rate percentage, relative to the nominal request rate
+     */
+    public void setMinRequestRatePercent(double minRequestRatePercent) {
+        this.minRequestRatePercent = minRequestRatePercent;
+    }
+
+    /**
+     * @return the min response rate percentage, relative to the request rate
+     */
+    public double getMinResponseRatePercent() {
+        return minResponseRatePercent;
+    }
+
+    /**
+     * @param minResponseRatePercent the min response rate percentage, relative to the request rate
+     */
+    public void setMinResponseRatePercent(double minResponseRatePercent) {
+        this.minResponseRatePercent = minResponseRatePercent;
+    }
+
+    /**
+     * @return whether the load generation is interrupted at the first saturation
+     */
+    public boolean isAbortOnSaturation() {
+        return abortOnSaturation;
+    }
+
+    /**
+     * @param abortOnSaturation whether the load generation is interrupted at the first saturation
+     */
+    public void setAbortOnSaturation(boolean abortOnSaturation) {
+        this.abortOnSaturation = abortOnSaturation;
+    }
+
+    /**
+     * @param listener the listener to add
+     */
+    public void addSaturationListener(SaturationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeSaturationListener(SaturationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the verdict about the saturation of the load generator
+     */
+    public Verdict getVerdict() {
+        try (AutoLock ignored = lock.lock()) {
+            return verdict.copy();
+        }
+    }
+
+    @Override
+    public void onReady(LoadGenerator generator) {
+        this.generator = generator;
+        Scheduler scheduler = new ScheduledExecutorScheduler("saturation-detector", true);
+        LifeCycle.start(scheduler);
+        this.scheduler = scheduler;
+        sample();
+        schedule();
+    }
+
+    @Override
+    public void onEnd(LoadGenerator generator) {
+        this.generator = null;
+        LifeCycle.stop(scheduler);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        generator = null;
+        LifeCycle.stop(scheduler);
+        super.doStop();
+    }
+
+    @Override
+    public void onQueued(Request request) {
+        request.attribute(QUEUED_ATTRIBUTE, Boolean.TRUE);
+        queued.incrementAndGet();
+    }
+
+    @Override
+    public void onBegin(Request request) {
+        request.attribute(BEGUN_ATTRIBUTE, Boolean.TRUE);
+        if (request.getAttributes().get(QUEUED_ATTRIBUTE) != null) {
+            queued.decrementAndGet();
+        }
+        requests.increment();
+    }
+
+    @Override
+    public void onFailure(Request request, Throwable failure) {
+        // Requests that are rejected because the queue is full fail without
+        // having been queued; only requests that failed while queued, for
+        // example because of a connect failure, must leave the queue.
+        Map<String, Object> attributes = request.getAttributes();
+        if (attributes.get(QUEUED_ATTRIBUTE) != null && attributes.get(BEGUN_ATTRIBUTE) == null) {
+            queued.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void onResourceNode(Resource.Info info) {
+        responses.increment();
+    }
+
+    private void schedule() {
+        if (generator != null && scheduler.isRunning()) {
+            scheduler.schedule(this::tick, getPeriod(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void tick() {
+        try {
+            sample();
+            evaluate();
+            schedule();
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while detecting saturation", x);
+        }
+    }
+
+    private void sample() {
+        LoadGenerator generator = this.generator;
+        if (generator == null) {
+            return;
+        }
+        Sample sample = new Sample(System.nanoTime(), ReportListener.getProcessCPUTime(), requests.longValue(), responses.longValue(), generator.getSendLagHistogram());
+        try (AutoLock ignored = lock.lock()) {
+            samples.offer(sample);
+            while (samples.size() > getWindowPeriods() + 1) {
+                samples.poll();
+            }
+        }
+    }
+
+    private void evaluate() {
+        LoadGenerator generator = this.generator;
+        if (generator == null) {
+            return;
+        }
+        Sample first;
+        Sample last;
+        try (AutoLock ignored = lock.lock()) {
+            // Wait for a full window, to skip the noise of the first sends.
+            if (samples.size() <= getWindowPeriods()) {
+                return;
+            }
+            first = samples.peek();
+            last = samples.peekLast();
+        }
+        double elapsed = last.time - first.time;
+        if (elapsed <= 0) {
+            return;
+        }
+        LoadGenerator.Config config = generator.getConfig();
+
+        Histogram sendLag = last.sendLag.copy();
+        sendLag.subtract(first.sendLag);
+        if (sendLag.getTotalCount() > 0) {
+            check(generator, Kind.SEND_LAG, sendLag.getValueAtPercentile(99), maxSendLag, true);
+        }
+
+        long users = (long)config.getThreads() * generator.getUsersPerThread();
+        double maxQueued = (double)users * config.getMaxRequestsQueued();
+        check(generator, Kind.QUEUED_REQUESTS, 100D * queued.get() / maxQueued, getMaxQueuedPercent(), true);
+
+        if (first.cpuTime > 0) {
+            double cpuPercent = 100D * (last.cpuTime - first.cpuTime) / (elapsed * Runtime.getRuntime().availableProcessors());
+            check(generator, Kind.CPU, cpuPercent, getMaxCPUPercent(), true);
+        }
+
+        long windowRequests = last.requests - first.requests;
+        int rate = generator.getResourceRate();
+        if (!config.isClosedModel() && config.getLoadProfile() == null && rate > 0) {
+            double nominalRequests = (double)rate * config.getMeanResourceCount() * elapsed / TimeUnit.SECONDS.toNanos(1);
+            check(generator, Kind.REQUEST_RATE, 100D * windowRequests / nominalRequests, getMinRequestRatePercent(), false);
+        }
+
+        if (windowRequests > 0) {
+            long windowResponses = last.responses - first.responses;
+            check(generator, Kind.RESPONSE_RATE, 100D * windowResponses / windowRequests, getMinResponseRatePercent(), false);
+        }
+    }
+
+    private void check(LoadGenerator generator, Kind kind, double value, double threshold, boolean max) {
+        boolean saturation = max ? value > threshold : value < threshold;
+        boolean notify;
+        try (AutoLock ignored = lock.lock()) {
+            boolean wasSaturated = saturated.getOrDefault(kind, false);
+            saturated.put(kind, saturation);
+            if (saturation) {
+                verdict.record(kind, value, max);
+            }
+            notify = saturation && !wasSaturated;
+        }
+        if (notify) {
+            Saturation event = new Saturation(kind, Instant.now(), value, threshold);
+            LOGGER.warn("load generator saturated: {}", event);
+            listeners.forEach(listener -> notifySaturation(listener, generator, event));
+            if (isAbortOnSaturation()) {
+                generator.interrupt();
+            }
+        }
+    }
+
+    private void notifySaturation(SaturationListener listener, LoadGenerator generator, Saturation saturation) {
+        try {
+            listener.onSaturation(generator, saturation);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
+    /**
+     * <p>The signals of the load generator saturation.</p>
+     */
+    public enum Kind {
+        /**
+         * <p>The 99th percentile of the send lag is above the threshold.</p>
+         */
+        SEND_LAG,
+        /**
+         * <p>The percentage of queued requests is above the threshold.</p>
+         */
+        QUEUED_REQUESTS,
+        /**
+         * <p>The process CPU load is above the threshold.</p>
+         */
+        CPU,
+        /**
+         * <p>The request rate, relative to the nominal request rate, is below the threshold.</p>
+         */
+        REQUEST_RATE,
+        /**
+         * <p>The response rate, relative to the request rate, is below the threshold.</p>
+         */
+        RESPONSE_RATE
+    }
+
+    /**
+     * <p>A saturation event, emitted when a signal crosses its threshold.</p>
+     */
+    public static class Saturation implements JSON.Convertible {
+        private final Kind kind;
+        private final Instant instant;
+        private final double value;
+        private final double threshold;
+
+        private Saturation(Kind kind, Instant instant, double value, double threshold) {
+            this.kind = kind;
+            this.instant = instant;
+            this.value = value;
+            this.threshold = threshold;
+        }
+
+        /**
+         * @return the saturation signal
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the Instant the signal crossed its threshold
+         */
+        public Instant getInstant() {
+            return instant;
+        }
+
+        /**
+         * @return the value of the signal
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * @return the threshold of the signal
+         */
+        public double getThreshold() {
+            return threshold;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("kind", getKind().name());
+            out.add("instant", getInstant().atZone(ZoneOffset.UTC).toString());
+            out.add("value", getValue());
+            out.add("threshold", getThreshold());
+        }
+
+        @Override
+        public void fromJSON(Map<String, Object> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[%s,value=%.3f,threshold=%.3f]",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    getKind(),
+                    getValue(),
+                    getThreshold());
+        }
+    }
+
+    /**
+     * <p>The verdict about the saturation of the load generator.</p>
+     */
+    public static class Verdict implements JSON.Convertible {
+        private final Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+        private final Map<Kind, Double> worstValues = new EnumMap<>(Kind.class);
+
+        private void record(Kind kind, double value, boolean max) {
+            counts.merge(kind, 1L, Long::sum);
+            worstValues.merge(kind, value, max ? Math::max : Math::min);
+        }
+
+        private Verdict copy() {
+            Verdict result = new Verdict();
+            result.counts.putAll(counts);
+            result.worstValues.putAll(worstValues);
+            return result;
+        }
+
+        /**
+         * @return whether the load generator was saturated at least once
+         */
+        public boolean isSaturated() {
+            return !counts.isEmpty();
+        }
+
+        /**
+         * @return the signals that crossed their thresholds
+         */
+        public List<Kind> getKinds() {
+            return new ArrayList<>(counts.keySet());
+        }
+
+        /**
+         * @param kind the saturation signal
+         * @return the number of evaluations where the signal crossed its threshold
+         */
+        public long getCount(Kind kind) {
+            return counts.getOrDefault(kind, 0L);
+        }
+
+        /**
+         * @param kind the saturation signal
+         * @return the worst value of the signal when it crossed its threshold, or {@code NaN}
+         */
+        public double getWorstValue(Kind kind) {
+            return worstValues.getOrDefault(kind, Double.NaN);
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("saturated", isSaturated());
+            for (Kind kind : counts.keySet()) {
+                out.add(kind.name(), Map.of("count", getCount(kind), "worstValue", getWorstValue(kind)));
+            }
+        }
+
+        @Override
+        public void fromJSON(Map<String, Object> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[saturated=%b,%s]", getClass().getSimpleName(), hashCode(), isSaturated(), counts);
+        }
+    }
+
+    private static class Sample {
+        private final long time;
+        private final long cpuTime;
+        private final long requests;
+        private final long responses;
+        private final Histogram sendLag;
+
+        private Sample(long time, long cpuTime, long requests, long responses, Histogram sendLag) {
+            this.time = time;
+            this.cpuTime = cpuTime;
+            this.requests = requests;
+            this.responses = responses;
+            this.sendLag = sendLag;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.util.EventListener;
+
+import org.mortbay.jetty.load.generator.LoadGenerator;
+
+/**
+ * <p>A listener for load generator saturation events, emitted by {@link SaturationDetector}.</p>
+ */
+public interface SaturationListener extends EventListener {
+    /**
+     * <p>Callback method invoked when a saturation signal crosses its threshold.</p>
+     *
+     * @param generator the load generator
+     * @param saturation the saturation signal
+     */
+    void onSaturation(LoadGenerator generator, SaturationDetector.Saturation saturation);
+}
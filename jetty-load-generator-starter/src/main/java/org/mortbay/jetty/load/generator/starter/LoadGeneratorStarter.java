@@ -23,6 +23,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +36,7 @@ import org.eclipse.jetty.toolchain.perf.HistogramSnapshot;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.SaturationDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,13 +54,35 @@ public class LoadGeneratorStarter {
         if (starterArgs == null) {
             return;
         }
+        if (starterArgs.isSaturationSearch()) {
+            SaturationSearch.Result result = new SaturationSearch(starterArgs).search();
+            String json = new JSON().toJSON(result);
+            LOGGER.info("saturation search max resource rate: {}", result.getMaxRate());
+            LOGGER.info("saturation search result: {}", json);
+            String statsFile = starterArgs.getStatsFile();
+            if (statsFile != null) {
+                Files.writeString(Path.of(statsFile), json);
+                LOGGER.info("saturation search result saved to: {}", statsFile);
+            }
+            return;
+        }
         LoadGenerator.Builder builder = configure(starterArgs);
         ReportListener listener = new ReportListener();
-        LoadGenerator generator = builder
-                .listener(listener)
-                .resourceListener(listener)
-                .build();
+        builder.listener(listener)
+                .resourceListener(listener);
+        SaturationDetector detector = null;
+        if (starterArgs.isDetectSaturation() || starterArgs.isAbortOnSaturation()) {
+            detector = new SaturationDetector();
+            detector.setAbortOnSaturation(starterArgs.isAbortOnSaturation());
+            builder.listener(detector)
+                    .requestListener(detector)
+                    .resourceListener(detector);
+        }
+        LoadGenerator generator = builder.build();
         generator.addBean(listener);
+        if (detector != null) {
+            generator.addBean(detector);
+        }
         if (starterArgs.isJMX()) {
             MBeanContainer mbeanContainer = new MBeanContainer(ManagementFactory.getPlatformMBeanServer());
             generator.addBean(mbeanContainer);
@@ -124,13 +148,27 @@ public class LoadGeneratorStarter {
             return builder
                     .threads(starterArgs.getThreads())
                     .warmupIterationsPerThread(starterArgs.getWarmupIterations())
+                    .warmupFor(starterArgs.getWarmupTime(), TimeUnit.SECONDS)
+                    .adaptiveWarmup(starterArgs.isAdaptiveWarmup())
                     .iterationsPerThread(starterArgs.getIterations())
                     .runFor(starterArgs.getRunningTime(), starterArgs.getRunningTimeUnit())
                     .usersPerThread(starterArgs.getUsersPerThread())
                     .channelsPerUser(starterArgs.getChannelsPerUser())
+                    .treeConcurrency(starterArgs.getTreeConcurrency())
                     .resource(starterArgs.getResource(builder))
                     .resourceRate(starterArgs.getResourceRate())
                     .rateRampUpPeriod(starterArgs.getRateRampUpPeriod())
+                    .arrivalProcess(starterArgs.getArrivalProcess())
+                    .loadProfile(starterArgs.getLoadProfile())
+                    .sharedPacing(starterArgs.isSharedPacing())
+                    .virtualThreads(starterArgs.isVirtualThreads())
+                    .closedModel(starterArgs.isClosedModel())
+                    .thinkTime(starterArgs.getThinkTime(), TimeUnit.MILLISECONDS)
+                    .thinkTimeProcess(starterArgs.getThinkTimeProcess())
+                    .sleepStrategy(starterArgs.getSleepStrategy())
+                    .virtualUsersPerThread(starterArgs.getVirtualUsersPerThread())
+                    .userSelection(starterArgs.getUserSelection())
+                    .stickyUsers(starterArgs.isStickyUsers())
                     .scheme(starterArgs.getScheme())
                     .host(starterArgs.getHost())
                     .port(starterArgs.getPort())
@@ -138,6 +176,11 @@ public class LoadGeneratorStarter {
                     .sslContextFactory(starterArgs.getSslContextFactory())
                     .maxRequestsQueued(starterArgs.getMaxRequestsQueued())
                     .connectBlocking(starterArgs.isConnectBlocking())
+                    .sharedConnector(starterArgs.isSharedConnector())
+                    .recycleInfos(starterArgs.isRecycleInfos())
+                    .listenerQueueSize(starterArgs.getListenerQueueSize())
+                    .listenerThreads(starterArgs.getListenerThreads())
+                    .listenerOverflow(starterArgs.getListenerOverflow())
                     .connectTimeout(starterArgs.getConnectTimeout())
                     .idleTimeout(starterArgs.getIdleTimeout())
                     .executor(starterArgs.getExecutor())
@@ -174,8 +217,12 @@ public class LoadGeneratorStarter {
         LOGGER.info("-------------  Load Generator Report  --------------");
         LOGGER.info("----------------------------------------------------");
         LOGGER.info("{}://{}:{} over {}", config.getScheme(), config.getHost(), config.getPort(), config.getHttpClientTransportBuilder().getType());
-        int resourceCount = config.getResource().descendantCount();
-        LOGGER.info("resource tree     : {} resource(s)", resourceCount);
+        double resourceCount = config.getMeanResourceCount();
+        if (config.getScenarios().isEmpty()) {
+            LOGGER.info("resource tree     : {} resource(s)", config.getResource().descendantCount());
+        } else {
+            LOGGER.info("resource trees    : {} scenario(s)", config.getScenarios().size());
+        }
         Instant beginInstant = report.getBeginInstant();
         LOGGER.info("begin date time   : {}", dateTimeFormatter.format(beginInstant));
         Instant completeInstant = report.getCompleteInstant();
@@ -187,11 +234,63 @@ public class LoadGeneratorStarter {
             LOGGER.info("histogram:");
             Arrays.stream(snapshot.toString().split(System.lineSeparator())).forEach(line -> LOGGER.info("{}", line));
             LOGGER.info("");
+            Histogram correctedResponseTimes = report.getCorrectedResponseTimeHistogram();
+            HistogramSnapshot correctedSnapshot = new HistogramSnapshot(correctedResponseTimes, 20, "corrected response times", "ms", TimeUnit.NANOSECONDS::toMillis);
+            LOGGER.info("corrected histogram:");
+            Arrays.stream(correctedSnapshot.toString().split(System.lineSeparator())).forEach(line -> LOGGER.info("{}", line));
+            LOGGER.info("");
         }
         double resourceRate = config.getResourceRate();
-        LOGGER.info("nominal resource rate (resources/s): {}", String.format("%.3f", resourceRate));
+        if (config.isClosedModel()) {
+            LOGGER.info("closed model think time (ms)       : {}", config.getThinkTime());
+            LOGGER.info("think time overhead (%)            : {}", String.format("%.3f", report.getThinkTimePercent()));
+        } else {
+            LOGGER.info("nominal resource rate (resources/s): {}", String.format("%.3f", resourceRate));
+        }
+        LOGGER.info("resource tree rate (resources/s)   : {}", String.format("%.3f", report.getResourceTreeRate()));
         LOGGER.info("nominal request rate (requests/s)  : {}", String.format("%.3f", resourceRate * resourceCount));
         LOGGER.info("request rate (requests/s)          : {}", String.format("%.3f", report.getRequestRate()));
+        LOGGER.info("missed send slots                  : {}", report.getMissedSlots());
+        if (config.getListenerQueueSize() > 0) {
+            LOGGER.info("dropped listener events            : {}", report.getDroppedListenerEvents());
+        }
+        SaturationDetector.Verdict saturation = report.getSaturationVerdict();
+        if (saturation != null) {
+            LOGGER.info("load generator saturated           : {} {}", saturation.isSaturated(), saturation.getKinds());
+        }
+        Histogram sendLag = report.getSendLagHistogram();
+        if (sendLag.getTotalCount() > 0) {
+            LOGGER.info("send lag p50/p99/max (us)          : {}/{}/{}",
+                    TimeUnit.NANOSECONDS.toMicros(sendLag.getValueAtPercentile(50)),
+                    TimeUnit.NANOSECONDS.toMicros(sendLag.getValueAtPercentile(99)),
+                    TimeUnit.NANOSECONDS.toMicros(sendLag.getMaxValue()));
+        }
+        Histogram queueDelay = report.getQueueDelayHistogram();
+        if (queueDelay.getTotalCount() > 0) {
+            LOGGER.info("queue delay p50/p99/max (us)       : {}/{}/{}",
+                    TimeUnit.NANOSECONDS.toMicros(queueDelay.getValueAtPercentile(50)),
+                    TimeUnit.NANOSECONDS.toMicros(queueDelay.getValueAtPercentile(99)),
+                    TimeUnit.NANOSECONDS.toMicros(queueDelay.getMaxValue()));
+        }
+        List<ReportListener.Report.Stage> stages = report.getStages();
+        for (int i = 0; i < stages.size(); ++i) {
+            ReportListener.Report.Stage stage = stages.get(i);
+            LOGGER.info("stage {} {} resource rate (nominal/achieved): {}/{}",
+                    i,
+                    stage.getStage().getType(),
+                    String.format("%.3f", stage.getNominalRate()),
+                    String.format("%.3f", stage.getRate()));
+        }
+        for (ReportListener.Report.Scenario scenario : report.getScenarios()) {
+            Histogram treeTimes = scenario.getResourceTreeTimeHistogram();
+            LOGGER.info("scenario {} resource trees/rate/tree time p50/p99 (ms)/failures: {}/{}/{}/{}/{}",
+                    scenario.getName(),
+                    scenario.getResourceTrees(),
+                    String.format("%.3f", scenario.getResourceTreeRate()),
+                    TimeUnit.NANOSECONDS.toMillis(treeTimes.getValueAtPercentile(50)),
+                    TimeUnit.NANOSECONDS.toMillis(treeTimes.getValueAtPercentile(99)),
+                    scenario.getFailures());
+        }
         LOGGER.info("response rate (responses/s)        : {}", String.format("%.3f", report.getResponseRate()));
         LOGGER.info("send rate (bytes/s)                : {}", String.format("%.3f", report.getSentBytesRate()));
         LOGGER.info("receive rate (bytes/s)             : {}", String.format("%.3f", report.getReceivedBytesRate()));
@@ -36,11 +36,19 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.xml.XmlConfiguration;
+import org.mortbay.jetty.load.generator.ArrivalProcess;
+import org.mortbay.jetty.load.generator.ConstantArrivalProcess;
 import org.mortbay.jetty.load.generator.HTTP1ClientTransportBuilder;
 import org.mortbay.jetty.load.generator.HTTP2ClientTransportBuilder;
 import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
+import org.mortbay.jetty.load.generator.ListenerOverflow;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.LoadProfile;
+import org.mortbay.jetty.load.generator.PoissonArrivalProcess;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.SleepStrategy;
+import org.mortbay.jetty.load.generator.UniformArrivalProcess;
+import org.mortbay.jetty.load.generator.UserSelection;
 
 public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--threads", "-t"}, description = "Number of sender threads")
@@ -49,6 +57,12 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--warmup-iterations", "-wi"}, description = "Number of warmup iterations per sender thread")
     private int warmupIterations;
 
+    @Parameter(names = {"--warmup-time", "-wt"}, description = "Warmup time in seconds, or max warmup time with adaptive warmup")
+    private long warmupTime;
+
+    @Parameter(names = {"--adaptive-warmup", "-aw"}, description = "Whether the warmup ends when response times stabilize")
+    private boolean adaptiveWarmup;
+
     @Parameter(names = {"--iterations", "-i"}, description = "Number of iterations per sender thread")
     private int iterations = 1;
 
@@ -64,6 +78,9 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--channels-per-user", "-cpu"}, description = "Number of concurrent connections/streams per user")
     private int channelsPerUser = 128;
 
+    @Parameter(names = {"--tree-concurrency", "-tc"}, description = "Max number of concurrent requests per resource tree, or 0 for unlimited (6 emulates HTTP/1.1 browsers)")
+    private int treeConcurrency;
+
     @Parameter(names = {"--resource-xml-path", "-rxp"}, description = "Path to resource XML file")
     private String resourceXMLPath;
 
@@ -79,6 +96,60 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--rate-ramp-up", "-rru"}, description = "Rate ramp-up period, in seconds")
     private long rateRampUpPeriod = 0;
 
+    @Parameter(names = {"--arrivals", "-a"}, description = "Arrival process of resource trees (constant, poisson, uniform)")
+    private String arrivals = "constant";
+
+    @Parameter(names = {"--arrivals-seed", "-as"}, description = "Random seed for the poisson and uniform arrival processes")
+    private Long arrivalsSeed;
+
+    @Parameter(names = {"--load-profile", "-lp"}, description = "Load profile stages, overriding resource rate and running time, as comma-separated type:duration:rate[:amplitude:period], for example ramp:60s:100,hold:5m:100,sine:1h:100:50:10m")
+    private String loadProfileSpec;
+
+    @Parameter(names = {"--shared-pacing", "-sp"}, description = "Whether sender threads share the pacing of sends, to keep the resource rate when a sender thread stalls")
+    private boolean sharedPacing;
+
+    @Parameter(names = {"--virtual-threads", "-vt"}, description = "Whether each user has its own sender loop in a virtual thread (requires Java 21+)")
+    private boolean virtualThreads;
+
+    @Parameter(names = {"--closed-model", "-cm"}, description = "Whether users send the next resource tree only after the previous completed and they thought for the think time, ignoring the resource rate")
+    private boolean closedModel;
+
+    @Parameter(names = {"--think-time", "-tt"}, description = "Average think time of closed model users and virtual users, in milliseconds")
+    private long thinkTime;
+
+    @Parameter(names = {"--think-time-distribution", "-ttd"}, description = "Distribution of think times (constant, poisson, uniform)")
+    private String thinkTimeDistribution = "constant";
+
+    @Parameter(names = {"--think-time-seed", "-tts"}, description = "Random seed for the poisson and uniform think time distributions")
+    private Long thinkTimeSeed;
+
+    @Parameter(names = {"--sleep-strategy", "-sls"}, description = "How sender threads wait for the next send, one of PARK, SPIN_PARK, YIELD_SPIN")
+    private SleepStrategy sleepStrategy = SleepStrategy.PARK;
+
+    @Parameter(names = {"--virtual-users-per-thread", "-vupt"}, description = "Number of virtual users per sender thread, multiplexed over the users")
+    private int virtualUsersPerThread;
+
+    @Parameter(names = {"--user-selection", "-us"}, description = "How virtual users are selected, one of ROUND_ROBIN, RANDOM, ZIPFIAN")
+    private UserSelection userSelection = UserSelection.ROUND_ROBIN;
+
+    @Parameter(names = {"--sticky-users", "-su"}, description = "Whether each virtual user always sends with the same user")
+    private boolean stickyUsers;
+
+    @Parameter(names = {"--saturation-search", "-ss"}, description = "Whether to search the max resource rate that meets the saturation p99 and failure targets, with a probe run per rate")
+    private boolean saturationSearch;
+
+    @Parameter(names = {"--saturation-p99", "-sp99"}, description = "Saturation search target for the p99 response time, in milliseconds")
+    private long saturationP99 = 1000;
+
+    @Parameter(names = {"--saturation-failures", "-sfp"}, description = "Saturation search target for the max percentage of failed requests")
+    private double saturationFailures = 1;
+
+    @Parameter(names = {"--saturation-tolerance", "-st"}, description = "Saturation search tolerance, as a percentage of the max resource rate")
+    private double saturationTolerance = 5;
+
+    @Parameter(names = {"--saturation-max-probes", "-smp"}, description = "Saturation search max number of probe runs")
+    private int saturationMaxProbes = 16;
+
     @Parameter(names = {"--scheme", "-s"}, description = "Target scheme (http/https)")
     private String scheme = "http";
 
@@ -100,6 +171,21 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--connect-blocking", "-cb"}, description = "Whether TCP connect is blocking")
     private boolean connectBlocking = true;
 
+    @Parameter(names = {"--shared-connector", "-shc"}, description = "Whether all users share the same selectors, buffer pool and scheduler")
+    private boolean sharedConnector;
+
+    @Parameter(names = {"--recycle-infos", "-rci"}, description = "Whether resource Info objects are recycled, to reduce allocations")
+    private boolean recycleInfos;
+
+    @Parameter(names = {"--listener-queue-size", "-lqs"}, description = "Capacity of the ring buffer of resource events, or 0 to notify resource listeners synchronously")
+    private int listenerQueueSize;
+
+    @Parameter(names = {"--listener-threads", "-lt"}, description = "Number of threads that notify resource listeners asynchronously")
+    private int listenerThreads = 1;
+
+    @Parameter(names = {"--listener-overflow", "-lo"}, description = "What to do with resource events when the ring buffer is full, one of BLOCK, DROP, SAMPLE")
+    private ListenerOverflow listenerOverflow = ListenerOverflow.BLOCK;
+
     @Parameter(names = {"--connect-timeout", "-ct"}, description = "TCP connect timeout, in milliseconds")
     private long connectTimeout = 5000;
 
@@ -112,6 +198,12 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--display-stats", "-ds"}, description = "Whether to display statistics in the terminal")
     private boolean displayStats;
 
+    @Parameter(names = {"--detect-saturation"}, description = "Whether to warn when the load generator itself is saturated")
+    private boolean detectSaturation;
+
+    @Parameter(names = {"--abort-on-saturation"}, description = "Whether to abort the load generation when the load generator itself is saturated")
+    private boolean abortOnSaturation;
+
     @Parameter(names = {"--jmx"}, description = "Exports load generator components to the JVM platform MBeanServer as MBeans")
     private boolean jmx;
 
@@ -142,6 +234,22 @@ public class LoadGeneratorStarterArgs {
         this.warmupIterations = warmupIterations;
     }
 
+    public long getWarmupTime() {
+        return warmupTime;
+    }
+
+    public void setWarmupTime(long warmupTime) {
+        this.warmupTime = warmupTime;
+    }
+
+    public boolean isAdaptiveWarmup() {
+        return adaptiveWarmup;
+    }
+
+    public void setAdaptiveWarmup(boolean adaptiveWarmup) {
+        this.adaptiveWarmup = adaptiveWarmup;
+    }
+
     public int getIterations() {
         return iterations;
     }
@@ -201,6 +309,14 @@ public class LoadGeneratorStarterArgs {
         this.channelsPerUser = channelsPerUser;
     }
 
+    public int getTreeConcurrency() {
+        return treeConcurrency;
+    }
+
+    public void setTreeConcurrency(int treeConcurrency) {
+        this.treeConcurrency = treeConcurrency;
+    }
+
     public String getResourceXMLPath() {
         return resourceXMLPath;
     }
@@ -241,6 +357,150 @@ public class LoadGeneratorStarterArgs {
         this.rateRampUpPeriod = rateRampUpPeriod;
     }
 
+    public String getArrivals() {
+        return arrivals;
+    }
+
+    public void setArrivals(String arrivals) {
+        this.arrivals = checkArrivalProcess(arrivals);
+    }
+
+    public Long getArrivalsSeed() {
+        return arrivalsSeed;
+    }
+
+    public void setArrivalsSeed(Long arrivalsSeed) {
+        this.arrivalsSeed = arrivalsSeed;
+    }
+
+    public String getLoadProfileSpec() {
+        return loadProfileSpec;
+    }
+
+    public void setLoadProfileSpec(String loadProfileSpec) {
+        this.loadProfileSpec = loadProfileSpec;
+    }
+
+    public boolean isSharedPacing() {
+        return sharedPacing;
+    }
+
+    public void setSharedPacing(boolean sharedPacing) {
+        this.sharedPacing = sharedPacing;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isClosedModel() {
+        return closedModel;
+    }
+
+    public void setClosedModel(boolean closedModel) {
+        this.closedModel = closedModel;
+    }
+
+    public long getThinkTime() {
+        return thinkTime;
+    }
+
+    public void setThinkTime(long thinkTime) {
+        this.thinkTime = thinkTime;
+    }
+
+    public String getThinkTimeDistribution() {
+        return thinkTimeDistribution;
+    }
+
+    public void setThinkTimeDistribution(String thinkTimeDistribution) {
+        this.thinkTimeDistribution = checkArrivalProcess(thinkTimeDistribution);
+    }
+
+    public Long getThinkTimeSeed() {
+        return thinkTimeSeed;
+    }
+
+    public void setThinkTimeSeed(Long thinkTimeSeed) {
+        this.thinkTimeSeed = thinkTimeSeed;
+    }
+
+    public SleepStrategy getSleepStrategy() {
+        return sleepStrategy;
+    }
+
+    public void setSleepStrategy(SleepStrategy sleepStrategy) {
+        this.sleepStrategy = sleepStrategy;
+    }
+
+    public int getVirtualUsersPerThread() {
+        return virtualUsersPerThread;
+    }
+
+    public void setVirtualUsersPerThread(int virtualUsersPerThread) {
+        this.virtualUsersPerThread = virtualUsersPerThread;
+    }
+
+    public UserSelection getUserSelection() {
+        return userSelection;
+    }
+
+    public void setUserSelection(UserSelection userSelection) {
+        this.userSelection = userSelection;
+    }
+
+    public boolean isStickyUsers() {
+        return stickyUsers;
+    }
+
+    public void setStickyUsers(boolean stickyUsers) {
+        this.stickyUsers = stickyUsers;
+    }
+
+    public boolean isSaturationSearch() {
+        return saturationSearch;
+    }
+
+    public void setSaturationSearch(boolean saturationSearch) {
+        this.saturationSearch = saturationSearch;
+    }
+
+    public long getSaturationP99() {
+        return saturationP99;
+    }
+
+    public void setSaturationP99(long saturationP99) {
+        this.saturationP99 = saturationP99;
+    }
+
+    public double getSaturationFailures() {
+        return saturationFailures;
+    }
+
+    public void setSaturationFailures(double saturationFailures) {
+        this.saturationFailures = saturationFailures;
+    }
+
+    public double getSaturationTolerance() {
+        return saturationTolerance;
+    }
+
+    public void setSaturationTolerance(double saturationTolerance) {
+        this.saturationTolerance = saturationTolerance;
+    }
+
+    public int getSaturationMaxProbes() {
+        return saturationMaxProbes;
+    }
+
+    public void setSaturationMaxProbes(int saturationMaxProbes) {
+        this.saturationMaxProbes = saturationMaxProbes;
+    }
+
     public String getScheme() {
         return scheme;
     }
@@ -307,6 +567,46 @@ public class LoadGeneratorStarterArgs {
         this.connectBlocking = connectBlocking;
     }
 
+    public boolean isSharedConnector() {
+        return sharedConnector;
+    }
+
+    public void setSharedConnector(boolean sharedConnector) {
+        this.sharedConnector = sharedConnector;
+    }
+
+    public boolean isRecycleInfos() {
+        return recycleInfos;
+    }
+
+    public void setRecycleInfos(boolean recycleInfos) {
+        this.recycleInfos = recycleInfos;
+    }
+
+    public int getListenerQueueSize() {
+        return listenerQueueSize;
+    }
+
+    public void setListenerQueueSize(int listenerQueueSize) {
+        this.listenerQueueSize = listenerQueueSize;
+    }
+
+    public int getListenerThreads() {
+        return listenerThreads;
+    }
+
+    public void setListenerThreads(int listenerThreads) {
+        this.listenerThreads = listenerThreads;
+    }
+
+    public ListenerOverflow getListenerOverflow() {
+        return listenerOverflow;
+    }
+
+    public void setListenerOverflow(ListenerOverflow listenerOverflow) {
+        this.listenerOverflow = listenerOverflow;
+    }
+
     public long getConnectTimeout() {
         return connectTimeout;
     }
@@ -339,6 +639,22 @@ public class LoadGeneratorStarterArgs {
         this.displayStats = displayStats;
     }
 
+    public boolean isDetectSaturation() {
+        return detectSaturation;
+    }
+
+    public void setDetectSaturation(boolean detectSaturation) {
+        this.detectSaturation = detectSaturation;
+    }
+
+    public boolean isAbortOnSaturation() {
+        return abortOnSaturation;
+    }
+
+    public void setAbortOnSaturation(boolean abortOnSaturation) {
+        this.abortOnSaturation = abortOnSaturation;
+    }
+
     public boolean isJMX() {
         return jmx;
     }
@@ -394,6 +710,85 @@ public class LoadGeneratorStarterArgs {
         }
     }
 
+    public ArrivalProcess getArrivalProcess() {
+        return newArrivalProcess(getArrivals(), getArrivalsSeed());
+    }
+
+    public ArrivalProcess getThinkTimeProcess() {
+        return newArrivalProcess(getThinkTimeDistribution(), getThinkTimeSeed());
+    }
+
+    private static String checkArrivalProcess(String type) {
+        type = type.toLowerCase(Locale.ENGLISH);
+        switch (type) {
+            case ConstantArrivalProcess.TYPE:
+            case PoissonArrivalProcess.TYPE:
+            case UniformArrivalProcess.TYPE:
+                return type;
+            default:
+                throw new IllegalArgumentException("unsupported arrival process " + type);
+        }
+    }
+
+    private static ArrivalProcess newArrivalProcess(String type, Long seed) {
+        switch (type) {
+            case ConstantArrivalProcess.TYPE: {
+                return new ConstantArrivalProcess();
+            }
+            case PoissonArrivalProcess.TYPE: {
+                return new PoissonArrivalProcess().seed(seed);
+            }
+            case UniformArrivalProcess.TYPE: {
+                return new UniformArrivalProcess().seed(seed);
+            }
+            default: {
+                throw new IllegalArgumentException("unsupported arrival process " + type);
+            }
+        }
+    }
+
+    public LoadProfile getLoadProfile() {
+        String loadProfileSpec = getLoadProfileSpec();
+        if (loadProfileSpec == null) {
+            return null;
+        }
+        LoadProfile result = new LoadProfile();
+        for (String stage : loadProfileSpec.split(",")) {
+            String[] parts = stage.trim().split(":");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("invalid load profile stage " + stage);
+            }
+            LoadProfile.Stage.Type type = LoadProfile.Stage.Type.valueOf(parts[0].toUpperCase(Locale.ENGLISH));
+            long duration = toNanos(parts[1]);
+            double rate = Double.parseDouble(parts[2]);
+            double amplitude = parts.length > 3 ? Double.parseDouble(parts[3]) : 0;
+            long period = parts.length > 4 ? toNanos(parts[4]) : 0;
+            result.stage(new LoadProfile.Stage(type, duration, rate, amplitude, period));
+        }
+        return result;
+    }
+
+    private static long toNanos(String duration) {
+        int index = 0;
+        while (index < duration.length() && Character.isDigit(duration.charAt(index))) {
+            ++index;
+        }
+        long value = Long.parseLong(duration.substring(0, index));
+        switch (duration.substring(index)) {
+            case "ms":
+                return TimeUnit.MILLISECONDS.toNanos(value);
+            case "":
+            case "s":
+                return TimeUnit.SECONDS.toNanos(value);
+            case "m":
+                return TimeUnit.MINUTES.toNanos(value);
+            case "h":
+                return TimeUnit.HOURS.toNanos(value);
+            default:
+                throw new IllegalArgumentException(duration + " is not recognized");
+        }
+    }
+
     Resource getResource(LoadGenerator.Builder builder) throws Exception {
         String jsonPath = getResourceJSONPath();
         if (jsonPath != null) {
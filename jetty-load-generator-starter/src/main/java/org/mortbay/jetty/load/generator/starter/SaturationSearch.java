@@ -0,0 +1,273 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2022 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Searches the max resource rate that the server sustains within
+ * a p99 response time target and a failure percentage target.</p>
+ * <p>Each search step is a probe load generation at a given resource rate,
+ * configured by the {@link LoadGeneratorStarterArgs starter arguments}
+ * (typically with a short running time).
+ * The resource rate is doubled until a probe misses a target, and then
+ * binary-searched until the search tolerance is reached.</p>
+ * <p>The p99 is taken from the {@link ReportListener.Report#getCorrectedResponseTimeHistogram()
+ * response time histogram corrected for coordinated omission}, so that the
+ * delays of the requests queued in the load generator are accounted for.</p>
+ */
+public class SaturationSearch {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaturationSearch.class);
+
+    private final LoadGeneratorStarterArgs starterArgs;
+
+    public SaturationSearch(LoadGeneratorStarterArgs starterArgs) {
+        this.starterArgs = starterArgs;
+    }
+
+    /**
+     * @return the result of the search
+     */
+    public Result search() {
+        if (starterArgs.isClosedModel()) {
+            throw new IllegalArgumentException("invalid saturation search with closed model");
+        }
+        Result result = new Result(starterArgs.getSaturationP99(), starterArgs.getSaturationFailures());
+        int passed = 0;
+        int failed = -1;
+        int rate = Math.max(1, starterArgs.getResourceRate());
+        for (int i = 0; i < starterArgs.getSaturationMaxProbes(); ++i) {
+            Probe probe = probe(rate);
+            result.probes.add(probe);
+            if (probe.isPassed()) {
+                passed = rate;
+                result.maxRate = rate;
+            } else {
+                failed = rate;
+            }
+            if (failed < 0) {
+                if (rate > Integer.MAX_VALUE / 2) {
+                    break;
+                }
+                rate *= 2;
+            } else {
+                double tolerance = Math.max(1, passed * starterArgs.getSaturationTolerance() / 100);
+                if (failed - passed <= tolerance) {
+                    break;
+                }
+                rate = passed + (failed - passed) / 2;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Runs a probe load generation at the given resource rate.</p>
+     *
+     * @param rate the resource rate
+     * @return the probe result
+     */
+    protected Probe probe(int rate) {
+        LOGGER.info("saturation search probe at resource rate {}", rate);
+        ReportListener listener = new ReportListener();
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .resourceRate(rate)
+                .loadProfile(null)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        generator.addBean(listener);
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+        Probe probe = new Probe(rate, report, starterArgs.getSaturationP99(), starterArgs.getSaturationFailures());
+        LOGGER.info("saturation search probe at resource rate {}: {}", rate, probe);
+        return probe;
+    }
+
+    /**
+     * <p>The result of a saturation search.</p>
+     */
+    public static class Result implements JSON.Convertible {
+        private final List<Probe> probes = new ArrayList<>();
+        private final long targetP99;
+        private final double targetFailures;
+        private int maxRate;
+
+        private Result(long targetP99, double targetFailures) {
+            this.targetP99 = targetP99;
+            this.targetFailures = targetFailures;
+        }
+
+        /**
+         * @return the max resource rate that met the targets, or zero if no resource rate met the targets
+         */
+        public int getMaxRate() {
+            return maxRate;
+        }
+
+        /**
+         * @return the probes, in the order they were run
+         */
+        public List<Probe> getProbes() {
+            return probes;
+        }
+
+        /**
+         * @return the probes, sorted by resource rate, that is the response time vs resource rate curve
+         */
+        public List<Probe> getCurve() {
+            List<Probe> result = new ArrayList<>(probes);
+            result.sort((p1, p2) -> Integer.compare(p1.getRate(), p2.getRate()));
+            return result;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("maxRate", getMaxRate());
+            out.add("targetP99", targetP99);
+            out.add("targetFailures", targetFailures);
+            out.add("curve", getCurve());
+        }
+
+        @Override
+        public void fromJSON(Map<String, Object> map) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * <p>The result of a saturation search probe at a given resource rate.</p>
+     */
+    public static class Probe implements JSON.Convertible {
+        private final int rate;
+        private final double requestRate;
+        private final double responseRate;
+        private final long p50;
+        private final long p99;
+        private final long max;
+        private final double failures;
+        private final boolean passed;
+
+        private Probe(int rate, ReportListener.Report report, long targetP99, double targetFailures) {
+            this.rate = rate;
+            this.requestRate = report.getRequestRate();
+            this.responseRate = report.getResponseRate();
+            Histogram histogram = report.getCorrectedResponseTimeHistogram();
+            this.p50 = TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(50));
+            long p99Nanos = histogram.getValueAtPercentile(99);
+            this.p99 = TimeUnit.NANOSECONDS.toMillis(p99Nanos);
+            this.max = TimeUnit.NANOSECONDS.toMillis(histogram.getMaxValue());
+            long failed = report.getFailures();
+            long total = histogram.getTotalCount() + failed;
+            this.failures = total == 0 ? 0 : 100D * failed / total;
+            this.passed = histogram.getTotalCount() > 0 && p99Nanos <= TimeUnit.MILLISECONDS.toNanos(targetP99) && failures <= targetFailures;
+        }
+
+        /**
+         * @return the nominal resource rate of the probe
+         */
+        public int getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the request rate, in requests/s
+         */
+        public double getRequestRate() {
+            return requestRate;
+        }
+
+        /**
+         * @return the response rate, in responses/s
+         */
+        public double getResponseRate() {
+            return responseRate;
+        }
+
+        /**
+         * @return the p50 response time, in ms
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * @return the p99 response time, in ms
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        /**
+         * @return the max response time, in ms
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the percentage of failed requests
+         */
+        public double getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return whether the probe met the targets
+         */
+        public boolean isPassed() {
+            return passed;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("rate", getRate());
+            out.add("requestRate", getRequestRate());
+            out.add("responseRate", getResponseRate());
+            out.add("p50", getP50());
+            out.add("p99", getP99());
+            out.add("max", getMax());
+            out.add("failures", getFailures());
+            out.add("passed", isPassed());
+        }
+
+        @Override
+        public void fromJSON(Map<String, Object> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[rate=%d,p50=%dms,p99=%dms,failures=%.3f%%,passed=%b]",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    getRate(),
+                    getP50(),
+                    getP99(),
+                    getFailures(),
+                    isPassed());
+        }
+    }
+}
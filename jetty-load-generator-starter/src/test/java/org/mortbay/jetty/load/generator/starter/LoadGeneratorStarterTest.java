@@ -27,6 +27,9 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -51,8 +54,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mortbay.jetty.load.generator.ArrivalProcess;
+import org.mortbay.jetty.load.generator.ConstantArrivalProcess;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.PoissonArrivalProcess;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.Scenario;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.SaturationDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -259,6 +268,299 @@ public class LoadGeneratorStarterTest {
         }
     }
 
+    @Test
+    public void testPoissonArrivals() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "10",
+                "--resource-rate",
+                "10",
+                "--arrivals",
+                "poisson",
+                "--arrivals-seed",
+                "42"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        LoadGenerator.Builder builder = LoadGeneratorStarter.configure(starterArgs);
+        ArrivalProcess arrivalProcess = builder.getArrivalProcess();
+        Assert.assertTrue(arrivalProcess instanceof PoissonArrivalProcess);
+        Assert.assertEquals(42L, (long)((PoissonArrivalProcess)arrivalProcess).getSeed());
+
+        LoadGeneratorStarter.run(builder.build());
+
+        Assert.assertEquals(10, testServlet.getNumber.get());
+    }
+
+    @Test
+    public void testLoadProfile() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--warmup-iterations",
+                "10",
+                "--resource-rate",
+                "20",
+                "--load-profile",
+                "hold:2s:20,ramp:2000ms:0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        LoadGenerator.Builder builder = LoadGeneratorStarter.configure(starterArgs);
+        ReportListener listener = new ReportListener();
+        LoadGenerator generator = builder
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+
+        LoadGeneratorStarter.run(generator);
+
+        ReportListener.Report report = listener.whenComplete().join();
+        List<ReportListener.Report.Stage> stages = report.getStages();
+        Assert.assertEquals(2, stages.size());
+        Assert.assertEquals(20D, stages.get(0).getNominalRate(), 0.001D);
+        Assert.assertEquals(10D, stages.get(1).getNominalRate(), 0.001D);
+        Assert.assertEquals(stages.get(0).getNominalRate(), stages.get(0).getRate(), 2D);
+        Assert.assertEquals(stages.get(1).getNominalRate(), stages.get(1).getRate(), 2D);
+    }
+
+    @Test
+    public void testScenarios() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "40",
+                "--resource-rate",
+                "0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        LoadGenerator.Builder builder = LoadGeneratorStarter.configure(starterArgs);
+        ReportListener listener = new ReportListener();
+        // Scenarios may share the same Resource objects.
+        Resource css = new Resource("/common.css");
+        LoadGenerator generator = builder
+                .scenario(new Scenario("page", 1, new Resource("/page", css, new Resource("/page.js"))))
+                .scenario(new Scenario("api", 1, new Resource("/api", css)))
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+
+        LoadGeneratorStarter.run(generator);
+
+        ReportListener.Report report = listener.whenComplete().join();
+        List<ReportListener.Report.Scenario> scenarios = report.getScenarios();
+        Assert.assertEquals(2, scenarios.size());
+        ReportListener.Report.Scenario page = scenarios.get(0);
+        ReportListener.Report.Scenario api = scenarios.get(1);
+        Assert.assertEquals("page", page.getName());
+        Assert.assertEquals("api", api.getName());
+        Assert.assertEquals(40, page.getResourceTrees() + api.getResourceTrees());
+        Assert.assertEquals(3 * page.getResourceTrees(), page.getResponses());
+        Assert.assertEquals(2 * api.getResourceTrees(), api.getResponses());
+        Assert.assertEquals(0, page.getFailures() + api.getFailures());
+    }
+
+    @Test
+    public void testClosedModel() throws Exception {
+        int users = 2;
+        int iterations = 20;
+        long thinkTime = 100;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--users-per-thread",
+                Integer.toString(users),
+                "--iterations",
+                Integer.toString(iterations),
+                "--closed-model",
+                "--think-time",
+                Long.toString(thinkTime)
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        LoadGenerator.Builder builder = LoadGeneratorStarter.configure(starterArgs);
+        ReportListener listener = new ReportListener();
+        LoadGenerator generator = builder
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+
+        LoadGeneratorStarter.run(generator);
+
+        ReportListener.Report report = listener.whenComplete().join();
+        // Each user sends its first resource tree without thinking, and then
+        // thinks before each of the others, so the recording time is at least
+        // that of the thinks of one user: 2 users that think for 100 ms send
+        // 20 resource trees in at least 900 ms, at most about 22 trees/s.
+        double maxRate = iterations / ((iterations / users - 1) * thinkTime / 1000D);
+        Assert.assertTrue(report.getResourceTreeRate() > 0);
+        Assert.assertTrue(String.valueOf(report.getResourceTreeRate()), report.getResourceTreeRate() <= maxRate);
+        Assert.assertTrue(report.getThinkTimePercent() > 0);
+    }
+
+    @Test
+    public void testThinkTimeDistribution() {
+        String[] args = new String[]{
+                "--closed-model",
+                "--think-time",
+                "100",
+                "--think-time-distribution",
+                "poisson",
+                "--think-time-seed",
+                "42"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        LoadGenerator.Builder builder = LoadGeneratorStarter.configure(starterArgs);
+
+        ArrivalProcess thinkTimeProcess = builder.getThinkTimeProcess();
+        Assert.assertTrue(thinkTimeProcess instanceof PoissonArrivalProcess);
+        Assert.assertEquals(42L, (long)((PoissonArrivalProcess)thinkTimeProcess).getSeed());
+        // The think time distribution is independent of the arrival process.
+        Assert.assertTrue(builder.getArrivalProcess() instanceof ConstantArrivalProcess);
+    }
+
+    @Test
+    public void testSaturationSearch() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "1",
+                "--running-time-unit",
+                "s",
+                "--resource-rate",
+                "5",
+                "--saturation-search",
+                "--saturation-p99",
+                "5000",
+                "--saturation-max-probes",
+                "3"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        SaturationSearch.Result result = new SaturationSearch(starterArgs).search();
+
+        // The targets are easily met, so the resource rate doubles at each probe.
+        List<SaturationSearch.Probe> probes = result.getProbes();
+        Assert.assertEquals(3, probes.size());
+        Assert.assertTrue(probes.stream().allMatch(SaturationSearch.Probe::isPassed));
+        Assert.assertEquals(20, result.getMaxRate());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)new JSON().fromJSON(new JSON().toJSON(result));
+        Assert.assertEquals(20L, map.get("maxRate"));
+        Assert.assertEquals(3, ((Object[])map.get("curve")).length);
+    }
+
+    @Test
+    public void testSaturationSearchUnreachableTarget() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "1",
+                "--running-time-unit",
+                "s",
+                "--resource-rate",
+                "5",
+                "--saturation-search",
+                "--saturation-p99",
+                "0",
+                "--saturation-failures",
+                "0",
+                "--saturation-max-probes",
+                "3"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        SaturationSearch.Result result = new SaturationSearch(starterArgs).search();
+
+        Assert.assertEquals(0, result.getMaxRate());
+        Assert.assertFalse(result.getProbes().get(0).isPassed());
+    }
+
+    @Test
+    public void testSaturationDetector() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "2",
+                "--running-time-unit",
+                "s",
+                "--resource-rate",
+                "20"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        SaturationDetector detector = new SaturationDetector();
+        detector.setPeriod(250);
+        detector.setWindowPeriods(2);
+        // Any send lag saturates the load generator.
+        detector.setMaxSendLag(0);
+        List<SaturationDetector.Saturation> saturations = new CopyOnWriteArrayList<>();
+        detector.addSaturationListener((generator, saturation) -> saturations.add(saturation));
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(listener)
+                .resourceListener(listener)
+                .listener(detector)
+                .requestListener(detector)
+                .resourceListener(detector)
+                .build();
+        generator.addBean(listener);
+        generator.addBean(detector);
+
+        LoadGeneratorStarter.run(generator);
+
+        ReportListener.Report report = listener.whenComplete().join();
+        SaturationDetector.Verdict verdict = report.getSaturationVerdict();
+        Assert.assertTrue(verdict.isSaturated());
+        Assert.assertTrue(verdict.getCount(SaturationDetector.Kind.SEND_LAG) > 0);
+        // The event is emitted only when the signal crosses the threshold.
+        Assert.assertEquals(1, saturations.stream().filter(s -> s.getKind() == SaturationDetector.Kind.SEND_LAG).count());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>)new JSON().fromJSON(new JSON().toJSON(report));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> saturation = (Map<String, Object>)map.get("saturation");
+        Assert.assertEquals(Boolean.TRUE, saturation.get("saturated"));
+        Assert.assertNotNull(saturation.get("SEND_LAG"));
+    }
+
+    @Test
+    public void testSaturationDetectorAbort() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "10",
+                "--running-time-unit",
+                "s",
+                "--resource-rate",
+                "20"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        SaturationDetector detector = new SaturationDetector();
+        detector.setPeriod(250);
+        detector.setWindowPeriods(2);
+        detector.setMaxSendLag(0);
+        detector.setAbortOnSaturation(true);
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(detector)
+                .requestListener(detector)
+                .resourceListener(detector)
+                .build();
+        generator.addBean(detector);
+
+        long begin = System.nanoTime();
+        try {
+            generator.begin().join();
+            Assert.fail();
+        } catch (CompletionException x) {
+            Assert.assertTrue(x.getCause() instanceof InterruptedException);
+        }
+        // Aborted well before the running time.
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+    }
+
     private static class TestServlet extends HttpServlet {
         private final AtomicInteger getNumber = new AtomicInteger(0);
         private final AtomicInteger postNumber = new AtomicInteger(0);